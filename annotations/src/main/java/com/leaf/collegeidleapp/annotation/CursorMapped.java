@@ -0,0 +1,17 @@
+package com.leaf.collegeidleapp.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记可以从数据库查询结果直接读取的实体类
+ * 编译时为其生成同包下的"类名+RowMapper"类,按字段名匹配查询结果中的列,
+ * 通过setter赋值,查询结果中没有的列保持默认值
+ * @author autumn_leaf
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface CursorMapped {
+}
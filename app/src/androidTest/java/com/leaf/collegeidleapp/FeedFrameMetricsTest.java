@@ -0,0 +1,137 @@
+package com.leaf.collegeidleapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.rule.ActivityTestRule;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.leaf.collegeidleapp.util.AppDatabase;
+import com.leaf.collegeidleapp.util.CommodityImporter;
+import com.leaf.collegeidleapp.util.InvalidationTracker;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 在5000件商品的主界面列表上连续滑动,用FrameMetrics统计每一帧的耗时
+ * 断言绝大多数帧在一个刷新周期内完成,慢帧的比例和耗时以失败信息给出
+ */
+@RunWith(AndroidJUnit4.class)
+public class FeedFrameMetricsTest {
+
+    private static final int COUNT = 5000;
+    private static final String STU_ID = "frame-metrics-test";
+    //60Hz屏幕的一个刷新周期
+    private static final long FRAME_BUDGET_NANOS = 16666667L;
+    //超过一个刷新周期的帧最多占的比例
+    private static final double MAX_JANKY_RATIO = 0.05;
+    //惯性滑动的次数,每次以最大速度的一半向下滑动
+    private static final int FLINGS = 40;
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder csv = new StringBuilder("title,category,price,description,stuId\n");
+        for (int i = 0; i < COUNT; i++) {
+            csv.append("测试商品").append(i).append(",生活用品,").append(1 + i % 500)
+                    .append(",帧耗时测试,").append(STU_ID).append('\n');
+        }
+        Context context = InstrumentationRegistry.getTargetContext();
+        CommodityImporter.Result result = new CommodityImporter(context)
+                .importCsv(new StringReader(csv.toString()), null, null);
+        assertEquals(COUNT, result.imported);
+    }
+
+    @After
+    public void tearDown() {
+        AppDatabase.getInstance(InstrumentationRegistry.getTargetContext()).getWritableDatabase()
+                .delete("tb_commodity", "stuId=?", new String[]{STU_ID});
+        InvalidationTracker.getInstance().notifyTablesChanged("tb_commodity", "tb_commodity_location");
+    }
+
+    @Test
+    public void scrollingFiveThousandItemsStaysWithinFrameBudget() throws InterruptedException {
+        assumeTrue("FrameMetrics需要Android 7.0", Build.VERSION.SDK_INT >= Build.VERSION_CODES.N);
+        Intent intent = new Intent();
+        intent.putExtra("username", "2017001");
+        final MainActivity activity = activityRule.launchActivity(intent);
+        final RecyclerView list = activity.findViewById(R.id.lv_all_commodity);
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        final List<Long> frameNanos = Collections.synchronizedList(new ArrayList<Long>());
+        HandlerThread metricsThread = new HandlerThread("frame-metrics");
+        metricsThread.start();
+        final Window.OnFrameMetricsAvailableListener listener = new Window.OnFrameMetricsAvailableListener() {
+            @Override
+            public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+                //第一帧包含布局和测量的初始化,不计入
+                if (frameMetrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 0) {
+                    frameNanos.add(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION));
+                }
+            }
+        };
+        activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+        try {
+            for (int i = 0; i < FLINGS; i++) {
+                InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                    @Override
+                    public void run() {
+                        list.fling(0, list.getMaxFlingVelocity() / 2);
+                    }
+                });
+                //等待这次惯性滑动结束
+                Thread.sleep(500);
+            }
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        } finally {
+            activity.getWindow().removeOnFrameMetricsAvailableListener(listener);
+            metricsThread.quitSafely();
+        }
+
+        List<Long> frames;
+        synchronized (frameNanos) {
+            frames = new ArrayList<>(frameNanos);
+        }
+        assertTrue("没有收集到帧", frames.size() > 0);
+        Collections.sort(frames);
+        int janky = 0;
+        for (long nanos : frames) {
+            if (nanos > FRAME_BUDGET_NANOS) {
+                janky++;
+            }
+        }
+        double jankyRatio = (double) janky / frames.size();
+        String summary = String.format("%d帧,慢帧%d(%.1f%%),中位数%.1fms,90分位%.1fms,99分位%.1fms",
+                frames.size(), janky, jankyRatio * 100,
+                percentileMillis(frames, 0.5), percentileMillis(frames, 0.9), percentileMillis(frames, 0.99));
+        assertTrue(summary, jankyRatio <= MAX_JANKY_RATIO);
+    }
+
+    private static double percentileMillis(List<Long> sorted, double percentile) {
+        int index = Math.min(sorted.size() - 1, (int) (sorted.size() * percentile));
+        return sorted.get(index) / 1e6;
+    }
+}
@@ -0,0 +1,102 @@
+package com.leaf.collegeidleapp;
+
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.rule.ActivityTestRule;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.PictureStore;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在strict构建类型下打开主界面并从头滑到底
+ * 主线程上的任何磁盘读写(数据库查询、读取缩略图)都会使StrictMode直接结束进程,测试随之失败
+ */
+@RunWith(AndroidJUnit4.class)
+public class StrictModeScrollTest {
+
+    private static final int COUNT = 300;
+    private static final String STU_ID = "strict-mode-test";
+
+    @Rule
+    public ActivityTestRule<MainActivity> activityRule = new ActivityTestRule<>(MainActivity.class, false, false);
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        //在测试线程中写入,不受主线程的StrictMode限制
+        Context context = InstrumentationRegistry.getTargetContext();
+        CommodityDbHelper dbHelper = new CommodityDbHelper(context);
+        Bitmap picture = Bitmap.createBitmap(800, 600, Bitmap.Config.ARGB_8888);
+        new Canvas(picture).drawColor(Color.GRAY);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        picture.compress(Bitmap.CompressFormat.PNG, 100, out);
+        String key = PictureStore.getInstance(context).save(out.toByteArray());
+        ThumbnailStore.getInstance(context).generate(key, picture);
+        for (int i = 0; i < COUNT; i++) {
+            Commodity commodity = new Commodity();
+            commodity.setTitle("测试商品" + i);
+            commodity.setCategory("生活用品");
+            commodity.setDescription("StrictMode滑动测试");
+            commodity.setPriceCents(100 + i);
+            commodity.setPictureKey(key);
+            commodity.setPictureWidth(picture.getWidth());
+            commodity.setPictureHeight(picture.getHeight());
+            commodity.setStuId(STU_ID);
+            dbHelper.AddCommodity(commodity);
+            ids.add(commodity.getId());
+        }
+        PictureStore.getInstance(context).unpin(key);
+    }
+
+    @After
+    public void tearDown() {
+        CommodityDbHelper dbHelper = new CommodityDbHelper(InstrumentationRegistry.getTargetContext());
+        for (int id : ids) {
+            dbHelper.deleteMyCommodity(id);
+        }
+    }
+
+    @Test
+    public void scrollingTheFeedDoesNoMainThreadDiskAccess() throws InterruptedException {
+        assertTrue("仪器测试应在strict构建类型下运行", BuildConfig.STRICT_MODE);
+        Intent intent = new Intent();
+        intent.putExtra("username", "2017001");
+        MainActivity activity = activityRule.launchActivity(intent);
+        final RecyclerView list = activity.findViewById(R.id.lv_all_commodity);
+        final boolean[] canScroll = {true};
+        while (canScroll[0]) {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    list.scrollBy(0, list.getHeight() / 2);
+                    canScroll[0] = list.canScrollVertically(1);
+                }
+            });
+            //等待后台读取的块和缩略图回到主线程绑定
+            Thread.sleep(50);
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+    }
+}
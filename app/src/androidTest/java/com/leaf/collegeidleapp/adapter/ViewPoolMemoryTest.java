@@ -0,0 +1,118 @@
+package com.leaf.collegeidleapp.adapter;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.InstrumentationRegistry;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.leaf.collegeidleapp.bean.Commodity;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 从头滑到底,创建的行数和回收池中保留的行数只与一屏的行数有关,与列表长度无关
+ * 按ViewHolder的数量断言,不读取堆内存,结果不受GC时机影响
+ */
+@RunWith(AndroidJUnit4.class)
+public class ViewPoolMemoryTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    /**
+     * 记录创建过的行数
+     */
+    private static class CountingAdapter extends AllCommodityAdapter {
+        int created;
+
+        CountingAdapter(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected BaseListAdapter.ViewHolder<Commodity> createViewHolder(View itemView) {
+            created++;
+            return super.createViewHolder(itemView);
+        }
+    }
+
+    private static class Result {
+        //创建过的行数
+        int created;
+        //滑动过程中同时显示的最多行数
+        int maxVisible;
+        //移除适配器后回收池中保留的行数
+        int pooled;
+    }
+
+    @Test
+    public void createdAndPooledRowsDoNotGrowWithItemCount() {
+        Result small = scrollThrough(200);
+        Result large = scrollThrough(5000);
+        //25倍的数据量,创建的行数不变
+        assertEquals(small.created, large.created);
+        //创建的行只有显示中的、屏幕外缓存的和回收池中的
+        int limit = large.maxVisible + BaseListAdapter.ITEM_VIEW_CACHE_SIZE + BaseListAdapter.MAX_RECYCLED_PER_TYPE;
+        assertTrue("created " + large.created + ", limit " + limit, large.created <= limit);
+        //页面关闭后回收池只保留上限以内的行,其余的行可以被回收
+        assertTrue("pooled " + large.pooled, large.pooled <= BaseListAdapter.MAX_RECYCLED_PER_TYPE);
+    }
+
+    private static Result scrollThrough(final int count) {
+        final Result result = new Result();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                List<Commodity> data = commodities(count);
+                RecyclerView recyclerView = new RecyclerView(context);
+                CountingAdapter adapter = new CountingAdapter(context);
+                adapter.attachTo(recyclerView, false);
+                adapter.setData(data);
+                layout(recyclerView);
+                result.maxVisible = recyclerView.getChildCount();
+                while (recyclerView.canScrollVertically(1)) {
+                    recyclerView.scrollBy(0, HEIGHT / 2);
+                    layout(recyclerView);
+                    result.maxVisible = Math.max(result.maxVisible, recyclerView.getChildCount());
+                }
+                result.created = adapter.created;
+                //移除适配器时显示中和缓存的行都放回回收池
+                recyclerView.setAdapter(null);
+                result.pooled = recyclerView.getRecycledViewPool().getRecycledViewCount(adapter.getLayoutId());
+                //让回收池回到初始状态,不影响下一次滑动
+                recyclerView.getRecycledViewPool().clear();
+            }
+        });
+        return result;
+    }
+
+    private static void layout(RecyclerView recyclerView) {
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        recyclerView.layout(0, 0, WIDTH, HEIGHT);
+    }
+
+    private static List<Commodity> commodities(int count) {
+        List<Commodity> commodities = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Commodity commodity = new Commodity();
+            commodity.setId(i + 1);
+            commodity.setTitle("商品" + i);
+            commodity.setCategory("生活用品");
+            commodity.setDescription("描述" + i);
+            commodity.setPriceCents(100 + i);
+            commodities.add(commodity);
+        }
+        return commodities;
+    }
+}
@@ -1,7 +1,10 @@
 package com.leaf.collegeidleapp;
 
+import android.Manifest;
 import android.content.Intent;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.graphics.drawable.BitmapDrawable;
 import android.net.Uri;
 import android.provider.MediaStore;
@@ -17,11 +20,20 @@ import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.LocationUtils;
+import com.leaf.collegeidleapp.util.PictureStore;
+import com.leaf.collegeidleapp.util.PriceUtils;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
 
 /**
  * 物品发布界面Activity类
@@ -29,10 +41,15 @@ import java.io.ByteArrayOutputStream;
  */
 public class AddCommodityActivity extends AppCompatActivity {
 
-    TextView tvStuId;
+    private static final int REQUEST_LOCATION_PERMISSION = 1001;
+
+    TextView tvStuId,tvPublishLocation;
     ImageButton ivPhoto;
     EditText etTitle,etPrice,etPhone,etDescription;
     Spinner spType;
+    //发布位置,未能定位时为null,商品不会出现在附近商品中
+    Double latitude,longitude;
+    private LocationUtils mLocationUtils;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,37 +80,79 @@ public class AddCommodityActivity extends AppCompatActivity {
         etPhone = findViewById(R.id.et_phone);
         etDescription = findViewById(R.id.et_description);
         spType = findViewById(R.id.spn_type);
-        Button btnPublish = findViewById(R.id.btn_publish);
+        tvPublishLocation = findViewById(R.id.tv_publish_location);
+        //进入页面就开始定位,填写商品信息的同时完成定位
+        mLocationUtils = LocationUtils.getInstance(this);
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{
+                    Manifest.permission.ACCESS_FINE_LOCATION,
+                    Manifest.permission.ACCESS_COARSE_LOCATION
+            }, REQUEST_LOCATION_PERMISSION);
+        } else {
+            locatePublishPosition();
+        }
+        final Button btnPublish = findViewById(R.id.btn_publish);
         //发布按钮点击事件
         btnPublish.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 //先检查合法性
                 if(CheckInput()) {
-                    CommodityDbHelper dbHelper = new CommodityDbHelper(getApplicationContext(), CommodityDbHelper.DB_NAME, null, 1);
-                    Commodity commodity = new Commodity();
+                    final CommodityDbHelper dbHelper = new CommodityDbHelper(getApplicationContext());
+                    final Commodity commodity = new Commodity();
                     //把图片先转化成bitmap格式
                     BitmapDrawable drawable = (BitmapDrawable) ivPhoto.getDrawable();
-                    Bitmap bitmap = drawable.getBitmap();
-                    //二进制数组输出流
-                    ByteArrayOutputStream byStream = new ByteArrayOutputStream();
-                    //将图片压缩成质量为100的PNG格式图片
-                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, byStream);
-                    //把输出流转换为二进制数组
-                    byte[] byteArray = byStream.toByteArray();
-                    commodity.setPicture(byteArray);
+                    final Bitmap bitmap = drawable.getBitmap();
+                    commodity.setPictureWidth(bitmap.getWidth());
+                    commodity.setPictureHeight(bitmap.getHeight());
                     commodity.setTitle(etTitle.getText().toString());
                     commodity.setCategory(spType.getSelectedItem().toString());
-                    commodity.setPrice(Float.parseFloat(etPrice.getText().toString()));
+                    commodity.setPriceCents(PriceUtils.parseCents(etPrice.getText().toString()));
                     commodity.setPhone(etPhone.getText().toString());
                     commodity.setDescription(etDescription.getText().toString());
                     commodity.setStuId(tvStuId.getText().toString());
-                    if (dbHelper.AddCommodity(commodity)) {
-                        Toast.makeText(getApplicationContext(), "商品信息发布成功!", Toast.LENGTH_SHORT).show();
-                        finish();
-                    }else {
-                        Toast.makeText(getApplicationContext(), "商品信息发布失败!", Toast.LENGTH_SHORT).show();
-                    }
+                    commodity.setLatitude(latitude);
+                    commodity.setLongitude(longitude);
+                    btnPublish.setEnabled(false);
+                    //图片压缩、保存和写入数据库都在后台完成
+                    AsyncRepository.write(AddCommodityActivity.this, new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            //二进制数组输出流
+                            ByteArrayOutputStream byStream = new ByteArrayOutputStream();
+                            //将图片压缩成质量为100的PNG格式图片
+                            bitmap.compress(Bitmap.CompressFormat.PNG, 100, byStream);
+                            //把输出流转换为二进制数组,按内容保存到图片存储,数据库只记录key和宽高
+                            byte[] byteArray = byStream.toByteArray();
+                            PictureStore pictureStore = PictureStore.getInstance(getApplicationContext());
+                            String pictureKey = pictureStore.save(byteArray);
+                            if (pictureKey == null) {
+                                //图片保存失败时不发布没有图片的商品
+                                return false;
+                            }
+                            try {
+                                commodity.setPictureKey(pictureKey);
+                                //趁原图还在内存中生成列表和详情缩略图,浏览时不再读取原图
+                                ThumbnailStore.getInstance(getApplicationContext()).generate(pictureKey, bitmap);
+                                return dbHelper.AddCommodity(commodity);
+                            } finally {
+                                //商品已经写入,之后图片按引用清理
+                                pictureStore.unpin(pictureKey);
+                            }
+                        }
+                    }, new AsyncRepository.Callback<Boolean>() {
+                        @Override
+                        public void onResult(Boolean added) {
+                            btnPublish.setEnabled(true);
+                            if (added) {
+                                Toast.makeText(getApplicationContext(), "商品信息发布成功!", Toast.LENGTH_SHORT).show();
+                                finish();
+                            }else {
+                                Toast.makeText(getApplicationContext(), "商品信息发布失败!", Toast.LENGTH_SHORT).show();
+                            }
+                        }
+                    });
                 }
             }
         });
@@ -105,13 +164,74 @@ public class AddCommodityActivity extends AppCompatActivity {
         if (requestCode == 1) {
             //从相册返回的数据
             if (data != null) {
-                //得到图片的全路径
-                Uri uri = data.getData();
-                ivPhoto.setImageURI(uri);
+                //得到图片的全路径,在后台读取图片
+                final Uri uri = data.getData();
+                AsyncRepository.query(this, new Callable<Bitmap>() {
+                    @Override
+                    public Bitmap call() throws Exception {
+                        InputStream in = getContentResolver().openInputStream(uri);
+                        try {
+                            return BitmapFactory.decodeStream(in);
+                        } finally {
+                            if (in != null) {
+                                in.close();
+                            }
+                        }
+                    }
+                }, new AsyncRepository.Callback<Bitmap>() {
+                    @Override
+                    public void onResult(Bitmap bitmap) {
+                        if (bitmap != null) {
+                            ivPhoto.setImageBitmap(bitmap);
+                        }
+                    }
+                });
             }
         }
     }
 
+    /**
+     * 获取发布位置
+     */
+    private void locatePublishPosition() {
+        mLocationUtils.getCurrentLocation(new LocationUtils.OnLocationResultListener() {
+            @Override
+            public void onLocationSuccess(double lat, double lng, LocationUtils.AddressInfo addressInfo) {
+                latitude = lat;
+                longitude = lng;
+                String address = addressInfo.getDetailAddress() != null ? addressInfo.getDetailAddress()
+                        : String.format("%.5f, %.5f", lat, lng);
+                tvPublishLocation.setText("发布位置：" + address);
+            }
+
+            @Override
+            public void onLocationFailed(String errorMsg) {
+                tvPublishLocation.setText("定位失败,商品不会出现在附近商品中");
+            }
+
+            @Override
+            public void onPermissionDenied() {
+                tvPublishLocation.setText("没有定位权限,商品不会出现在附近商品中");
+            }
+        });
+    }
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        if (requestCode == REQUEST_LOCATION_PERMISSION) {
+            //没有授权时由LocationUtils回调onPermissionDenied
+            locatePublishPosition();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //释放定位资源
+        mLocationUtils.release();
+    }
+
     /**
      * 检查输入是否合法
      */
@@ -129,6 +249,12 @@ public class AddCommodityActivity extends AppCompatActivity {
             Toast.makeText(this,"商品价格不能为空!",Toast.LENGTH_SHORT).show();
             return false;
         }
+        try {
+            PriceUtils.parseCents(price);
+        } catch (NumberFormatException e) {
+            Toast.makeText(this,"商品价格格式不正确!",Toast.LENGTH_SHORT).show();
+            return false;
+        }
         if (type.trim().equals("请选择类别")) {
             Toast.makeText(this,"商品类别未选择!",Toast.LENGTH_SHORT).show();
             return false;
@@ -0,0 +1,32 @@
+package com.leaf.collegeidleapp;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+import com.leaf.collegeidleapp.util.ThumbnailStore;
+import com.leaf.collegeidleapp.util.WriteBehindQueue;
+
+/**
+ * 应用入口
+ * 测试模式(strict构建类型)下开启StrictMode,主线程上的任何磁盘读写都会使应用崩溃
+ * @author autumn_leaf
+ */
+public class CollegeIdleApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.STRICT_MODE) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        }
+        //启动时重放上次没有写入数据库的评论和收藏
+        WriteBehindQueue.getInstance(this);
+        //为还没有缩略图的旧商品补生成缩略图
+        ThumbnailStore.getInstance(this).backfillInBackground();
+    }
+}
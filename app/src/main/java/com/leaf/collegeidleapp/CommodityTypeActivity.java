@@ -2,17 +2,24 @@ package com.leaf.collegeidleapp;
 
 import android.os.Bundle;
 import android.view.View;
-import android.widget.ListView;
+import android.widget.Button;
+import android.widget.EditText;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.leaf.collegeidleapp.adapter.AllCommodityAdapter;
+import com.leaf.collegeidleapp.adapter.LoadMoreScrollListener;
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.PriceUtils;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 不同类型商品信息的活动类
@@ -21,11 +28,18 @@ import java.util.List;
 public class CommodityTypeActivity extends AppCompatActivity {
 
     TextView tvCommodityType;
-    ListView lvCommodityType;
-    List<Commodity> commodities = new LinkedList<>();
+    RecyclerView lvCommodityType;
+    List<Commodity> commodities = new ArrayList<>();
+    String category;
+    //当前价格区间,单位为分
+    int minPriceCents = CommodityDbHelper.NO_MIN_PRICE;
+    int maxPriceCents = CommodityDbHelper.NO_MAX_PRICE;
 
     CommodityDbHelper dbHelper;
     AllCommodityAdapter adapter;
+    LoadMoreScrollListener scrollListener;
+    //正在加载的分页,重新加载时取消
+    AsyncRepository.Task<List<Commodity>> pageTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,7 +55,7 @@ public class CommodityTypeActivity extends AppCompatActivity {
         });
         tvCommodityType = findViewById(R.id.tv_type);
         lvCommodityType = findViewById(R.id.list_commodity);
-        dbHelper = new CommodityDbHelper(getApplicationContext(),CommodityDbHelper.DB_NAME,null,1);
+        dbHelper = new CommodityDbHelper(getApplicationContext());
         adapter = new AllCommodityAdapter(getApplicationContext());
         //根据不同的状态显示不同的界面
         int status = this.getIntent().getIntExtra("status",0);
@@ -54,9 +68,82 @@ public class CommodityTypeActivity extends AppCompatActivity {
         }else if(status == 4) {
             tvCommodityType.setText("体育用品");
         }
-        //根据不同类别显示不同的商品信息
-        commodities = dbHelper.readCommodityType(tvCommodityType.getText().toString());
-        adapter.setData(commodities);
-        lvCommodityType.setAdapter(adapter);
+        category = tvCommodityType.getText().toString();
+        adapter.attachTo(lvCommodityType,false);
+        //滑动到底部附近时加载下一页
+        scrollListener = new LoadMoreScrollListener() {
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        };
+        lvCommodityType.addOnScrollListener(scrollListener);
+        //按价格区间筛选,由(类别,价格)索引按范围读取
+        final EditText etMinPrice = findViewById(R.id.et_min_price);
+        final EditText etMaxPrice = findViewById(R.id.et_max_price);
+        Button btnPriceFilter = findViewById(R.id.btn_price_filter);
+        btnPriceFilter.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int[] range = PriceUtils.parseRange(etMinPrice.getText().toString(),etMaxPrice.getText().toString());
+                    minPriceCents = range[0];
+                    maxPriceCents = range[1];
+                } catch (NumberFormatException e) {
+                    Toast.makeText(getApplicationContext(),"请输入有效的价格区间",Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                loadFirstPage();
+            }
+        });
+        //根据不同类别显示不同的商品信息,先加载第一页
+        loadFirstPage();
+    }
+
+    /**
+     * 按当前价格区间重新加载第一页
+     */
+    private void loadFirstPage() {
+        loadPage(null,true);
+    }
+
+    /**
+     * 从当前最后一个商品之后加载下一页
+     */
+    private void loadNextPage() {
+        loadPage(commodities.isEmpty() ? null : commodities.get(commodities.size() - 1),false);
+    }
+
+    private void loadPage(final Commodity last,final boolean first) {
+        if(first) {
+            //重新加载时丢弃还没返回的旧分页
+            if(pageTask != null) {
+                pageTask.cancel();
+            }
+            scrollListener.reset();
+        }else if(pageTask != null) {
+            //第一页还没返回,返回后会结束本次加载
+            return;
+        }
+        final int minCents = minPriceCents;
+        final int maxCents = maxPriceCents;
+        pageTask = AsyncRepository.query(this, new Callable<List<Commodity>>() {
+            @Override
+            public List<Commodity> call() {
+                return dbHelper.readCommodityTypePage(category,minCents,maxCents,last,CommodityDbHelper.PAGE_SIZE);
+            }
+        }, new AsyncRepository.Callback<List<Commodity>>() {
+            @Override
+            public void onResult(List<Commodity> page) {
+                pageTask = null;
+                if(first) {
+                    commodities = page;
+                    adapter.setData(commodities);
+                }else {
+                    adapter.addData(page);
+                }
+                scrollListener.onPageLoaded(page.size(),CommodityDbHelper.PAGE_SIZE);
+            }
+        });
     }
 }
@@ -10,10 +10,10 @@ import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.leaf.collegeidleapp.bean.User;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.UserDbHelper;
 
-import java.util.LinkedList;
+import java.util.concurrent.Callable;
 
 /**
  * 登录界面Activity类
@@ -24,8 +24,6 @@ public class LoginActivity extends AppCompatActivity {
     EditText EtStuNumber,EtStuPwd;
     private String username;
 
-    LinkedList<User> users = new LinkedList<>();
-
     @Override
     protected void onCreate(final Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,36 +39,55 @@ public class LoginActivity extends AppCompatActivity {
         });
         EtStuNumber = findViewById(R.id.et_username);
         EtStuPwd = findViewById(R.id.et_password);
-        Button btnLogin = findViewById(R.id.btn_login);
+        final Button btnLogin = findViewById(R.id.btn_login);
         btnLogin.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                boolean flag = false;
                 if(CheckInput()) {
-                    UserDbHelper dbHelper = new UserDbHelper(getApplicationContext(),UserDbHelper.DB_NAME,null,1);
-                    users = dbHelper.readUsers();
-                    for(User user : users) {
-                        //如果可以找到,则输出登录成功,并跳转到主界面
-                        if(user.getUsername().equals(EtStuNumber.getText().toString()) && user.getPassword().equals(EtStuPwd.getText().toString()) ) {
-                            flag = true;
-                            Toast.makeText(LoginActivity.this,"恭喜你登录成功!",Toast.LENGTH_SHORT).show();
-                            Intent intent = new Intent(LoginActivity.this,MainActivity.class);
-                            Bundle bundle = new Bundle();
-                            username = EtStuNumber.getText().toString();
-                            bundle.putString("username",username);
-                            intent.putExtras(bundle);
-                            startActivity(intent);
+                    final String stuNumber = EtStuNumber.getText().toString();
+                    final String password = EtStuPwd.getText().toString();
+                    final UserDbHelper dbHelper = new UserDbHelper(getApplicationContext());
+                    //验证期间禁用按钮,避免重复点击启动多个主界面
+                    btnLogin.setEnabled(false);
+                    AsyncRepository.query(LoginActivity.this, new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return dbHelper.authenticate(stuNumber,password);
+                        }
+                    }, new AsyncRepository.Callback<Boolean>() {
+                        @Override
+                        public void onResult(Boolean success) {
+                            btnLogin.setEnabled(true);
+                            onLoginResult(stuNumber,success);
                         }
-                    }
-                    //否则提示登录失败,需要重新输入
-                    if (!flag) {
-                        Toast.makeText(LoginActivity.this,"学号或密码输入错误!",Toast.LENGTH_SHORT).show();
-                    }
+                    });
                 }
             }
         });
     }
 
+    /**
+     * 登录成功跳转到主界面,否则提示重新输入
+     * @param stuNumber 学号
+     * @param success 是否验证通过
+     */
+    private void onLoginResult(String stuNumber,boolean success) {
+        if(isFinishing()) {
+            return;
+        }
+        if(success) {
+            Toast.makeText(LoginActivity.this,"恭喜你登录成功!",Toast.LENGTH_SHORT).show();
+            Intent intent = new Intent(LoginActivity.this,MainActivity.class);
+            Bundle bundle = new Bundle();
+            username = stuNumber;
+            bundle.putString("username",username);
+            intent.putExtras(bundle);
+            startActivity(intent);
+        }else {
+            Toast.makeText(LoginActivity.this,"学号或密码输入错误!",Toast.LENGTH_SHORT).show();
+        }
+    }
+
     //检查输入是否符合要求
     public boolean CheckInput() {
         String StuNumber = EtStuNumber.getText().toString();
@@ -3,29 +3,39 @@ package com.leaf.collegeidleapp;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.view.KeyEvent;
 import android.view.View;
-import android.widget.AdapterView;
+import android.view.inputmethod.EditorInfo;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.leaf.collegeidleapp.adapter.AllCommodityAdapter;
+import com.leaf.collegeidleapp.adapter.BaseListAdapter;
+import com.leaf.collegeidleapp.adapter.LoadMoreScrollListener;
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.CursorList;
 import com.leaf.collegeidleapp.util.LocationUtils;
+import com.leaf.collegeidleapp.util.ObservableQuery;
+import com.leaf.collegeidleapp.util.PriceUtils;
 import com.leaf.collegeidleapp.util.DistanceCalculator;
+import com.leaf.collegeidleapp.util.ListDiffer;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 主界面活动类
@@ -35,14 +45,39 @@ import java.util.List;
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_LOCATION_PERMISSION = 1001;
+    // 附近商品的查询半径(米)和最多显示的数量
+    private static final double NEARBY_RADIUS_METERS = 5000;
+    private static final int NEARBY_LIMIT = 100;
+    // 最近商品显示的数量
+    private static final int NEAREST_COUNT = 20;
+    // 列表显示方式:全部或搜索结果、半径内的附近商品、离当前位置最近的商品
+    private static final int MODE_FEED = 0;
+    private static final int MODE_NEARBY = 1;
+    private static final int MODE_NEAREST = 2;
     private LocationUtils mLocationUtils;
 
-    ListView lvAllCommodity;
+    RecyclerView lvAllCommodity;
     List<Commodity> allCommodities = new ArrayList<>();
     ImageButton ibLearning, ibElectronic, ibDaily, ibSports;
 
     CommodityDbHelper dbHelper;
     AllCommodityAdapter adapter;
+    LoadMoreScrollListener feedScrollListener;
+    // 商品列表的查询,相关的表被写入后自动重新查询
+    ObservableQuery<ListDiffer.Update<Commodity>> feedQuery;
+    // 最近一次列表查询读取的数量
+    int requestedCount;
+    // 正在加载的下一页搜索结果,重新查询时取消
+    AsyncRepository.Task<List<Commodity>> pageTask;
+    // 当前搜索词,为null时显示全部商品
+    String searchQuery;
+    // 当前价格区间,单位为分
+    int minPriceCents = CommodityDbHelper.NO_MIN_PRICE;
+    int maxPriceCents = CommodityDbHelper.NO_MAX_PRICE;
+    // 当前列表显示方式,以及最近一次定位得到的位置
+    int listMode = MODE_FEED;
+    Double currentLatitude, currentLongitude;
+    TextView tvListTitle;
 
     private TextView tvLocation;
     private Button btnLocation;
@@ -94,6 +129,28 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        // 显示当前位置附近的商品,按距离由近到远排列
+        Button btnNearby = findViewById(R.id.btn_nearby);
+        btnNearby.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                if (currentLatitude == null) {
+                    Toast.makeText(MainActivity.this, "请先点击开始定位", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                showNearby(MODE_NEARBY, "附近商品");
+            }
+        });
+
+        // 显示离当前位置最近的若干件商品,不限距离
+        Button btnNearest = findViewById(R.id.btn_nearest);
+        btnNearest.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showNearby(MODE_NEAREST, "最近" + NEAREST_COUNT + "件商品");
+            }
+        });
+
         // 设置计算距离按钮点击事件
         btnCalculateDistance.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -102,11 +159,59 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
-        dbHelper = new CommodityDbHelper(getApplicationContext(), CommodityDbHelper.DB_NAME, null, 1);
+        dbHelper = new CommodityDbHelper(getApplicationContext());
         adapter = new AllCommodityAdapter(getApplicationContext());
-        allCommodities = dbHelper.readAllCommodities();
-        adapter.setData(allCommodities);
-        lvAllCommodity.setAdapter(adapter);
+        adapter.attachTo(lvAllCommodity, true);
+        // 首屏只加载第一页,滑动到底部附近时再加载下一页
+        feedScrollListener = new LoadMoreScrollListener() {
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        };
+        lvAllCommodity.addOnScrollListener(feedScrollListener);
+        feedQuery = createFeedQuery();
+        loadFirstPage();
+
+        // 搜索商品,搜索框清空后恢复显示全部商品
+        tvListTitle = findViewById(R.id.tv_list_title);
+        final EditText etSearch = findViewById(R.id.et_search);
+        Button btnSearch = findViewById(R.id.btn_search);
+        btnSearch.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                search(etSearch.getText().toString());
+            }
+        });
+        etSearch.setOnEditorActionListener(new TextView.OnEditorActionListener() {
+            @Override
+            public boolean onEditorAction(TextView v, int actionId, KeyEvent event) {
+                if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                    search(v.getText().toString());
+                    return true;
+                }
+                return false;
+            }
+        });
+
+        // 按价格区间筛选,对全部商品和搜索结果都生效
+        final EditText etMinPrice = findViewById(R.id.et_min_price);
+        final EditText etMaxPrice = findViewById(R.id.et_max_price);
+        Button btnPriceFilter = findViewById(R.id.btn_price_filter);
+        btnPriceFilter.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                try {
+                    int[] range = PriceUtils.parseRange(etMinPrice.getText().toString(), etMaxPrice.getText().toString());
+                    minPriceCents = range[0];
+                    maxPriceCents = range[1];
+                } catch (NumberFormatException e) {
+                    Toast.makeText(getApplicationContext(), "请输入有效的价格区间", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                loadFirstPage();
+            }
+        });
 
         final Bundle bundle = this.getIntent().getExtras();
         final TextView tvStuNumber = findViewById(R.id.tv_student_number);
@@ -155,24 +260,21 @@ public class MainActivity extends AppCompatActivity {
         tvRefresh.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                allCommodities = dbHelper.readAllCommodities();
-                adapter.setData(allCommodities);
-                lvAllCommodity.setAdapter(adapter);
+                loadFirstPage();
             }
         });
 
         // 为每一个item设置点击事件
-        lvAllCommodity.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        adapter.setOnItemClickListener(new BaseListAdapter.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Commodity commodity = (Commodity) lvAllCommodity.getAdapter().getItem(position);
+            public void onItemClick(int position, long id) {
+                if (id < 0) {
+                    // 这一行还在后台读取
+                    return;
+                }
                 Bundle bundle1 = new Bundle();
-                bundle1.putInt("position", position);
-                bundle1.putByteArray("picture", commodity.getPicture());
-                bundle1.putString("title", commodity.getTitle());
-                bundle1.putString("description", commodity.getDescription());
-                bundle1.putFloat("price", commodity.getPrice());
-                bundle1.putString("phone", commodity.getPhone());
+                // 列表中只有商品摘要,详情页根据编号读取完整信息和评论
+                bundle1.putInt("id", (int) id);
                 bundle1.putString("stuId", stuNum);
                 Intent intent = new Intent(MainActivity.this, ReviewCommodityActivity.class);
                 intent.putExtras(bundle1);
@@ -232,6 +334,180 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * 按当前位置显示附近或最近的商品
+     * @param mode MODE_NEARBY或MODE_NEAREST
+     * @param title 列表标题
+     */
+    private void showNearby(int mode, String title) {
+        if (currentLatitude == null) {
+            Toast.makeText(MainActivity.this, "请先点击开始定位", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        listMode = mode;
+        searchQuery = null;
+        tvListTitle.setText(title);
+        loadFirstPage();
+    }
+
+    /**
+     * 按搜索词重新加载列表
+     * @param query 搜索词,为空时显示全部商品
+     */
+    private void search(String query) {
+        searchQuery = query.trim().isEmpty() ? null : query.trim();
+        listMode = MODE_FEED;
+        tvListTitle.setText(searchQuery == null ? "最新商品" : "搜索结果");
+        loadFirstPage();
+    }
+
+    /**
+     * 重新加载商品列表的第一页
+     */
+    private void loadFirstPage() {
+        feedQuery.load();
+    }
+
+    /**
+     * 创建商品列表的查询,商品或位置被写入后自动重新查询,新发布的商品不必手动刷新就会出现
+     */
+    private ObservableQuery<ListDiffer.Update<Commodity>> createFeedQuery() {
+        return new ObservableQuery<ListDiffer.Update<Commodity>>(this, CommodityDbHelper.DB_NAME, "tb_commodity_location") {
+            @Override
+            protected Callable<ListDiffer.Update<Commodity>> prepare(boolean refresh) {
+                // 重新查询时丢弃还没返回的下一页
+                if (pageTask != null) {
+                    pageTask.cancel();
+                    pageTask = null;
+                }
+                if (!refresh) {
+                    feedScrollListener.reset();
+                }
+                // 查询条件在主线程取出,后台只访问数据库
+                final String query = searchQuery;
+                final int mode = listMode;
+                final int minCents = minPriceCents;
+                final int maxCents = maxPriceCents;
+                final Double latitude = currentLatitude;
+                final Double longitude = currentLongitude;
+                // 表变化后重新读取已经加载的全部搜索结果,当前可见的位置在后台先读好
+                final int count = refresh ? Math.max(allCommodities.size(), CommodityDbHelper.PAGE_SIZE)
+                        : CommodityDbHelper.PAGE_SIZE;
+                final int firstVisible = refresh ? getFirstVisiblePosition() : 0;
+                requestedCount = count;
+                // 重新查询时与当前列表比较,只更新变化的行;cursor列表只比较编号,不读取全部商品
+                final List<Commodity> previous = refresh ? allCommodities : null;
+                final List<Commodity> snapshot = previous == null || previous instanceof CursorList
+                        ? null : new ArrayList<>(previous);
+                return new Callable<ListDiffer.Update<Commodity>>() {
+                    @Override
+                    public ListDiffer.Update<Commodity> call() {
+                        List<Commodity> commodities = read();
+                        ListDiffer.Result diff = null;
+                        if (previous instanceof CursorList && commodities instanceof CursorList) {
+                            long[] oldIds = ((CursorList<?>) previous).readIds("id");
+                            if (oldIds != null) {
+                                diff = ListDiffer.calculate(oldIds, ((CursorList<?>) commodities).readIds("id"), null);
+                            }
+                        } else if (snapshot != null && !(commodities instanceof CursorList)) {
+                            diff = ListDiffer.calculate(snapshot, commodities, AllCommodityAdapter.DIFF_CALLBACK);
+                        }
+                        return new ListDiffer.Update<>(commodities, diff);
+                    }
+
+                    private List<Commodity> read() {
+                        if (query != null) {
+                            return dbHelper.searchCommodities(query, minCents, maxCents, 0, count);
+                        } else if (mode == MODE_NEARBY) {
+                            // 附近商品一次读取完,不分页
+                            return dbHelper.readNearbyCommodities(latitude, longitude, NEARBY_RADIUS_METERS, NEARBY_LIMIT);
+                        } else if (mode == MODE_NEAREST) {
+                            return dbHelper.readNearestCommodities(latitude, longitude, NEAREST_COUNT);
+                        }
+                        // 全部商品由cursor按需读取,滑动时不需要再追加下一页;可见的一页在这里读好,显示时不必等待
+                        CursorList<Commodity> feed = dbHelper.openCommodityList(minCents, maxCents);
+                        if (!feed.isEmpty()) {
+                            feed.get(Math.min(firstVisible, feed.size() - 1));
+                        }
+                        return feed;
+                    }
+                };
+            }
+
+            @Override
+            protected void onResult(ListDiffer.Update<Commodity> update, boolean refresh) {
+                List<Commodity> commodities = update.items;
+                List<Commodity> previous = allCommodities;
+                allCommodities = commodities;
+                if (commodities instanceof CursorList) {
+                    // 之后滑动到的块在后台读取,读取完成后刷新列表
+                    ((CursorList<?>) commodities).loadInBackground(new CursorList.OnBlockLoadedListener() {
+                        @Override
+                        public void onBlockLoaded(int start, int count) {
+                            // 只重新绑定这一块中的占位行
+                            adapter.notifyItemRangeChanged(start, count);
+                        }
+                    });
+                    feedScrollListener.onPageLoaded(0, CommodityDbHelper.PAGE_SIZE);
+                } else if (searchQuery != null) {
+                    feedScrollListener.onPageLoaded(commodities.size(), requestedCount);
+                    if (commodities.isEmpty() && !refresh) {
+                        Toast.makeText(getApplicationContext(), "没有找到相关商品", Toast.LENGTH_SHORT).show();
+                    }
+                } else {
+                    feedScrollListener.onPageLoaded(0, CommodityDbHelper.PAGE_SIZE);
+                }
+                // 只替换适配器的数据并通知变化的行,列表停留在原来的位置
+                adapter.submitList(allCommodities, update.diff);
+                closeCursorList(previous);
+            }
+        };
+    }
+
+    /**
+     * 加载下一页搜索结果,搜索结果按相关度排序,按已加载的数量翻页
+     */
+    private void loadNextPage() {
+        if (pageTask != null || feedQuery.isLoading()) {
+            // 第一页还没返回,返回后会结束本次加载
+            return;
+        }
+        final String query = searchQuery;
+        final int minCents = minPriceCents;
+        final int maxCents = maxPriceCents;
+        final int offset = allCommodities.size();
+        pageTask = AsyncRepository.query(this, new Callable<List<Commodity>>() {
+            @Override
+            public List<Commodity> call() {
+                return dbHelper.searchCommodities(query, minCents, maxCents, offset, CommodityDbHelper.PAGE_SIZE);
+            }
+        }, new AsyncRepository.Callback<List<Commodity>>() {
+            @Override
+            public void onResult(List<Commodity> page) {
+                pageTask = null;
+                adapter.addData(page);
+                feedScrollListener.onPageLoaded(page.size(), CommodityDbHelper.PAGE_SIZE);
+            }
+        });
+    }
+
+    /**
+     * 列表中第一个可见行的位置,列表为空时为0
+     */
+    private int getFirstVisiblePosition() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) lvAllCommodity.getLayoutManager();
+        return Math.max(0, layoutManager.findFirstVisibleItemPosition());
+    }
+
+    /**
+     * 关闭不再显示的商品列表背后的cursor
+     */
+    private static void closeCursorList(List<Commodity> commodities) {
+        if (commodities instanceof CursorList) {
+            ((CursorList<?>) commodities).close();
+        }
+    }
+
     /**
      * 初始化折叠/展开定位模块
      */
@@ -362,6 +638,8 @@ public class MainActivity extends AppCompatActivity {
                         addressInfo.getDetailAddress()
                 );
                 tvLocation.setText(result);
+                currentLatitude = latitude;
+                currentLongitude = longitude;
 
                 // 可选：将获取的定位自动填入第一个输入框
                 etLat1.setText(String.valueOf(latitude));
@@ -424,6 +702,7 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        closeCursorList(allCommodities);
         // 释放定位资源，避免内存泄漏
         if (mLocationUtils != null) {
             mLocationUtils.release();
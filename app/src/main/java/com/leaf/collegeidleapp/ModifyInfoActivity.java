@@ -10,9 +10,11 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.leaf.collegeidleapp.bean.Student;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.StudentDbHelper;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 修改个人信息Activity类
@@ -42,36 +44,56 @@ public class ModifyInfoActivity extends AppCompatActivity {
         etPhone = findViewById(R.id.et_stu_phone);
         etQq = findViewById(R.id.et_stu_qq);
         etAddress = findViewById(R.id.et_stu_address);
-        StudentDbHelper dbHelper = new StudentDbHelper(getApplicationContext(),StudentDbHelper.DB_NAME,null,1);
-        LinkedList<Student> students = dbHelper.readStudents(tvStuNumber.getText().toString());
-        //如果查找到的学生信息不为空
-        if(students != null) {
-            for(Student student : students) {
-                etStuName.setText(student.getStuName());
-                etMajor.setText(student.getStuMajor());
-                etPhone.setText(student.getStuPhone());
-                etQq.setText(student.getStuQq());
-                etAddress.setText(student.getStuAddress());
+        final StudentDbHelper dbHelper = new StudentDbHelper(getApplicationContext());
+        final String stuNumber = tvStuNumber.getText().toString();
+        AsyncRepository.query(this, new Callable<List<Student>>() {
+            @Override
+            public List<Student> call() {
+                return dbHelper.readStudents(stuNumber);
             }
-        }
-        Button btnSaveInfo = findViewById(R.id.btn_save_info);
+        }, new AsyncRepository.Callback<List<Student>>() {
+            @Override
+            public void onResult(List<Student> students) {
+                //如果查找到的学生信息不为空
+                if(students != null) {
+                    for(Student student : students) {
+                        etStuName.setText(student.getStuName());
+                        etMajor.setText(student.getStuMajor());
+                        etPhone.setText(student.getStuPhone());
+                        etQq.setText(student.getStuQq());
+                        etAddress.setText(student.getStuAddress());
+                    }
+                }
+            }
+        });
+        final Button btnSaveInfo = findViewById(R.id.btn_save_info);
         btnSaveInfo.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 //先判断输入不为空
                 if(CheckInput()) {
-                    StudentDbHelper dbHelper = new StudentDbHelper(getApplicationContext(),StudentDbHelper.DB_NAME,null,1);
-                    Student student = new Student();
+                    final Student student = new Student();
                     student.setStuNumber(tvStuNumber.getText().toString());
                     student.setStuName(etStuName.getText().toString());
                     student.setStuMajor(etMajor.getText().toString());
                     student.setStuPhone(etPhone.getText().toString());
                     student.setStuQq(etQq.getText().toString());
                     student.setStuAddress(etAddress.getText().toString());
-                    dbHelper.saveStudent(student);
-                    Toast.makeText(getApplicationContext(),"用户信息保存成功!",Toast.LENGTH_SHORT).show();
-                    //销毁当前界面
-                    finish();
+                    btnSaveInfo.setEnabled(false);
+                    AsyncRepository.write(ModifyInfoActivity.this, new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            dbHelper.saveStudent(student);
+                            return null;
+                        }
+                    }, new AsyncRepository.Callback<Void>() {
+                        @Override
+                        public void onResult(Void result) {
+                            Toast.makeText(getApplicationContext(),"用户信息保存成功!",Toast.LENGTH_SHORT).show();
+                            //销毁当前界面
+                            finish();
+                        }
+                    });
                 }
             }
         });
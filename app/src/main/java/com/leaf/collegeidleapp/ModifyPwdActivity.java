@@ -10,9 +10,10 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.leaf.collegeidleapp.bean.User;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.UserDbHelper;
 
-import java.util.LinkedList;
+import java.util.concurrent.Callable;
 
 /**
  * 修改密码活动类
@@ -20,6 +21,12 @@ import java.util.LinkedList;
  */
 public class ModifyPwdActivity extends AppCompatActivity {
 
+    //后台修改密码的结果
+    private static final int RESULT_NO_USER = 0;
+    private static final int RESULT_WRONG_PASSWORD = 1;
+    private static final int RESULT_UPDATED = 2;
+    private static final int RESULT_FAILED = 3;
+
     TextView tvStuNumber;
     EditText etOriginPwd,etNewPwd,etConfirmPwd;
 
@@ -40,26 +47,40 @@ public class ModifyPwdActivity extends AppCompatActivity {
         etOriginPwd = findViewById(R.id.et_original_pwd);
         etNewPwd = findViewById(R.id.et_new_pwd);
         etConfirmPwd = findViewById(R.id.et_confirm_new_pwd);
-        Button btnModify = findViewById(R.id.btn_modify_pwd);
+        final Button btnModify = findViewById(R.id.btn_modify_pwd);
         btnModify.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 //首先保证输入合法
                 if(CheckInput()) {
-                    String stuNumber = tvStuNumber.getText().toString();
-                    UserDbHelper dbHelper = new UserDbHelper(getApplicationContext(),UserDbHelper.DB_NAME,null,1);
-                    LinkedList<User> users = dbHelper.readUsers();
-                    for(User user : users) {
-                        //首先找到用户名
-                        if(user.getUsername().equals(stuNumber)) {
-                            if(!etOriginPwd.getText().toString().equals(user.getPassword())) {
+                    final String stuNumber = tvStuNumber.getText().toString();
+                    final String originPwd = etOriginPwd.getText().toString();
+                    final String newPwd = etNewPwd.getText().toString();
+                    final UserDbHelper dbHelper = new UserDbHelper(getApplicationContext());
+                    btnModify.setEnabled(false);
+                    AsyncRepository.write(ModifyPwdActivity.this, new Callable<Integer>() {
+                        @Override
+                        public Integer call() {
+                            //按用户名唯一索引找到用户
+                            User user = dbHelper.findUser(stuNumber);
+                            if(user == null) {
+                                return RESULT_NO_USER;
+                            }
+                            if(!originPwd.equals(user.getPassword())) {
+                                return RESULT_WRONG_PASSWORD;
+                            }
+                            //执行修改密码操作
+                            return dbHelper.updateUser(stuNumber,newPwd) ? RESULT_UPDATED : RESULT_FAILED;
+                        }
+                    }, new AsyncRepository.Callback<Integer>() {
+                        @Override
+                        public void onResult(Integer result) {
+                            btnModify.setEnabled(true);
+                            if(result == RESULT_WRONG_PASSWORD) {
                                 //提示初始密码输入错误
                                 Toast.makeText(getApplicationContext(),"初始密码输入错误!",Toast.LENGTH_SHORT).show();
-                            }else {
-                                //执行修改密码操作
-                                user.setPassword(etNewPwd.getText().toString());
-                                boolean flag = dbHelper.updateUser(tvStuNumber.getText().toString(),etNewPwd.getText().toString());
-                                if(flag) {
+                            }else if(result != RESULT_NO_USER) {
+                                if(result == RESULT_UPDATED) {
                                     Toast.makeText(getApplicationContext(),"修改密码成功!",Toast.LENGTH_SHORT).show();
                                 }else {
                                     Toast.makeText(getApplicationContext(),"修改密码失败!",Toast.LENGTH_SHORT).show();
@@ -67,7 +88,7 @@ public class ModifyPwdActivity extends AppCompatActivity {
                                 finish();
                             }
                         }
-                    }
+                    });
                 }
             }
         });
@@ -3,20 +3,22 @@ package com.leaf.collegeidleapp;
 import android.content.DialogInterface;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.leaf.collegeidleapp.adapter.BaseListAdapter;
 import com.leaf.collegeidleapp.adapter.MyCollectionAdapter;
 import com.leaf.collegeidleapp.bean.Collection;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.MyCollectionDbHelper;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 
 /**
@@ -25,7 +27,7 @@ import java.util.List;
  */
 public class MyCollectionActivity extends AppCompatActivity {
 
-    ListView lvMyCollection;
+    RecyclerView lvMyCollection;
     List<Collection> myCollections = new ArrayList<>();
     TextView tvStuId;
 
@@ -48,15 +50,17 @@ public class MyCollectionActivity extends AppCompatActivity {
         tvStuId = findViewById(R.id.tv_stuId);
         tvStuId.setText(this.getIntent().getStringExtra("stuId"));
         lvMyCollection = findViewById(R.id.lv_my_collection);
-        dbHelper = new MyCollectionDbHelper(getApplicationContext(),MyCollectionDbHelper.DB_NAME,null,1);
-        myCollections = dbHelper.readMyCollections(tvStuId.getText().toString());
+        dbHelper = new MyCollectionDbHelper(getApplicationContext());
         adapter = new MyCollectionAdapter(getApplicationContext());
         adapter.setData(myCollections);
-        lvMyCollection.setAdapter(adapter);
+        adapter.attachTo(lvMyCollection,false);
+        loadCollections();
         //设置长按删除事件
-        lvMyCollection.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
+        adapter.setOnItemLongClickListener(new BaseListAdapter.OnItemLongClickListener() {
             @Override
-            public boolean onItemLongClick(AdapterView<?> parent, View view, final int position, long id) {
+            public boolean onItemLongClick(int position, long id) {
+                //长按时记下收藏编号,对话框打开期间列表刷新后位置可能已经变化
+                final int collectionId = (int) id;
                 AlertDialog.Builder builder = new AlertDialog.Builder(MyCollectionActivity.this);
                 builder.setTitle("提示:").setMessage("确定删除此收藏商品吗?").setIcon(R.drawable.icon_user).setNegativeButton("取消", new DialogInterface.OnClickListener() {
                     @Override
@@ -67,13 +71,22 @@ public class MyCollectionActivity extends AppCompatActivity {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
                         dialog.dismiss();
-                        Collection collection = (Collection) adapter.getItem(position);
-                        //删除收藏商品项
-                        dbHelper.deleteMyCollection(collection.getTitle(),collection.getDescription(),collection.getPrice());
-                        Toast.makeText(MyCollectionActivity.this,"删除成功!",Toast.LENGTH_SHORT).show();
+                        //根据收藏编号删除收藏商品项
+                        AsyncRepository.write(MyCollectionActivity.this, new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                dbHelper.deleteMyCollection(collectionId);
+                                return null;
+                            }
+                        }, new AsyncRepository.Callback<Void>() {
+                            @Override
+                            public void onResult(Void result) {
+                                Toast.makeText(MyCollectionActivity.this,"删除成功!",Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     }
                 }).show();
-                return false;
+                return true;
             }
         });
         //页面刷新
@@ -81,9 +94,26 @@ public class MyCollectionActivity extends AppCompatActivity {
         tvRefresh.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                myCollections = dbHelper.readMyCollections(tvStuId.getText().toString());
+                loadCollections();
+            }
+        });
+    }
+
+    /**
+     * 在后台读取我的收藏,读取完成后刷新列表
+     */
+    private void loadCollections() {
+        final String stuId = tvStuId.getText().toString();
+        AsyncRepository.query(this, new Callable<List<Collection>>() {
+            @Override
+            public List<Collection> call() {
+                return dbHelper.readMyCollections(stuId);
+            }
+        }, new AsyncRepository.Callback<List<Collection>>() {
+            @Override
+            public void onResult(List<Collection> collections) {
+                myCollections = collections;
                 adapter.setData(myCollections);
-                lvMyCollection.setAdapter(adapter);
             }
         });
     }
@@ -3,36 +3,48 @@ package com.leaf.collegeidleapp;
 import android.content.DialogInterface;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.leaf.collegeidleapp.adapter.BaseListAdapter;
+import com.leaf.collegeidleapp.adapter.LoadMoreScrollListener;
 import com.leaf.collegeidleapp.adapter.MyCollectionAdapter;
 import com.leaf.collegeidleapp.adapter.MyCommodityAdapter;
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.ListDiffer;
 import com.leaf.collegeidleapp.util.MyCollectionDbHelper;
+import com.leaf.collegeidleapp.util.ObservableQuery;
 
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 我的发布物品Activity类
  */
 public class MyCommodityActivity extends AppCompatActivity {
 
-    ListView lvMyCommodity;
+    RecyclerView lvMyCommodity;
     List<Commodity> myCommodities = new ArrayList<>();
     TextView tvStuId;
 
     CommodityDbHelper dbHelper;
 
     MyCommodityAdapter adapter;
+    LoadMoreScrollListener scrollListener;
+    //我的发布的查询,商品表被写入后自动重新查询
+    ObservableQuery<ListDiffer.Update<Commodity>> myCommodityQuery;
+    //最近一次查询读取的数量
+    int requestedCount;
+    //正在加载的下一页,重新查询时取消
+    AsyncRepository.Task<List<Commodity>> pageTask;
 
 
     @Override
@@ -51,14 +63,28 @@ public class MyCommodityActivity extends AppCompatActivity {
         tvStuId.setText(this.getIntent().getStringExtra("stu_id"));
         lvMyCommodity = findViewById(R.id.lv_my_commodity);
         adapter = new MyCommodityAdapter(getApplicationContext());
-        dbHelper = new CommodityDbHelper(getApplicationContext(),CommodityDbHelper.DB_NAME,null,1);
-        myCommodities = dbHelper.readMyCommodities(tvStuId.getText().toString());
-        adapter.setData(myCommodities);
-        lvMyCommodity.setAdapter(adapter);
+        dbHelper = new CommodityDbHelper(getApplicationContext());
+        adapter.attachTo(lvMyCommodity,false);
+        //滑动到底部附近时加载下一页
+        scrollListener = new LoadMoreScrollListener() {
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        };
+        lvMyCommodity.addOnScrollListener(scrollListener);
+        myCommodityQuery = createMyCommodityQuery();
+        loadFirstPage();
         //长按点击事件
-        lvMyCommodity.setOnItemLongClickListener(new AdapterView.OnItemLongClickListener() {
+        adapter.setOnItemLongClickListener(new BaseListAdapter.OnItemLongClickListener() {
             @Override
-            public boolean onItemLongClick(AdapterView<?> parent, View view, final int position, long id) {
+            public boolean onItemLongClick(int position, long id) {
+                //还没加载出来的占位行没有商品编号
+                if (id < 0) {
+                    return false;
+                }
+                //长按时记下商品编号,对话框打开期间列表重新读取后位置可能已经变化
+                final int commodityId = (int) id;
                 //注意,这里的content不能写getApplicationContent();
                 AlertDialog.Builder builder = new AlertDialog.Builder(MyCommodityActivity.this);
                 builder.setTitle("提示:").setMessage("确认删除此商品项吗?").setIcon(R.drawable.icon_user).setNegativeButton("取消", new DialogInterface.OnClickListener() {
@@ -70,15 +96,24 @@ public class MyCommodityActivity extends AppCompatActivity {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
                         dialog.dismiss();
-                        //根据商品名称,商品描述和价格执行删除操作
-                        Commodity commodity = (Commodity) adapter.getItem(position);
-                        dbHelper.deleteMyCommodity(commodity.getTitle(),commodity.getDescription(),commodity.getPrice());
-                        //数据一样,可以直接用,关联删除
-                        //dbHelper2.deleteMyCollection(commodity.getTitle(),commodity.getDescription(),commodity.getPrice());
-                        Toast.makeText(MyCommodityActivity.this,"删除成功!",Toast.LENGTH_SHORT).show();
+                        //根据商品编号执行删除操作
+                        //该商品的评论和收藏由数据库触发器一并删除
+                        AsyncRepository.write(MyCommodityActivity.this, new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                dbHelper.deleteMyCommodity(commodityId);
+                                return null;
+                            }
+                        }, new AsyncRepository.Callback<Void>() {
+                            @Override
+                            public void onResult(Void result) {
+                                //列表由myCommodityQuery自动重新读取
+                                Toast.makeText(MyCommodityActivity.this,"删除成功!",Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     }
                 }).show();
-                return false;
+                return true;
             }
         });
         //刷新界面点击事件
@@ -86,12 +121,79 @@ public class MyCommodityActivity extends AppCompatActivity {
         tvRefresh.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                dbHelper = new CommodityDbHelper(MyCommodityActivity.this,CommodityDbHelper.DB_NAME,null,1);
-                adapter = new MyCommodityAdapter(MyCommodityActivity.this);
-                myCommodities = dbHelper.readMyCommodities(tvStuId.getText().toString());
-                adapter.setData(myCommodities);
-                lvMyCommodity.setAdapter(adapter);
+                loadFirstPage();
+            }
+        });
+    }
+
+    /**
+     * 重新加载我的发布的第一页
+     */
+    private void loadFirstPage() {
+        myCommodityQuery.load();
+    }
+
+    /**
+     * 从当前最后一个商品之后加载下一页
+     */
+    private void loadNextPage() {
+        if(pageTask != null || myCommodityQuery.isLoading()) {
+            //第一页还没返回,返回后会结束本次加载
+            return;
+        }
+        final String stuId = tvStuId.getText().toString();
+        final Commodity last = myCommodities.isEmpty() ? null : myCommodities.get(myCommodities.size() - 1);
+        pageTask = AsyncRepository.query(this, new Callable<List<Commodity>>() {
+            @Override
+            public List<Commodity> call() {
+                return dbHelper.readMyCommodityPage(stuId,last,CommodityDbHelper.PAGE_SIZE);
+            }
+        }, new AsyncRepository.Callback<List<Commodity>>() {
+            @Override
+            public void onResult(List<Commodity> page) {
+                pageTask = null;
+                adapter.addData(page);
+                scrollListener.onPageLoaded(page.size(),CommodityDbHelper.PAGE_SIZE);
             }
         });
     }
+
+    /**
+     * 创建我的发布的查询,发布或删除商品后自动重新读取已经加载的商品
+     */
+    private ObservableQuery<ListDiffer.Update<Commodity>> createMyCommodityQuery() {
+        return new ObservableQuery<ListDiffer.Update<Commodity>>(this,CommodityDbHelper.DB_NAME) {
+            @Override
+            protected Callable<ListDiffer.Update<Commodity>> prepare(boolean refresh) {
+                //重新查询时丢弃还没返回的下一页
+                if(pageTask != null) {
+                    pageTask.cancel();
+                    pageTask = null;
+                }
+                if(!refresh) {
+                    scrollListener.reset();
+                }
+                final String stuId = tvStuId.getText().toString();
+                final int count = refresh ? Math.max(myCommodities.size(),CommodityDbHelper.PAGE_SIZE) : CommodityDbHelper.PAGE_SIZE;
+                requestedCount = count;
+                //重新查询时在后台与当前列表比较,只更新变化的行
+                final List<Commodity> previous = refresh ? new ArrayList<>(myCommodities) : null;
+                return new Callable<ListDiffer.Update<Commodity>>() {
+                    @Override
+                    public ListDiffer.Update<Commodity> call() {
+                        List<Commodity> page = dbHelper.readMyCommodityPage(stuId,null,count);
+                        return new ListDiffer.Update<>(page,
+                                previous == null ? null : ListDiffer.calculate(previous,page,MyCommodityAdapter.DIFF_CALLBACK));
+                    }
+                };
+            }
+
+            @Override
+            protected void onResult(ListDiffer.Update<Commodity> update, boolean refresh) {
+                myCommodities = update.items;
+                adapter.submitList(myCommodities,update.diff);
+                scrollListener.onPageLoaded(myCommodities.size(),requestedCount);
+            }
+        };
+    }
 }
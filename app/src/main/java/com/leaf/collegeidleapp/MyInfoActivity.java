@@ -9,9 +9,11 @@ import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.leaf.collegeidleapp.bean.Student;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.StudentDbHelper;
 
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 我的个人信息活动类
@@ -20,6 +22,7 @@ import java.util.LinkedList;
 public class MyInfoActivity extends AppCompatActivity {
 
     TextView tvStuName,tvStuMajor,tvStuPhone,tvStuQq,tvStuAddress;
+    StudentDbHelper dbHelper;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,23 +44,8 @@ public class MyInfoActivity extends AppCompatActivity {
         tvStuPhone = findViewById(R.id.tv_stu_phone);
         tvStuQq = findViewById(R.id.tv_stu_qq);
         tvStuAddress = findViewById(R.id.tv_stu_address);
-        StudentDbHelper dbHelper = new StudentDbHelper(getApplicationContext(),StudentDbHelper.DB_NAME,null,1);
-        LinkedList<Student> students = dbHelper.readStudents(tvUserNumber.getText().toString());
-        if(students != null) {
-            for(Student student : students) {
-                tvStuName.setText(student.getStuName());
-                tvStuMajor.setText(student.getStuMajor());
-                tvStuPhone.setText(student.getStuPhone());
-                tvStuQq.setText(student.getStuQq());
-                tvStuAddress.setText(student.getStuAddress());
-            }
-        }else {
-            tvStuName.setText("暂未填写");
-            tvStuMajor.setText("暂未填写");
-            tvStuPhone.setText("暂未填写");
-            tvStuQq.setText("暂未填写");
-            tvStuAddress.setText("暂未填写");
-        }
+        dbHelper = new StudentDbHelper(getApplicationContext());
+        loadStudent(tvUserNumber.getText().toString(),true);
         Button btnModifyInfo = findViewById(R.id.btn_modify_info);
         //跳转到修改用户信息界面
         btnModifyInfo.setOnClickListener(new View.OnClickListener() {
@@ -75,8 +63,26 @@ public class MyInfoActivity extends AppCompatActivity {
         tvRefresh.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                StudentDbHelper dbHelper1 = new StudentDbHelper(getApplicationContext(),StudentDbHelper.DB_NAME,null,1);
-                LinkedList<Student> students = dbHelper1.readStudents(tvUserNumber.getText().toString());
+                loadStudent(tvUserNumber.getText().toString(),false);
+            }
+        });
+
+    }
+
+    /**
+     * 在后台读取个人信息后显示
+     * @param stuNumber 学号
+     * @param showEmpty 没有信息时是否显示"暂未填写"
+     */
+    private void loadStudent(final String stuNumber,final boolean showEmpty) {
+        AsyncRepository.query(this, new Callable<List<Student>>() {
+            @Override
+            public List<Student> call() {
+                return dbHelper.readStudents(stuNumber);
+            }
+        }, new AsyncRepository.Callback<List<Student>>() {
+            @Override
+            public void onResult(List<Student> students) {
                 if(students != null) {
                     for(Student student : students) {
                         tvStuName.setText(student.getStuName());
@@ -85,9 +91,14 @@ public class MyInfoActivity extends AppCompatActivity {
                         tvStuQq.setText(student.getStuQq());
                         tvStuAddress.setText(student.getStuAddress());
                     }
+                }else if(showEmpty) {
+                    tvStuName.setText("暂未填写");
+                    tvStuMajor.setText("暂未填写");
+                    tvStuPhone.setText("暂未填写");
+                    tvStuQq.setText("暂未填写");
+                    tvStuAddress.setText("暂未填写");
                 }
             }
         });
-
     }
 }
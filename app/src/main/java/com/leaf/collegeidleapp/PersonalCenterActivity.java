@@ -7,10 +7,19 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.leaf.collegeidleapp.util.AsyncRepository;
+import com.leaf.collegeidleapp.util.CommodityImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
 /**
  * 个人中心主界面Activity类
  */
@@ -82,6 +91,53 @@ public class PersonalCenterActivity extends AppCompatActivity {
                 startActivity(intent);
             }
         });
+        //点击导入商品按钮,从应用外部存储的import目录批量导入
+        final Button btnImport = findViewById(R.id.btn_import_commodity);
+        btnImport.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                final File dir = getExternalFilesDir("import");
+                if (dir == null) {
+                    Toast.makeText(getApplicationContext(),"存储不可用,无法导入!",Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                btnImport.setEnabled(false);
+                final CommodityImporter importer = new CommodityImporter(getApplicationContext());
+                AsyncRepository.write(PersonalCenterActivity.this, new Callable<CommodityImporter.Result>() {
+                    @Override
+                    public CommodityImporter.Result call() {
+                        try {
+                            return importer.importDirectory(dir, new CommodityImporter.ProgressListener() {
+                                @Override
+                                public void onProgress(final int imported, int skipped, double rowsPerSecond) {
+                                    runOnUiThread(new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            btnImport.setText("已导入" + imported + "条");
+                                        }
+                                    });
+                                }
+                            });
+                        } catch (IOException e) {
+                            return null;
+                        }
+                    }
+                }, new AsyncRepository.Callback<CommodityImporter.Result>() {
+                    @Override
+                    public void onResult(CommodityImporter.Result result) {
+                        btnImport.setEnabled(true);
+                        btnImport.setText("导入商品");
+                        if (result == null) {
+                            Toast.makeText(getApplicationContext(),"导入失败,请检查" + dir + "中的"
+                                    + CommodityImporter.CSV_FILE_NAME + "或" + CommodityImporter.JSON_FILE_NAME,Toast.LENGTH_LONG).show();
+                        } else {
+                            Toast.makeText(getApplicationContext(),String.format(Locale.CHINA,"导入%d条,跳过%d条,每秒%.0f条",
+                                    result.imported,result.skipped,result.rowsPerSecond()),Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+            }
+        });
         //退出登录按钮点击事件
         Button btnLogOut = findViewById(R.id.btn_logout);
         btnLogOut.setOnClickListener(new View.OnClickListener() {
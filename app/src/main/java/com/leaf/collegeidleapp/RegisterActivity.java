@@ -9,8 +9,11 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.leaf.collegeidleapp.bean.User;
+import com.leaf.collegeidleapp.util.AsyncRepository;
 import com.leaf.collegeidleapp.util.UserDbHelper;
 
+import java.util.concurrent.Callable;
+
 /**
  * 注册界面Activity类
  * @author : autumn_leaf
@@ -35,20 +38,35 @@ public class RegisterActivity extends AppCompatActivity {
         tvStuPwd = findViewById(R.id.et_password);
         tvStuConfirmPwd = findViewById(R.id.et_confirm_password);
         //注册点击事件
-        Button btnRegister = findViewById(R.id.btn_register);
+        final Button btnRegister = findViewById(R.id.btn_register);
         btnRegister.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 //首先确保不为空
                 if(CheckInput()) {
-                    User user = new User();
+                    final User user = new User();
                     user.setUsername(tvStuNumber.getText().toString());
                     user.setPassword(tvStuPwd.getText().toString());
-                    UserDbHelper dbHelper = new UserDbHelper(getApplicationContext(),UserDbHelper.DB_NAME,null,1);
-                    dbHelper.addUser(user);
-                    Toast.makeText(RegisterActivity.this,"恭喜你注册成功!",Toast.LENGTH_SHORT).show();
-                    //销毁当前界面
-                    finish();
+                    final UserDbHelper dbHelper = new UserDbHelper(getApplicationContext());
+                    btnRegister.setEnabled(false);
+                    AsyncRepository.write(RegisterActivity.this, new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return dbHelper.addUser(user);
+                        }
+                    }, new AsyncRepository.Callback<Boolean>() {
+                        @Override
+                        public void onResult(Boolean added) {
+                            btnRegister.setEnabled(true);
+                            if(!added) {
+                                Toast.makeText(RegisterActivity.this,"该学号已被注册!",Toast.LENGTH_SHORT).show();
+                                return;
+                            }
+                            Toast.makeText(RegisterActivity.this,"恭喜你注册成功!",Toast.LENGTH_SHORT).show();
+                            //销毁当前界面
+                            finish();
+                        }
+                    });
                 }
             }
         });
@@ -1,29 +1,35 @@
 package com.leaf.collegeidleapp;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.leaf.collegeidleapp.adapter.LoadMoreScrollListener;
 import com.leaf.collegeidleapp.adapter.ReviewAdapter;
-import com.leaf.collegeidleapp.bean.Collection;
 import com.leaf.collegeidleapp.bean.Commodity;
 import com.leaf.collegeidleapp.bean.Review;
+import com.leaf.collegeidleapp.util.AsyncRepository;
+import com.leaf.collegeidleapp.util.CommodityDbHelper;
+import com.leaf.collegeidleapp.util.ImageLoader;
+import com.leaf.collegeidleapp.util.ListDiffer;
 import com.leaf.collegeidleapp.util.MyCollectionDbHelper;
+import com.leaf.collegeidleapp.util.ObservableQuery;
+import com.leaf.collegeidleapp.util.PriceUtils;
 import com.leaf.collegeidleapp.util.ReviewDbHelper;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
+import com.leaf.collegeidleapp.util.WriteBehindQueue;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 商品信息评论/留言类
@@ -33,11 +39,24 @@ public class ReviewCommodityActivity extends AppCompatActivity {
 
     TextView title,description,price,phone;
     ImageView ivCommodity;
-    ListView lvReview;
-    LinkedList<Review> reviews = new LinkedList<>();
+    RecyclerView lvReview;
+    List<Review> reviews = new ArrayList<>();
     EditText etComment;
-    int position;
-    byte[] picture;
+    int commodityId;
+
+    MyCollectionDbHelper collectionDbHelper;
+    ReviewDbHelper reviewDbHelper;
+    WriteBehindQueue writeQueue;
+    //当前是否已收藏,读取完成前为null
+    Boolean favorited;
+    ReviewAdapter adapter;
+    LoadMoreScrollListener scrollListener;
+    //评论的查询,评论表被写入后自动重新查询
+    ObservableQuery<ListDiffer.Update<Review>> reviewQuery;
+    //最近一次查询读取的数量
+    int requestedCount;
+    //正在加载的下一页评论,重新查询时取消
+    AsyncRepository.Task<List<Review>> pageTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -48,16 +67,13 @@ public class ReviewCommodityActivity extends AppCompatActivity {
         description = findViewById(R.id.tv_description);
         price = findViewById(R.id.tv_price);
         phone = findViewById(R.id.tv_phone);
+        collectionDbHelper = new MyCollectionDbHelper(getApplicationContext());
+        reviewDbHelper = new ReviewDbHelper(getApplicationContext());
+        writeQueue = WriteBehindQueue.getInstance(getApplicationContext());
         Bundle b = getIntent().getExtras();
         if( b != null) {
-            picture = b.getByteArray("picture");
-            Bitmap img = BitmapFactory.decodeByteArray(picture, 0, picture.length);
-            ivCommodity.setImageBitmap(img);
-            title.setText(b.getString("title"));
-            description.setText(b.getString("description"));
-            price.setText(String.valueOf(b.getFloat("price"))+"元");
-            phone.setText(b.getString("phone"));
-            position = b.getInt("position");
+            commodityId = b.getInt("id");
+            loadCommodity();
         }
         //返回
         TextView tvBack = findViewById(R.id.tv_back);
@@ -67,23 +83,38 @@ public class ReviewCommodityActivity extends AppCompatActivity {
                 finish();
             }
         });
-        //点击收藏按钮
-        ImageButton ibMyLove = findViewById(R.id.ib_my_love);
+        //点击收藏按钮,已收藏时取消收藏
+        final String stuId = getIntent().getStringExtra("stuId");
+        final ImageButton ibMyLove = findViewById(R.id.ib_my_love);
+        //还没写入数据库的收藏状态优先,否则从数据库读取
+        favorited = writeQueue.pendingFavorite(stuId,commodityId);
+        if(favorited != null) {
+            showFavorited(ibMyLove,favorited);
+        }else {
+            AsyncRepository.query(this, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return collectionDbHelper.isFavorited(stuId,commodityId);
+                }
+            }, new AsyncRepository.Callback<Boolean>() {
+                @Override
+                public void onResult(Boolean result) {
+                    //读取期间已经点击过收藏按钮时以点击为准
+                    if(favorited == null) {
+                        favorited = result;
+                        showFavorited(ibMyLove,favorited);
+                    }
+                }
+            });
+        }
         ibMyLove.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                MyCollectionDbHelper dbHelper = new MyCollectionDbHelper(getApplicationContext(),MyCollectionDbHelper.DB_NAME,null,1);
-                Collection collection = new Collection();
-                collection.setTitle(title.getText().toString());
-                String price1 = price.getText().toString().substring(0,price.getText().toString().length()-1);
-                collection.setPrice(Float.parseFloat(price1));
-                collection.setPhone(phone.getText().toString());
-                collection.setDescription(description.getText().toString());
-                collection.setPicture(picture);
-                String stuId = getIntent().getStringExtra("stuId");
-                collection.setStuId(stuId);
-                dbHelper.addMyCollection(collection);
-                Toast.makeText(getApplicationContext(),"已添加至我的收藏!",Toast.LENGTH_SHORT).show();
+                //立即切换显示,由写入队列合并连续点击后在后台写入
+                favorited = favorited == null || !favorited;
+                writeQueue.setFavorited(stuId,commodityId,favorited);
+                showFavorited(ibMyLove,favorited);
+                Toast.makeText(getApplicationContext(),favorited ? "已添加至我的收藏!" : "已取消收藏!",Toast.LENGTH_SHORT).show();
             }
         });
 
@@ -96,41 +127,152 @@ public class ReviewCommodityActivity extends AppCompatActivity {
             public void onClick(View v) {
                 //先检查是否为空
                 if(CheckInput()) {
-                    ReviewDbHelper dbHelper = new ReviewDbHelper(getApplicationContext(),ReviewDbHelper.DB_NAME,null,1);
                     Review review = new Review();
                     review.setContent(etComment.getText().toString());
-                    SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy年MM月dd日 HH:mm:ss");// HH:mm:ss
-                    //获取当前时间
-                    Date date = new Date(System.currentTimeMillis());
-                    review.setCurrentTime(simpleDateFormat.format(date));
-                    String stuId = getIntent().getStringExtra("stuId");
+                    review.setCreatedAt(System.currentTimeMillis());
                     review.setStuId(stuId);
-                    review.setPosition(position);
-                    dbHelper.addReview(review);
+                    review.setCommodityId(commodityId);
                     //评论置为空
                     etComment.setText("");
+                    //交给写入队列后立即返回,重复提交的相同评论被忽略
+                    if(!writeQueue.addReview(review)) {
+                        Toast.makeText(getApplicationContext(),"请勿重复提交评论!",Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    //新评论直接显示在列表最前面
+                    adapter.addFirst(review);
                     Toast.makeText(getApplicationContext(),"评论成功!",Toast.LENGTH_SHORT).show();
                 }
             }
         });
-        final ReviewAdapter adapter = new ReviewAdapter(getApplicationContext());
-        final ReviewDbHelper dbHelper = new ReviewDbHelper(getApplicationContext(),ReviewDbHelper.DB_NAME,null,1);
-        reviews = dbHelper.readReviews(position);
-        adapter.setData(reviews);
+        adapter = new ReviewAdapter(getApplicationContext());
         //设置适配器
-        lvReview.setAdapter(adapter);
+        adapter.attachTo(lvReview,false);
+        //滑动到底部附近时加载更早的评论
+        scrollListener = new LoadMoreScrollListener() {
+            @Override
+            protected void onLoadMore() {
+                loadNextPage();
+            }
+        };
+        lvReview.addOnScrollListener(scrollListener);
+        reviewQuery = createReviewQuery();
+        loadFirstPage();
         //刷新页面
         TextView tvRefresh = findViewById(R.id.tv_refresh);
         tvRefresh.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                reviews = dbHelper.readReviews(position);
-                adapter.setData(reviews);
-                lvReview.setAdapter(adapter);
+                loadFirstPage();
+            }
+        });
+    }
+
+    /**
+     * 进入详情时才按编号读取商品的完整信息和原图
+     */
+    private void loadCommodity() {
+        final CommodityDbHelper commodityDbHelper = new CommodityDbHelper(getApplicationContext());
+        AsyncRepository.query(this, new Callable<Commodity>() {
+            @Override
+            public Commodity call() {
+                return commodityDbHelper.readCommodity(commodityId);
+            }
+        }, new AsyncRepository.Callback<Commodity>() {
+            @Override
+            public void onResult(Commodity commodity) {
+                if(commodity != null) {
+                    title.setText(commodity.getTitle());
+                    description.setText(commodity.getDescription());
+                    price.setText(PriceUtils.format(commodity.getPriceCents()));
+                    phone.setText(commodity.getPhone());
+                    loadPicture(commodity.getPictureKey());
+                }
             }
         });
     }
 
+    private void loadPicture(String pictureKey) {
+        //按图片控件的大小在后台解码,与列表共用内存缓存
+        ImageLoader.getInstance(getApplicationContext()).load(ivCommodity,commodityId,pictureKey,ThumbnailStore.DETAIL);
+    }
+
+    /**
+     * 重新加载最新的一页评论
+     */
+    private void loadFirstPage() {
+        reviewQuery.load();
+    }
+
+    /**
+     * 从当前最后一条评论之后加载下一页
+     */
+    private void loadNextPage() {
+        if(pageTask != null || reviewQuery.isLoading()) {
+            //第一页还没返回,返回后会结束本次加载
+            return;
+        }
+        final Review last = reviews.isEmpty() ? null : reviews.get(reviews.size() - 1);
+        pageTask = AsyncRepository.query(this, new Callable<List<Review>>() {
+            @Override
+            public List<Review> call() {
+                return reviewDbHelper.readReviewPage(commodityId,last,ReviewDbHelper.PAGE_SIZE);
+            }
+        }, new AsyncRepository.Callback<List<Review>>() {
+            @Override
+            public void onResult(List<Review> page) {
+                pageTask = null;
+                adapter.addData(page);
+                scrollListener.onPageLoaded(page.size(),ReviewDbHelper.PAGE_SIZE);
+            }
+        });
+    }
+
+    /**
+     * 创建评论的查询,评论写入数据库后自动重新读取已经加载的评论,其他用户的新评论也会出现
+     */
+    private ObservableQuery<ListDiffer.Update<Review>> createReviewQuery() {
+        return new ObservableQuery<ListDiffer.Update<Review>>(this,ReviewDbHelper.DB_NAME) {
+            @Override
+            protected Callable<ListDiffer.Update<Review>> prepare(boolean refresh) {
+                //重新查询时丢弃还没返回的下一页
+                if(pageTask != null) {
+                    pageTask.cancel();
+                    pageTask = null;
+                }
+                if(!refresh) {
+                    scrollListener.reset();
+                }
+                final int count = refresh ? Math.max(reviews.size(),ReviewDbHelper.PAGE_SIZE) : ReviewDbHelper.PAGE_SIZE;
+                requestedCount = count;
+                //重新查询时在后台与当前列表比较,只更新变化的行
+                final List<Review> previous = refresh ? new ArrayList<>(reviews) : null;
+                return new Callable<ListDiffer.Update<Review>>() {
+                    @Override
+                    public ListDiffer.Update<Review> call() {
+                        List<Review> page = reviewDbHelper.readReviewPage(commodityId,null,count);
+                        return new ListDiffer.Update<>(page,
+                                previous == null ? null : ListDiffer.calculate(previous,page,ReviewAdapter.DIFF_CALLBACK));
+                    }
+                };
+            }
+
+            @Override
+            protected void onResult(ListDiffer.Update<Review> update, boolean refresh) {
+                reviews = update.items;
+                adapter.submitList(reviews,update.diff);
+                scrollListener.onPageLoaded(reviews.size(),requestedCount);
+            }
+        };
+    }
+
+    /**
+     * 未收藏时收藏按钮显示为半透明
+     */
+    private static void showFavorited(ImageButton button,boolean favorited) {
+        button.setAlpha(favorited ? 1f : 0.4f);
+    }
+
     /**
      * 检查输入评论是否为空
      * @return true
@@ -1,98 +1,107 @@
 package com.leaf.collegeidleapp.adapter;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.leaf.collegeidleapp.R;
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.util.DistanceCalculator;
+import com.leaf.collegeidleapp.util.ImageLoader;
+import com.leaf.collegeidleapp.util.ListDiffer;
+import com.leaf.collegeidleapp.util.PriceUtils;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Objects;
 
 /**
  * 主界面所有商品列表的适配器
  * @author autumn_leaf
  */
-public class AllCommodityAdapter extends BaseAdapter {
+public class AllCommodityAdapter extends BaseListAdapter<Commodity> {
 
-    private Context context;
-    private LayoutInflater layoutInflater;
+    /**
+     * 按编号比较商品,列表中显示的字段都相同时不需要重新绑定
+     */
+    public static final ListDiffer.ItemCallback<Commodity> DIFF_CALLBACK = new ListDiffer.ItemCallback<Commodity>() {
+        @Override
+        public long getId(Commodity commodity) {
+            return commodity.getId();
+        }
 
-    private List<Commodity> commodities = new ArrayList<>();
-    //对每一个item保存其位置
-    HashMap<Integer,View> location = new HashMap<>();
+        @Override
+        public boolean areContentsTheSame(Commodity oldItem, Commodity newItem) {
+            return Objects.equals(oldItem.getTitle(),newItem.getTitle())
+                    && Objects.equals(oldItem.getCategory(),newItem.getCategory())
+                    && Objects.equals(oldItem.getDescription(),newItem.getDescription())
+                    && Objects.equals(oldItem.getPictureKey(),newItem.getPictureKey())
+                    && oldItem.getPriceCents() == newItem.getPriceCents()
+                    && oldItem.getDistance() == newItem.getDistance();
+        }
+    };
 
     public AllCommodityAdapter(Context context) {
-        this.context = context;
-        layoutInflater = LayoutInflater.from(context);
-    }
-
-    public void setData(List<Commodity> commodities) {
-        this.commodities = commodities;
-        notifyDataSetChanged();
-    }
-
-    @Override
-    public int getCount() {
-        return commodities.size();
+        super(context);
     }
 
     @Override
-    public Object getItem(int position) {
-        return commodities.get(position);
+    protected long getId(Commodity commodity) {
+        return commodity.getId();
     }
 
     @Override
-    public long getItemId(int position) {
-        return position;
+    protected int getLayoutId() {
+        return R.layout.layout_all_commodity;
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder = null;
-        if(location.get(position) == null){
-            convertView = layoutInflater.inflate(R.layout.layout_all_commodity,null);
-            Commodity commodity = (Commodity) getItem(position);
-            holder = new ViewHolder(convertView,commodity);
-            //保存view的位置position
-            location.put(position,convertView);
-            convertView.setTag(holder);
-        }else{
-            convertView = location.get(position);
-            holder = (ViewHolder) convertView.getTag();
-        }
-        return convertView;
-        
+    protected BaseListAdapter.ViewHolder<Commodity> createViewHolder(View itemView) {
+        return new ViewHolder(itemView);
     }
 
     //定义静态类,包含每一个item的所有元素
-    static class ViewHolder {
+    static class ViewHolder extends BaseListAdapter.ViewHolder<Commodity> {
         ImageView ivCommodity;
         TextView tvTitle,tvType,tvDescription,tvPrice;
 
-        public ViewHolder(View itemView,Commodity commodity) {
+        public ViewHolder(View itemView) {
+            super(itemView);
             tvTitle = itemView.findViewById(R.id.tv_name);
             tvType = itemView.findViewById(R.id.tv_type);
             tvPrice = itemView.findViewById(R.id.tv_price);
             tvDescription = itemView.findViewById(R.id.tv_description);
             ivCommodity = itemView.findViewById(R.id.iv_commodity);
+        }
+
+        @Override
+        protected void bind(Commodity commodity) {
+            if (commodity == null) {
+                //这一行还在后台读取,读取完成后列表会刷新
+                tvTitle.setText("");
+                tvDescription.setText("");
+                tvPrice.setText("");
+                tvType.setText("");
+                ImageLoader.getInstance(ivCommodity.getContext()).cancel(ivCommodity);
+                return;
+            }
             tvTitle.setText(commodity.getTitle());
             tvDescription.setText(commodity.getDescription());
-            tvPrice.setText(String.valueOf(commodity.getPrice())+"元");
-            tvType.setText(commodity.getCategory());
-            byte[] picture = commodity.getPicture();
-            //从字节数组中解码生成不可变的位图
-            //public static Bitmap decodeByteArray(byte[] data, int offset, int length)
-            Bitmap img = BitmapFactory.decodeByteArray(picture,0,picture.length);
-            ivCommodity.setImageBitmap(img);
+            tvPrice.setText(PriceUtils.format(commodity.getPriceCents()));
+            if (commodity.getLatitude() != null) {
+                //附近商品同时显示距离
+                tvType.setText(commodity.getCategory() + "  " + DistanceCalculator.formatDistance(commodity.getDistance()));
+            } else {
+                tvType.setText(commodity.getCategory());
+            }
+            //在后台按图片控件的大小解码,解码完成前不显示图片
+            ImageLoader.getInstance(ivCommodity.getContext()).load(ivCommodity,commodity.getId(),commodity.getPictureKey(),ThumbnailStore.LIST);
+        }
+
+        @Override
+        protected void unbind() {
+            //回收池中的行不持有图片,还没完成的解码也不再需要
+            ImageLoader.getInstance(ivCommodity.getContext()).cancel(ivCommodity);
         }
     }
 }
@@ -0,0 +1,272 @@
+package com.leaf.collegeidleapp.adapter;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.leaf.collegeidleapp.R;
+import com.leaf.collegeidleapp.util.ListDiffer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 各列表适配器的基类
+ * 行视图由RecyclerView回收复用,滑出屏幕的行换上新位置的数据重新绑定,视图数量只与一屏显示的行数有关;
+ * 所有列表共用一个有上限的回收池,按布局区分行的类型,关闭页面后回收的行可以给下一个页面使用;
+ * 编号稳定,数据变化时按ListDiffer的结果逐行通知
+ * @author autumn_leaf
+ */
+public abstract class BaseListAdapter<T> extends RecyclerView.Adapter<BaseListAdapter.ViewHolder<T>> {
+
+    //屏幕外保留的已绑定行数,来回小幅滑动时不必重新绑定
+    static final int ITEM_VIEW_CACHE_SIZE = 4;
+    //回收池中每种布局最多保留的行数,超出的行直接丢弃,不会随列表长度增长
+    static final int MAX_RECYCLED_PER_TYPE = 8;
+
+    //所有列表共用的回收池,只在主线程访问
+    private static RecyclerView.RecycledViewPool sharedPool;
+
+    /**
+     * 点击某一行
+     */
+    public interface OnItemClickListener {
+        void onItemClick(int position, long id);
+    }
+
+    /**
+     * 长按某一行
+     */
+    public interface OnItemLongClickListener {
+        boolean onItemLongClick(int position, long id);
+    }
+
+    /**
+     * 一行的视图,创建时查找子控件,bind时换上新数据
+     * 回收池中的行可能被另一个页面的适配器取出,点击事件交给当前绑定它的适配器处理
+     */
+    public abstract static class ViewHolder<T> extends RecyclerView.ViewHolder {
+
+        //当前绑定这一行的适配器,进入回收池后为null
+        private BaseListAdapter<T> adapter;
+
+        public ViewHolder(View itemView) {
+            super(itemView);
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    if (adapter != null) {
+                        adapter.performItemClick(ViewHolder.this);
+                    }
+                }
+            });
+            itemView.setOnLongClickListener(new View.OnLongClickListener() {
+                @Override
+                public boolean onLongClick(View v) {
+                    return adapter != null && adapter.performItemLongClick(ViewHolder.this);
+                }
+            });
+        }
+
+        /**
+         * @param item 这一行的数据,cursor列表中还在后台读取的行为null
+         */
+        protected abstract void bind(T item);
+
+        /**
+         * 放入回收池之前调用,释放图片等占内存较多的数据
+         */
+        protected void unbind() {
+
+        }
+    }
+
+    protected final Context context;
+    protected final LayoutInflater layoutInflater;
+    private List<T> items = new ArrayList<>();
+    private OnItemClickListener onItemClickListener;
+    private OnItemLongClickListener onItemLongClickListener;
+
+    protected BaseListAdapter(Context context) {
+        this.context = context;
+        //回收池中的行会比页面活得久,不能引用Activity;
+        //应用上下文不带清单中的主题,显式套上所有页面共用的AppTheme,行中的主题属性与页面一致
+        layoutInflater = LayoutInflater.from(new ContextThemeWrapper(context.getApplicationContext(), R.style.AppTheme));
+        setHasStableIds(true);
+    }
+
+    /**
+     * @return 一行的布局,同时作为回收池中行的类型
+     */
+    protected abstract int getLayoutId();
+
+    /**
+     * 创建一行的ViewHolder
+     * @param itemView 按getLayoutId()加载的视图
+     * @return 还没绑定数据的ViewHolder
+     */
+    protected abstract ViewHolder<T> createViewHolder(View itemView);
+
+    /**
+     * @param item 某一行的数据,不为null
+     * @return 这一行的数据库编号
+     */
+    protected abstract long getId(T item);
+
+    /**
+     * 设置RecyclerView的布局并显示这个适配器,竖直排列,滑动时预取即将出现的行
+     * @param recyclerView 列表
+     * @param divider 行之间是否显示分割线
+     */
+    public void attachTo(RecyclerView recyclerView, boolean divider) {
+        LinearLayoutManager layoutManager = new LinearLayoutManager(recyclerView.getContext());
+        layoutManager.setItemPrefetchEnabled(true);
+        //页面关闭时把行放回共用的回收池
+        layoutManager.setRecycleChildrenOnDetach(true);
+        recyclerView.setLayoutManager(layoutManager);
+        recyclerView.setRecycledViewPool(getSharedPool(getLayoutId()));
+        //行高不随数据变化,数据变化时不必重新测量整个列表
+        recyclerView.setHasFixedSize(true);
+        recyclerView.setItemViewCacheSize(ITEM_VIEW_CACHE_SIZE);
+        if (divider) {
+            recyclerView.addItemDecoration(new DividerItemDecoration(recyclerView.getContext(), DividerItemDecoration.VERTICAL));
+        }
+        recyclerView.setAdapter(this);
+    }
+
+    /**
+     * @param viewType 即将使用的行类型
+     * @return 所有列表共用的回收池
+     */
+    private static RecyclerView.RecycledViewPool getSharedPool(int viewType) {
+        if (sharedPool == null) {
+            sharedPool = new RecyclerView.RecycledViewPool();
+        }
+        sharedPool.setMaxRecycledViews(viewType, MAX_RECYCLED_PER_TYPE);
+        return sharedPool;
+    }
+
+    public void setOnItemClickListener(OnItemClickListener listener) {
+        onItemClickListener = listener;
+    }
+
+    public void setOnItemLongClickListener(OnItemLongClickListener listener) {
+        onItemLongClickListener = listener;
+    }
+
+    /**
+     * 整体替换数据
+     */
+    public void setData(List<T> items) {
+        this.items = items;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 换成重新查询得到的列表,只通知与旧列表不同的行
+     * @param items 新列表
+     * @param diff 在后台计算好的变化,为null时整体刷新
+     */
+    public void submitList(List<T> items, ListDiffer.Result diff) {
+        this.items = items;
+        if (diff == null) {
+            notifyDataSetChanged();
+            return;
+        }
+        diff.dispatchUpdatesTo(new ListDiffer.ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count) {
+                notifyItemRangeChanged(position, count);
+            }
+        });
+    }
+
+    /**
+     * 在列表末尾追加下一页数据
+     */
+    public void addData(List<T> more) {
+        int start = items.size();
+        items.addAll(more);
+        notifyItemRangeInserted(start, more.size());
+    }
+
+    /**
+     * 在列表最前面插入一项
+     */
+    public void addFirst(T item) {
+        items.add(0, item);
+        notifyItemInserted(0);
+    }
+
+    public T getItem(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return items.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        //还在后台读取的行用负数占位,读取完成后换成数据库编号
+        T item = getItem(position);
+        return item == null ? -1 - position : getId(item);
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return getLayoutId();
+    }
+
+    @Override
+    public ViewHolder<T> onCreateViewHolder(ViewGroup parent, int viewType) {
+        return createViewHolder(layoutInflater.inflate(viewType, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(ViewHolder<T> holder, int position) {
+        holder.adapter = this;
+        holder.bind(getItem(position));
+    }
+
+    @Override
+    public void onViewRecycled(ViewHolder<T> holder) {
+        holder.adapter = null;
+        holder.unbind();
+    }
+
+    private void performItemClick(ViewHolder<T> holder) {
+        int position = holder.getAdapterPosition();
+        if (onItemClickListener != null && position != RecyclerView.NO_POSITION) {
+            onItemClickListener.onItemClick(position, holder.getItemId());
+        }
+    }
+
+    private boolean performItemLongClick(ViewHolder<T> holder) {
+        int position = holder.getAdapterPosition();
+        return onItemLongClickListener != null && position != RecyclerView.NO_POSITION
+                && onItemLongClickListener.onItemLongClick(position, holder.getItemId());
+    }
+}
@@ -0,0 +1,51 @@
+package com.leaf.collegeidleapp.adapter;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 列表滑动到底部附近时自动加载下一页的监听器
+ * @author autumn_leaf
+ */
+public abstract class LoadMoreScrollListener extends RecyclerView.OnScrollListener {
+
+    //距离列表底部还剩多少项时开始加载下一页
+    private static final int PRELOAD_THRESHOLD = 5;
+
+    private boolean loading = false;
+    private boolean hasMore = true;
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int totalItemCount = layoutManager.getItemCount();
+        if (!loading && hasMore && totalItemCount > 0
+                && layoutManager.findLastVisibleItemPosition() + 1 >= totalItemCount - PRELOAD_THRESHOLD) {
+            loading = true;
+            onLoadMore();
+        }
+    }
+
+    /**
+     * 一页加载完成后调用,不足一页说明已经到底
+     * @param count 本页实际加载的数量
+     * @param pageSize 每页数量
+     */
+    public void onPageLoaded(int count, int pageSize) {
+        loading = false;
+        hasMore = count >= pageSize;
+    }
+
+    /**
+     * 重新从第一页加载时调用
+     */
+    public void reset() {
+        loading = false;
+        hasMore = true;
+    }
+
+    /**
+     * 加载下一页
+     */
+    protected abstract void onLoadMore();
+}
@@ -1,95 +1,70 @@
 package com.leaf.collegeidleapp.adapter;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.leaf.collegeidleapp.R;
 import com.leaf.collegeidleapp.bean.Collection;
-import com.leaf.collegeidleapp.bean.Commodity;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import com.leaf.collegeidleapp.util.ImageLoader;
+import com.leaf.collegeidleapp.util.PriceUtils;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
 
 /**
  * 我的收藏适配器Adapter类
  * @author autumn_leaf
  */
-public class MyCollectionAdapter extends BaseAdapter {
-
-    private Context context;
-    private LayoutInflater layoutInflater;
-
-    private List<Collection> collections = new ArrayList<>();
-
-    HashMap<Integer,View> location = new HashMap<>();
+public class MyCollectionAdapter extends BaseListAdapter<Collection> {
 
     public MyCollectionAdapter(Context context) {
-        this.context = context;
-        layoutInflater = LayoutInflater.from(context);
-    }
-
-    public void setData(List<Collection> collections) {
-        this.collections = collections;
-        notifyDataSetChanged();
-    }
-
-    @Override
-    public int getCount() {
-        return collections.size();
+        super(context);
     }
 
     @Override
-    public Object getItem(int position) {
-        return collections.get(position);
+    protected long getId(Collection collection) {
+        //使用数据库编号,列表顺序变化后同一商品的编号不变
+        return collection.getId();
     }
 
     @Override
-    public long getItemId(int position) {
-        return position;
+    protected int getLayoutId() {
+        return R.layout.layout_my_collection;
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder = null;
-        if(location.get(position) == null){
-            convertView = layoutInflater.inflate(R.layout.layout_my_collection,null);
-            Collection collection = (Collection) getItem(position);
-            holder = new ViewHolder(convertView,collection);
-            location.put(position,convertView);
-            convertView.setTag(holder);
-        }else{
-            convertView = location.get(position);
-            holder = (ViewHolder) convertView.getTag();
-        }
-        return convertView;
+    protected BaseListAdapter.ViewHolder<Collection> createViewHolder(View itemView) {
+        return new ViewHolder(itemView);
     }
 
     //定义静态类,包含每一个item的所有元素
-    static class ViewHolder {
+    static class ViewHolder extends BaseListAdapter.ViewHolder<Collection> {
         ImageView ivCommodity;
         TextView tvTitle,tvDescription,tvPrice,tvPhone;
 
-        public ViewHolder(View itemView,Collection collection) {
+        public ViewHolder(View itemView) {
+            super(itemView);
             tvTitle = itemView.findViewById(R.id.tv_name);
             tvPrice = itemView.findViewById(R.id.tv_price);
             tvDescription = itemView.findViewById(R.id.tv_description);
             tvPhone = itemView.findViewById(R.id.tv_phone);
             ivCommodity = itemView.findViewById(R.id.iv_commodity);
+        }
+
+        @Override
+        protected void bind(Collection collection) {
             tvTitle.setText(collection.getTitle());
             tvDescription.setText(collection.getDescription());
-            tvPrice.setText(String.valueOf(collection.getPrice())+"元");
+            tvPrice.setText(PriceUtils.format(collection.getPriceCents()));
             tvPhone.setText(collection.getPhone());
-            byte[] picture = collection.getPicture();
-            Bitmap img = BitmapFactory.decodeByteArray(picture,0,picture.length);
-            ivCommodity.setImageBitmap(img);
+            //在后台按图片控件的大小解码,解码完成前不显示图片
+            ImageLoader.getInstance(ivCommodity.getContext()).load(ivCommodity,collection.getCommodityId(),collection.getPictureKey(),ThumbnailStore.LIST);
+        }
+
+        @Override
+        protected void unbind() {
+            //回收池中的行不持有图片,还没完成的解码也不再需要
+            ImageLoader.getInstance(ivCommodity.getContext()).cancel(ivCommodity);
         }
     }
 }
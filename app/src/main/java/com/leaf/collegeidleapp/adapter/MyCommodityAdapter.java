@@ -1,95 +1,74 @@
 package com.leaf.collegeidleapp.adapter;
 
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.leaf.collegeidleapp.R;
 import com.leaf.collegeidleapp.bean.Commodity;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import com.leaf.collegeidleapp.util.ImageLoader;
+import com.leaf.collegeidleapp.util.ListDiffer;
+import com.leaf.collegeidleapp.util.PriceUtils;
+import com.leaf.collegeidleapp.util.ThumbnailStore;
 
 /**
  * 所有物品的适配器Adapter类
  * @author autumn_leaf
  */
-public class MyCommodityAdapter extends BaseAdapter {
-
-    private Context context;
-    private LayoutInflater layoutInflater;
+public class MyCommodityAdapter extends BaseListAdapter<Commodity> {
 
-    private List<Commodity> commodities = new ArrayList<>();
-
-    HashMap<Integer,View> location = new HashMap<>();
+    //显示的字段与主界面列表相同,按同样的方式比较
+    public static final ListDiffer.ItemCallback<Commodity> DIFF_CALLBACK = AllCommodityAdapter.DIFF_CALLBACK;
 
     public MyCommodityAdapter(Context context) {
-        this.context = context;
-        layoutInflater = LayoutInflater.from(context);
-    }
-
-    public void setData(List<Commodity> commodities) {
-        this.commodities = commodities;
-        notifyDataSetChanged();
+        super(context);
     }
 
     @Override
-    public int getCount() {
-        return commodities.size();
+    protected long getId(Commodity commodity) {
+        //使用数据库编号,列表顺序变化后同一商品的编号不变
+        return commodity.getId();
     }
 
     @Override
-    public Object getItem(int position) {
-        return commodities.get(position);
+    protected int getLayoutId() {
+        return R.layout.layout_my_commodity;
     }
 
     @Override
-    public long getItemId(int position) {
-        return position;
-    }
-
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder = null;
-        if(location.get(position) == null){
-            convertView = layoutInflater.inflate(R.layout.layout_my_commodity,null);
-            Commodity commodity = (Commodity) getItem(position);
-            holder = new ViewHolder(convertView,commodity);
-            location.put(position,convertView);
-            convertView.setTag(holder);
-        }else{
-            convertView = location.get(position);
-            holder = (ViewHolder) convertView.getTag();
-        }
-        return convertView;
+    protected BaseListAdapter.ViewHolder<Commodity> createViewHolder(View itemView) {
+        return new ViewHolder(itemView);
     }
 
     //定义静态类,包含每一个item的所有元素
-    static class ViewHolder {
+    static class ViewHolder extends BaseListAdapter.ViewHolder<Commodity> {
         ImageView ivCommodity;
         TextView tvTitle,tvType,tvDescription,tvPrice;
 
-        public ViewHolder(View itemView,Commodity commodity) {
+        public ViewHolder(View itemView) {
+            super(itemView);
             tvTitle = itemView.findViewById(R.id.tv_name);
             tvType = itemView.findViewById(R.id.tv_type);
             tvPrice = itemView.findViewById(R.id.tv_price);
             tvDescription = itemView.findViewById(R.id.tv_description);
             ivCommodity = itemView.findViewById(R.id.iv_commodity);
+        }
+
+        @Override
+        protected void bind(Commodity commodity) {
             tvTitle.setText(commodity.getTitle());
             tvDescription.setText(commodity.getDescription());
-            tvPrice.setText(String.valueOf(commodity.getPrice())+"元");
+            tvPrice.setText(PriceUtils.format(commodity.getPriceCents()));
             tvType.setText(commodity.getCategory());
-            byte[] picture = commodity.getPicture();
-            Bitmap img = BitmapFactory.decodeByteArray(picture,0,picture.length);
-            ivCommodity.setImageBitmap(img);
+            //在后台按图片控件的大小解码,解码完成前不显示图片
+            ImageLoader.getInstance(ivCommodity.getContext()).load(ivCommodity,commodity.getId(),commodity.getPictureKey(),ThumbnailStore.LIST);
+        }
+
+        @Override
+        protected void unbind() {
+            //回收池中的行不持有图片,还没完成的解码也不再需要
+            ImageLoader.getInstance(ivCommodity.getContext()).cancel(ivCommodity);
         }
     }
 }
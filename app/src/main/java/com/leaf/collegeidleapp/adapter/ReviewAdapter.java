@@ -1,91 +1,81 @@
 package com.leaf.collegeidleapp.adapter;
 
 import android.content.Context;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.TextView;
 
 import com.leaf.collegeidleapp.R;
 import com.leaf.collegeidleapp.bean.Review;
+import com.leaf.collegeidleapp.util.ListDiffer;
 
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Objects;
 
 /**
  * 评论的适配器
  * @author autumn_leaf
  */
-public class ReviewAdapter extends BaseAdapter {
+public class ReviewAdapter extends BaseListAdapter<Review> {
 
-    private Context context;
-    private LayoutInflater layoutInflater;
-
-    private LinkedList<Review> reviews = new LinkedList<>();
-    HashMap<Integer,View> location = new HashMap<>();
+    /**
+     * 按编号比较评论,评论发表后内容不会再变,只比较显示的字段
+     */
+    public static final ListDiffer.ItemCallback<Review> DIFF_CALLBACK = new ListDiffer.ItemCallback<Review>() {
+        @Override
+        public long getId(Review review) {
+            //刚发表还没写入数据库的评论使用写入队列分配的负数临时编号
+            return review.getId();
+        }
 
+        @Override
+        public boolean areContentsTheSame(Review oldItem, Review newItem) {
+            return Objects.equals(oldItem.getStuId(),newItem.getStuId())
+                    && Objects.equals(oldItem.getContent(),newItem.getContent())
+                    && oldItem.getCreatedAt() == newItem.getCreatedAt();
+        }
+    };
 
     public ReviewAdapter(Context context) {
-        this.context = context;
-        layoutInflater = LayoutInflater.from(context);
-    }
-
-    public void setData(LinkedList<Review> reviews) {
-        this.reviews = reviews;
-        notifyDataSetChanged();
-    }
-
-    @Override
-    public int getCount() {
-        return reviews.size();
+        super(context);
     }
 
     @Override
-    public Object getItem(int position) {
-        return reviews.get(position);
+    protected long getId(Review review) {
+        return DIFF_CALLBACK.getId(review);
     }
 
     @Override
-    public long getItemId(int position) {
-        return position;
+    protected int getLayoutId() {
+        return R.layout.layout_commodity_review;
     }
 
-    /**
-     * 获取视图
-     * @param position 位置
-     * @param convertView 当前的视图
-     * return convertView
-     */
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        ViewHolder holder = null;
-        if(location.get(position) == null) {
-            convertView = layoutInflater.inflate(R.layout.layout_commodity_review,null);
-            Review review = (Review) getItem(position);
-            holder = new ViewHolder(convertView,review);
-            location.put(position,convertView);
-            convertView.setTag(holder);
-        }else {
-            convertView = location.get(position);
-            holder = (ViewHolder) convertView.getTag();
-        }
-        return convertView;
+    protected BaseListAdapter.ViewHolder<Review> createViewHolder(View itemView) {
+        return new ViewHolder(itemView);
     }
 
     /**
      * 静态ViewHolder类
      */
-    static class ViewHolder {
+    static class ViewHolder extends BaseListAdapter.ViewHolder<Review> {
+
+        private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("yyyy年MM月dd日 HH:mm:ss", Locale.CHINA);
 
         TextView tvStuId,tvTime,tvContent;
 
-        public ViewHolder(View itemView, Review review) {
+        public ViewHolder(View itemView) {
+            super(itemView);
             tvStuId = itemView.findViewById(R.id.tv_number);
             tvTime = itemView.findViewById(R.id.tv_current_time);
             tvContent = itemView.findViewById(R.id.tv_comment);
+        }
+
+        @Override
+        protected void bind(Review review) {
             tvStuId.setText(review.getStuId());
-            tvTime.setText(review.getCurrentTime());
+            tvTime.setText(TIME_FORMAT.format(new Date(review.getCreatedAt())));
             tvContent.setText(review.getContent());
         }
     }
@@ -1,25 +1,51 @@
 package com.leaf.collegeidleapp.bean;
 
+import com.leaf.collegeidleapp.annotation.CursorMapped;
 
 /**
  * 我的收藏实体类
  * @author autumn_leaf
  */
+@CursorMapped
 public class Collection {
 
+    //编号
+    private Integer id;
+    //收藏的商品编号
+    private Integer commodityId;
     //学生学号
     private String StuId;
-    //商品图片
-    private byte[] picture;
+    //商品图片在图片存储中的key
+    private String pictureKey;
+    //图片宽度
+    private int pictureWidth;
+    //图片高度
+    private int pictureHeight;
     //商品标题
     private String title;
     //商品描述
     private String description;
-    //商品价格
-    private float price;
+    //商品价格,以分为单位
+    private int priceCents;
     //联系方式
     private String phone;
 
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public Integer getCommodityId() {
+        return commodityId;
+    }
+
+    public void setCommodityId(Integer commodityId) {
+        this.commodityId = commodityId;
+    }
+
     public String getStuId() {
         return StuId;
     }
@@ -28,12 +54,28 @@ public class Collection {
         StuId = stuId;
     }
 
-    public byte[] getPicture() {
-        return picture;
+    public String getPictureKey() {
+        return pictureKey;
+    }
+
+    public void setPictureKey(String pictureKey) {
+        this.pictureKey = pictureKey;
+    }
+
+    public int getPictureWidth() {
+        return pictureWidth;
+    }
+
+    public void setPictureWidth(int pictureWidth) {
+        this.pictureWidth = pictureWidth;
+    }
+
+    public int getPictureHeight() {
+        return pictureHeight;
     }
 
-    public void setPicture(byte[] picture) {
-        this.picture = picture;
+    public void setPictureHeight(int pictureHeight) {
+        this.pictureHeight = pictureHeight;
     }
 
     public String getTitle() {
@@ -52,12 +94,12 @@ public class Collection {
         this.description = description;
     }
 
-    public float getPrice() {
-        return price;
+    public int getPriceCents() {
+        return priceCents;
     }
 
-    public void setPrice(float price) {
-        this.price = price;
+    public void setPriceCents(int priceCents) {
+        this.priceCents = priceCents;
     }
 
     public String getPhone() {
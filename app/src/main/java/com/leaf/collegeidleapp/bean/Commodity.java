@@ -1,9 +1,12 @@
 package com.leaf.collegeidleapp.bean;
 
+import com.leaf.collegeidleapp.annotation.CursorMapped;
+
 /**
  * 商品实体类
  * @author : autumn_leaf
  */
+@CursorMapped
 public class Commodity {
 
     //编号
@@ -12,16 +15,25 @@ public class Commodity {
     private String title;
     //类别
     private String category;
-    //价格
-    private float price;
+    //价格,以分为单位
+    private int priceCents;
     //联系方式
     private String phone;
     //商品描述
     private String description;
-    //商品图片,以二进制字节存储
-    private byte[] picture;
+    //商品图片在图片存储中的key
+    private String pictureKey;
+    //图片宽度
+    private int pictureWidth;
+    //图片高度
+    private int pictureHeight;
     //用户学号
     private String stuId;
+    //发布位置的纬度和经度,发布时未能定位则为null
+    private Double latitude;
+    private Double longitude;
+    //与查询位置的距离(米),只在查询附近商品时计算,不对应数据库字段
+    private transient double distance;
 
     public Integer getId() {
         return id;
@@ -47,12 +59,12 @@ public class Commodity {
         this.category = category;
     }
 
-    public float getPrice() {
-        return price;
+    public int getPriceCents() {
+        return priceCents;
     }
 
-    public void setPrice(float price) {
-        this.price = price;
+    public void setPriceCents(int priceCents) {
+        this.priceCents = priceCents;
     }
 
     public String getPhone() {
@@ -71,12 +83,28 @@ public class Commodity {
         this.description = description;
     }
 
-    public byte[] getPicture() {
-        return picture;
+    public String getPictureKey() {
+        return pictureKey;
+    }
+
+    public void setPictureKey(String pictureKey) {
+        this.pictureKey = pictureKey;
     }
 
-    public void setPicture(byte[] picture) {
-        this.picture = picture;
+    public int getPictureWidth() {
+        return pictureWidth;
+    }
+
+    public void setPictureWidth(int pictureWidth) {
+        this.pictureWidth = pictureWidth;
+    }
+
+    public int getPictureHeight() {
+        return pictureHeight;
+    }
+
+    public void setPictureHeight(int pictureHeight) {
+        this.pictureHeight = pictureHeight;
     }
 
     public String getStuId() {
@@ -86,4 +114,28 @@ public class Commodity {
     public void setStuId(String stuId) {
         this.stuId = stuId;
     }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(Double latitude) {
+        this.latitude = latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(Double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getDistance() {
+        return distance;
+    }
+
+    public void setDistance(double distance) {
+        this.distance = distance;
+    }
 }
@@ -1,15 +1,27 @@
 package com.leaf.collegeidleapp.bean;
 
+import com.leaf.collegeidleapp.annotation.CursorMapped;
+
 /**
  * 评论实体类
  * @author autumn_leaf
  */
+@CursorMapped
 public class Review {
 
+    private Integer id;//评论编号
     private String stuId;//用户账号
-    private String currentTime;//当前时间
+    private long createdAt;//评论时间,毫秒时间戳
     private String content;//评论内容
-    private Integer position;//商品项编号
+    private Integer commodityId;//商品编号
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
 
     public String getStuId() {
         return stuId;
@@ -19,12 +31,12 @@ public class Review {
         this.stuId = stuId;
     }
 
-    public String getCurrentTime() {
-        return currentTime;
+    public long getCreatedAt() {
+        return createdAt;
     }
 
-    public void setCurrentTime(String currentTime) {
-        this.currentTime = currentTime;
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
     }
 
     public String getContent() {
@@ -35,13 +47,11 @@ public class Review {
         this.content = content;
     }
 
-    public Integer getPosition() {
-        return position;
+    public Integer getCommodityId() {
+        return commodityId;
     }
 
-    public void setPosition(Integer position) {
-        this.position = position;
+    public void setCommodityId(Integer commodityId) {
+        this.commodityId = commodityId;
     }
 }
-
-
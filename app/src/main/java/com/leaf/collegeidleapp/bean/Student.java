@@ -1,9 +1,12 @@
 package com.leaf.collegeidleapp.bean;
 
+import com.leaf.collegeidleapp.annotation.CursorMapped;
+
 /**
  * 学生实体类
  * @author : autumn_leaf
  */
+@CursorMapped
 public class Student {
 
     //学号
@@ -1,5 +1,7 @@
 package com.leaf.collegeidleapp.bean;
 
+import com.leaf.collegeidleapp.annotation.CursorMapped;
+
 import java.io.Serializable;
 import java.util.UUID;
 
@@ -7,6 +9,7 @@ import java.util.UUID;
  * 用户实体类
  * @author : autumn_leaf
  */
+@CursorMapped
 public class User implements Serializable {
 
     private Integer id;
@@ -0,0 +1,213 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 应用全局数据库,统一持有所有数据表和唯一的数据库连接
+ * 各个DbHelper只负责自己表的读写,不再单独打开或关闭数据库
+ * @author autumn_leaf
+ */
+public class AppDatabase extends SQLiteOpenHelper {
+
+    //数据库文件名
+    public static final String DB_NAME = "college_idle.db";
+    //数据库版本,等于最后一个迁移的版本
+    public static final int DB_VERSION = SchemaMigrations.latestVersion();
+
+    //旧版本中每张表各自存放在以表名命名的数据库文件中
+    private static final String[] LEGACY_TABLES = {
+            UserDbHelper.DB_NAME,
+            StudentDbHelper.DB_NAME,
+            CommodityDbHelper.DB_NAME,
+            MyCollectionDbHelper.DB_NAME,
+            ReviewDbHelper.DB_NAME
+    };
+
+    //分段读取大字段时每段的字节数,避免单行超出CursorWindow
+    private static final int BLOB_CHUNK_SIZE = 512 * 1024;
+
+    private static volatile AppDatabase instance;
+
+    private final Context context;
+    //本次升级执行过的迁移,事务提交后在onOpen中执行它们的afterCommit
+    private final List<Migration> committedMigrations = new ArrayList<>();
+
+    private AppDatabase(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        this.context = context;
+        //开启预写日志(WAL),读操作不再被写操作阻塞
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * 获取全局唯一的数据库实例
+     * @param context 上下文
+     * @return 数据库实例
+     */
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    instance = new AppDatabase(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        for (String statement : SchemaMigrations.BASE_SCHEMA) {
+            db.execSQL(statement);
+        }
+        //首次创建时把旧版本各个数据库文件中的数据导入进来
+        for (String table : LEGACY_TABLES) {
+            importLegacyTable(db, table);
+        }
+        //新建的数据库同样从第1版依次升级,保证与老用户升级后的结构一致
+        onUpgrade(db, 1, DB_VERSION);
+    }
+
+    /**
+     * 依次执行版本号在(oldVersion, newVersion]之间的迁移
+     * SQLiteOpenHelper在同一个事务中调用本方法并更新版本号,任一迁移失败则整体回滚
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        //上一次升级失败回滚时记录的迁移作废
+        committedMigrations.clear();
+        for (Migration migration : SchemaMigrations.MIGRATIONS) {
+            if (migration.version > oldVersion && migration.version <= newVersion) {
+                migration.migrate(context, db);
+                committedMigrations.add(migration);
+            }
+        }
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        //导入已随onCreate事务提交,此时才能安全删除旧数据库文件
+        for (String table : LEGACY_TABLES) {
+            if (context.getDatabasePath(table).exists()) {
+                context.deleteDatabase(table);
+            }
+        }
+        //升级事务已经提交,执行迁移中需要在提交后完成的部分
+        for (Migration migration : committedMigrations) {
+            migration.afterCommit(context, db);
+        }
+        committedMigrations.clear();
+    }
+
+    /**
+     * 把旧数据库文件中的一张表原样复制到新数据库,保留原有的id
+     * @param db 新数据库
+     * @param table 表名,同时也是旧数据库文件名
+     */
+    private void importLegacyTable(SQLiteDatabase db, String table) {
+        File legacyFile = context.getDatabasePath(table);
+        if (!legacyFile.exists()) {
+            return;
+        }
+        SQLiteDatabase legacy = SQLiteDatabase.openDatabase(legacyFile.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        try {
+            //区分普通字段和二进制字段,二进制字段单独分段读取
+            List<String> columns = new ArrayList<>();
+            List<String> blobColumns = new ArrayList<>();
+            Cursor info = legacy.rawQuery("pragma table_info(" + table + ")", null);
+            try {
+                while (info.moveToNext()) {
+                    String name = info.getString(info.getColumnIndex("name"));
+                    String type = info.getString(info.getColumnIndex("type"));
+                    if ("blob".equalsIgnoreCase(type)) {
+                        blobColumns.add(name);
+                    } else {
+                        columns.add(name);
+                    }
+                }
+            } finally {
+                info.close();
+            }
+            if (!columns.contains("id")) {
+                return;
+            }
+            Cursor cursor = legacy.rawQuery("select " + TextUtils.join(",", columns) + " from " + table, null);
+            try {
+                int idIndex = cursor.getColumnIndex("id");
+                ContentValues values = new ContentValues();
+                while (cursor.moveToNext()) {
+                    values.clear();
+                    for (int i = 0; i < cursor.getColumnCount(); i++) {
+                        String name = cursor.getColumnName(i);
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                values.putNull(name);
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                values.put(name, cursor.getLong(i));
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                values.put(name, cursor.getDouble(i));
+                                break;
+                            default:
+                                values.put(name, cursor.getString(i));
+                                break;
+                        }
+                    }
+                    long id = cursor.getLong(idIndex);
+                    for (String blobColumn : blobColumns) {
+                        values.put(blobColumn, readBlob(legacy, table, blobColumn, id));
+                    }
+                    db.insert(table, null, values);
+                }
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            legacy.close();
+        }
+    }
+
+    /**
+     * 分段读取某一行的二进制字段,单张大图片也不会撑爆CursorWindow
+     * @param db 数据库
+     * @param table 表名
+     * @param column 二进制字段名
+     * @param id 行编号
+     * @return 字段内容,为空时返回null
+     */
+    static byte[] readBlob(SQLiteDatabase db, String table, String column, long id) {
+        String[] idArg = new String[]{String.valueOf(id)};
+        long length = DatabaseUtils.longForQuery(db,
+                "select ifnull(length(" + column + "),-1) from " + table + " where id=?", idArg);
+        if (length < 0) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+        for (long offset = 0; offset < length; offset += BLOB_CHUNK_SIZE) {
+            Cursor cursor = db.rawQuery("select substr(" + column + ",?,?) from " + table + " where id=?",
+                    new String[]{String.valueOf(offset + 1), String.valueOf(BLOB_CHUNK_SIZE), idArg[0]});
+            try {
+                if (cursor.moveToFirst()) {
+                    byte[] chunk = cursor.getBlob(0);
+                    out.write(chunk, 0, chunk.length);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return out.toByteArray();
+    }
+}
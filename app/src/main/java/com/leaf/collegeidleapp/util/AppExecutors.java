@@ -0,0 +1,148 @@
+package com.leaf.collegeidleapp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局线程池
+ * 数据库写入放到diskIO中执行,查询放到queryIO中执行,图片解码放到imageIO中执行,
+ * 不急于完成的维护工作放到backgroundIO中执行,结果通过mainThread回到主线程更新界面。
+ * queryIO的队列满时不抛出异常,被拒绝的任务实现了Rejectable时由它自己决定重试还是放弃,否则丢弃;
+ * imageIO的队列满时挤掉最早提交的任务,同样通知被挤掉的任务
+ * @author autumn_leaf
+ */
+public class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+
+    private static volatile AppExecutors instance;
+
+    /**
+     * 任务因队列已满被拒绝或被挤出队列时的处理,在提交任务的线程上调用
+     */
+    public interface Rejectable {
+        void onRejected();
+    }
+
+    /**
+     * 拒绝时通知任务本身,主线程提交查询时不会因为RejectedExecutionException崩溃
+     */
+    private static final RejectedExecutionHandler NOTIFY_REJECTED = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (task instanceof Rejectable) {
+                ((Rejectable) task).onRejected();
+            } else {
+                Log.w(TAG, "查询队列已满,丢弃任务：" + task);
+            }
+        }
+    };
+
+    /**
+     * 丢弃队列中最早的任务为新任务腾出位置,并通知被丢弃的任务,
+     * 例如ImageLoader据此移除已经不会再执行的请求
+     */
+    static final RejectedExecutionHandler DISCARD_OLDEST_AND_NOTIFY = new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest instanceof Rejectable) {
+                ((Rejectable) oldest).onRejected();
+            }
+            executor.execute(task);
+        }
+    };
+
+    //查询线程数,WAL模式下多个读连接可以并发读取
+    private static final int QUERY_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    //等待执行的查询数上限,界面销毁时未执行的查询会被移出队列,正常使用不会达到,达到时交给NOTIFY_REJECTED
+    private static final int QUERY_QUEUE_CAPACITY = 128;
+    //图片解码线程数,解码占用内存较多,不宜太多
+    private static final int IMAGE_THREADS = 2;
+    //等待解码的图片数上限,快速滑动时丢弃最早提交的请求,这些行多半已经滑出屏幕
+    private static final int IMAGE_QUEUE_CAPACITY = 32;
+
+    private final ExecutorService diskIO;
+    private final ThreadPoolExecutor queryIO;
+    private final ThreadPoolExecutor imageIO;
+    private final ExecutorService backgroundIO;
+    private final Executor mainThread;
+
+    private AppExecutors() {
+        //SQLite同一时间只有一个写连接,单线程执行即可,也保证了写入顺序
+        diskIO = Executors.newSingleThreadExecutor();
+        //线程数和队列长度都有上限,空闲的线程超时后回收
+        queryIO = new ThreadPoolExecutor(QUERY_THREADS, QUERY_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUERY_QUEUE_CAPACITY), NOTIFY_REJECTED);
+        queryIO.allowCoreThreadTimeOut(true);
+        //图片解码与查询分开,大量解码时不会拖慢列表查询
+        imageIO = new ThreadPoolExecutor(IMAGE_THREADS, IMAGE_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(IMAGE_QUEUE_CAPACITY), DISCARD_OLDEST_AND_NOTIFY);
+        imageIO.allowCoreThreadTimeOut(true);
+        //例如补生成缩略图,单线程且优先级低于界面和图片解码线程
+        backgroundIO = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "background-io");
+            }
+        });
+        final Handler handler = new Handler(Looper.getMainLooper());
+        mainThread = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        };
+    }
+
+    public static AppExecutors getInstance() {
+        if (instance == null) {
+            synchronized (AppExecutors.class) {
+                if (instance == null) {
+                    instance = new AppExecutors();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public ExecutorService diskIO() {
+        return diskIO;
+    }
+
+    public ThreadPoolExecutor queryIO() {
+        return queryIO;
+    }
+
+    public ThreadPoolExecutor imageIO() {
+        return imageIO;
+    }
+
+    public ExecutorService backgroundIO() {
+        return backgroundIO;
+    }
+
+    public Executor mainThread() {
+        return mainThread;
+    }
+}
@@ -0,0 +1,183 @@
+package com.leaf.collegeidleapp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * 异步数据访问入口,界面通过它调用各个DbHelper,主线程上不再执行任何SQLite操作
+ * 查询在有界的queryIO线程池中执行,写入在单线程的diskIO中按提交顺序执行,结果回到主线程交给回调。
+ * 任务绑定界面的生命周期,界面销毁时未执行的查询直接丢弃,已经提交的写入仍会完成,但不再回调,
+ * 被丢弃的结果如果持有cursor(实现了Closeable)会在这里关闭。
+ * queryIO的队列已满时查询稍后重新提交,调用方不需要处理拒绝
+ * @author autumn_leaf
+ */
+public class AsyncRepository {
+
+    //查询被拒绝后重新提交的间隔
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    /**
+     * 在主线程接收结果
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private AsyncRepository() {
+    }
+
+    /**
+     * 在后台执行查询,必须在主线程调用
+     * @param owner 发起查询的界面,销毁时自动取消
+     * @param query 查询,在后台线程执行
+     * @param callback 结果回调,在主线程执行
+     * @return 可以提前取消的任务,例如重新加载时取消上一次还没返回的分页
+     */
+    public static <T> Task<T> query(LifecycleOwner owner, Callable<T> query, Callback<T> callback) {
+        AppExecutors executors = AppExecutors.getInstance();
+        return submit(owner, query, callback, executors.queryIO(), true);
+    }
+
+    /**
+     * 在后台执行写入,必须在主线程调用
+     * @param owner 发起写入的界面,销毁后写入照常完成,只是不再回调
+     * @param write 写入操作,在后台线程执行
+     * @param callback 结果回调,在主线程执行,可以为null
+     * @return 任务
+     */
+    public static <T> Task<T> write(LifecycleOwner owner, Callable<T> write, Callback<T> callback) {
+        AppExecutors executors = AppExecutors.getInstance();
+        return submit(owner, write, callback, executors.diskIO(), false);
+    }
+
+    private static <T> Task<T> submit(LifecycleOwner owner, Callable<T> work, Callback<T> callback,
+                                      Executor executor, boolean cancelWork) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        Task<T> task = new Task<>(lifecycle, work, callback, executor, cancelWork);
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            task.cancelled = true;
+            if (cancelWork) {
+                return task;
+            }
+        } else {
+            lifecycle.addObserver(task);
+        }
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * 一次后台查询或写入
+     */
+    public static final class Task<T> implements Runnable, LifecycleObserver, AppExecutors.Rejectable {
+
+        private final Lifecycle lifecycle;
+        private final Callable<T> work;
+        private final Callback<T> callback;
+        private final Executor executor;
+        //取消时是否连同还没执行的操作一起丢弃,查询丢弃,写入不丢弃
+        private final boolean cancelWork;
+        private volatile boolean cancelled;
+
+        Task(Lifecycle lifecycle, Callable<T> work, Callback<T> callback, Executor executor, boolean cancelWork) {
+            this.lifecycle = lifecycle;
+            this.work = work;
+            this.callback = callback;
+            this.executor = executor;
+            this.cancelWork = cancelWork;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled && cancelWork) {
+                return;
+            }
+            final T result;
+            try {
+                result = work.call();
+            } catch (final Exception e) {
+                //与原来同步调用时一样,异常在主线程抛出;界面已经销毁时忽略
+                AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!cancelled) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                return;
+            }
+            AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        closeQuietly(result);
+                        return;
+                    }
+                    lifecycle.removeObserver(Task.this);
+                    if (callback != null) {
+                        callback.onResult(result);
+                    }
+                }
+            });
+        }
+
+        /**
+         * 队列已满时在主线程稍后重新提交,等待期间被取消的查询不再提交
+         */
+        @Override
+        public void onRejected() {
+            new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled || !cancelWork) {
+                        executor.execute(Task.this);
+                    }
+                }
+            }, RETRY_DELAY_MILLIS);
+        }
+
+        /**
+         * 取消任务,之后不会再回调,必须在主线程调用
+         */
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            lifecycle.removeObserver(this);
+            if (cancelWork) {
+                //还在队列中的查询直接移出,不占用队列容量
+                AppExecutors.getInstance().queryIO().remove(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private static void closeQuietly(Object result) {
+            if (result instanceof Closeable) {
+                try {
+                    ((Closeable) result).close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        void onDestroy() {
+            cancel();
+        }
+    }
+}
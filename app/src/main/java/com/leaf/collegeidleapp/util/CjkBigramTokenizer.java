@@ -0,0 +1,148 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 中文二元分词工具
+ * 连续的中日韩字符切分为相邻两字一组(末尾再补一个单字),英文和数字按单词切分并转小写,
+ * 切分结果以空格连接后写入全文索引,FTS自带的simple分词器按空格即可正确识别
+ * @author autumn_leaf
+ */
+public final class CjkBigramTokenizer {
+
+    private CjkBigramTokenizer() {
+    }
+
+    /**
+     * 把文本切分成写入全文索引的词序列
+     * @param text 原始文本
+     * @return 以空格分隔的词
+     */
+    public static String tokenize(String text) {
+        StringBuilder builder = new StringBuilder();
+        for (String token : split(text)) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(token);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 把用户输入的搜索词转换为FTS的MATCH表达式
+     * 每段中文转换为相邻二元词组成的短语以保证字序一致,多个词之间为"且"的关系,
+     * 最后一个词按前缀匹配
+     * @param query 用户输入
+     * @return MATCH表达式,输入中没有可搜索的内容时返回null
+     */
+    public static String toMatchQuery(String query) {
+        List<String> terms = splitTerms(query);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < terms.size(); i++) {
+            String term = terms.get(i);
+            boolean last = i == terms.size() - 1;
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (isCjk(term.codePointAt(0))) {
+                if (term.codePointCount(0, term.length()) == 1) {
+                    //单个汉字:匹配以它开头的二元词或行末单字
+                    builder.append(term).append('*');
+                } else {
+                    builder.append('"').append(tokenizeRun(term, false)).append('"');
+                }
+            } else {
+                builder.append(term);
+                if (last) {
+                    builder.append('*');
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 按空白、标点和字符类型把输入拆成若干段,每段全是中文或全是英文数字
+     */
+    private static List<String> splitTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder current = new StringBuilder();
+        Boolean currentCjk = null;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            boolean cjk = isCjk(codePoint);
+            boolean word = cjk || Character.isLetterOrDigit(codePoint);
+            if (!word || (currentCjk != null && currentCjk != cjk)) {
+                if (current.length() > 0) {
+                    terms.add(current.toString());
+                    current.setLength(0);
+                }
+                currentCjk = null;
+            }
+            if (word) {
+                current.appendCodePoint(cjk ? codePoint : Character.toLowerCase(codePoint));
+                currentCjk = cjk;
+            }
+        }
+        if (current.length() > 0) {
+            terms.add(current.toString());
+        }
+        return terms;
+    }
+
+    private static List<String> split(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String term : splitTerms(text)) {
+            if (isCjk(term.codePointAt(0))) {
+                tokens.add(tokenizeRun(term, true));
+            } else {
+                tokens.add(term);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 把一段连续的中文切分为二元词
+     * @param run 连续中文
+     * @param withTail 是否在末尾补上最后一个单字,写索引时需要,以便单字搜索能命中行末的字
+     */
+    private static String tokenizeRun(String run, boolean withTail) {
+        int[] codePoints = new int[run.codePointCount(0, run.length())];
+        for (int i = 0, offset = 0; i < codePoints.length; i++) {
+            codePoints[i] = run.codePointAt(offset);
+            offset += Character.charCount(codePoints[i]);
+        }
+        if (codePoints.length == 1) {
+            return run;
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.appendCodePoint(codePoints[i]).appendCodePoint(codePoints[i + 1]);
+        }
+        if (withTail) {
+            builder.append(' ').appendCodePoint(codePoints[codePoints.length - 1]);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -3,47 +3,95 @@ package com.leaf.collegeidleapp.util;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 
 import com.leaf.collegeidleapp.bean.Commodity;
+import com.leaf.collegeidleapp.bean.CommodityRowMapper;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * 商品数据库连接类
  * @author : autumn_leaf
  */
-public class CommodityDbHelper extends SQLiteOpenHelper {
+public class CommodityDbHelper {
 
     //定义商品表
     public static final String DB_NAME = "tb_commodity";
 
     /**创建商品表*/
-    private static final String CREATE_COMMODITY_DB = "create table tb_commodity(" +
+    static final String CREATE_COMMODITY_DB = "create table tb_commodity(" +
             "id integer primary key autoincrement," +
             "title text," +
             "category text," +
             "price float," +
             "phone text," +
             "description text," +
-            "picture blob," +
+            "picture blob," + //第2版起图片改存PictureStore,此字段只在升级迁移时读取
             "stuId text)";
 
-    public CommodityDbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
+    //列表摘要中描述保留的最大字数
+    public static final int SUMMARY_DESCRIPTION_LENGTH = 40;
+    /**列表摘要查询的字段,不含联系方式,描述超长时截断*/
+    private static final String SUMMARY_COLUMNS = "id,title,category,priceCents,stuId,pictureKey," +
+            "case when length(description)>" + SUMMARY_DESCRIPTION_LENGTH +
+            " then substr(description,1," + SUMMARY_DESCRIPTION_LENGTH + ")||'…' else description end as description";
 
-    @Override
-    public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_COMMODITY_DB);
-    }
+    //列表每页加载的商品数
+    public static final int PAGE_SIZE = 20;
+    //主界面列表最多同时保留的页数,超出后释放最久未显示的一页
+    public static final int FEED_WINDOW_BLOCKS = 4;
+
+    //价格区间不限时的下限和上限,单位为分
+    public static final int NO_MIN_PRICE = 0;
+    public static final int NO_MAX_PRICE = Integer.MAX_VALUE;
+
+    /**
+     * 全文搜索:标题命中记2分,标题或描述命中记1分,按得分和发布先后排序,
+     * 前两个参数都是同一个MATCH表达式,前者只在标题列中匹配,后两个参数为价格区间
+     */
+    static final String SEARCH_SQL = "select " + SUMMARY_COLUMNS + " from tb_commodity join"
+            + " (select docid,sum(weight) as score from ("
+            + "select docid,2 as weight from tb_commodity_fts where titleTokens match ?"
+            + " union all select docid,1 as weight from tb_commodity_fts where tb_commodity_fts match ?"
+            + ") group by docid) as hits on tb_commodity.id=hits.docid"
+            + " where tb_commodity.priceCents between ? and ?"
+            + " order by hits.score desc,tb_commodity.id desc";
+
+    //附近商品查询:先按外接矩形取出候选商品及其精确坐标,参数依次为最小纬度、最大纬度、最小经度、最大经度
+    private static final String NEARBY_COLUMNS = "select " + SUMMARY_COLUMNS + ",latitude,longitude"
+            + " from tb_commodity join tb_commodity_location on tb_commodity_location.commodityId=tb_commodity.id";
+    /**由R*Tree空间索引筛选候选商品*/
+    static final String NEARBY_SQL = NEARBY_COLUMNS + " where tb_commodity.id in (select id from tb_commodity_geo"
+            + " where maxLat>=? and minLat<=? and maxLng>=? and minLng<=?)";
+    /**不支持R*Tree时由(纬度,经度)索引按纬度范围筛选候选商品*/
+    static final String NEARBY_FALLBACK_SQL = NEARBY_COLUMNS
+            + " where latitude between ? and ? and longitude between ? and ?";
+
+    //分页查询的过滤条件
+    static final String FILTER_CATEGORY = "category=?";
+    static final String FILTER_STU_ID = "stuId=?";
+
+    //商品删除时触发器连带删除评论、收藏和位置,这些表的缓存结果一并清除
+    private static final String[] DELETE_TABLES = new String[]{DB_NAME,"tb_commodity_location",
+            ReviewDbHelper.DB_NAME,MyCollectionDbHelper.DB_NAME};
+
+    //所有商品位置的内存网格索引,第一次查询最近商品时从tb_commodity_location加载,之后随发布和删除增量更新
+    private static GeoHashIndex geoHashIndex;
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    private final AppDatabase database;
+    private final PictureStore pictureStore;
 
+    public CommodityDbHelper(Context context) {
+        database = AppDatabase.getInstance(context);
+        pictureStore = PictureStore.getInstance(context);
     }
 
     /**
@@ -51,123 +99,322 @@ public class CommodityDbHelper extends SQLiteOpenHelper {
      * @param commodity 物品对象
      */
     public boolean AddCommodity(Commodity commodity) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteDatabase db = database.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put("title",commodity.getTitle());
         values.put("category",commodity.getCategory());
-        values.put("price",commodity.getPrice());
+        values.put("priceCents",commodity.getPriceCents());
         values.put("phone",commodity.getPhone());
         values.put("description",commodity.getDescription());
-        values.put("picture",commodity.getPicture());
+        values.put("pictureKey",commodity.getPictureKey());
+        values.put("pictureWidth",commodity.getPictureWidth());
+        values.put("pictureHeight",commodity.getPictureHeight());
         values.put("stuId",commodity.getStuId());
-        db.insert(DB_NAME,null,values);
+        //分词结果由触发器写入全文索引
+        values.put("titleTokens",CjkBigramTokenizer.tokenize(commodity.getTitle()));
+        values.put("descriptionTokens",CjkBigramTokenizer.tokenize(commodity.getDescription()));
+        //商品和位置在同一个事务中写入
+        db.beginTransaction();
+        try {
+            long id = db.insert(DB_NAME,null,values);
+            if (id < 0) {
+                return false;
+            }
+            if (commodity.getLatitude() != null && commodity.getLongitude() != null) {
+                values.clear();
+                values.put("commodityId",id);
+                values.put("latitude",commodity.getLatitude());
+                values.put("longitude",commodity.getLongitude());
+                db.insertOrThrow("tb_commodity_location",null,values);
+            }
+            db.setTransactionSuccessful();
+            commodity.setId((int) id);
+        } finally {
+            db.endTransaction();
+        }
         values.clear();
+        //提交后再通知,之前开始的查询不会把旧结果放回缓存,观察者重新查询时读到新商品
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME,"tb_commodity_location");
+        if (commodity.getLatitude() != null && commodity.getLongitude() != null) {
+            indexLocation(commodity.getId(),commodity.getLatitude(),commodity.getLongitude());
+        }
         return true;
     }
 
     /**
-     * 通过学号查找我的发布物品信息
+     * 按(价格,编号)打开价格区间内所有商品的列表,滑动到哪里才读取哪里的商品摘要,
+     * 最多保留FEED_WINDOW_BLOCKS页在内存中
+     * @param minCents 最低价格(分),不限时为NO_MIN_PRICE
+     * @param maxCents 最高价格(分),不限时为NO_MAX_PRICE
+     * @return 商品摘要列表,不再使用时需要关闭
+     */
+    public CursorList<Commodity> openCommodityList(int minCents,int maxCents) {
+        List<String> args = new ArrayList<>();
+        String sql = buildPageSql(null,null,minCents,maxCents,null,0,args);
+        SQLiteDatabase db = database.getWritableDatabase();
+        Cursor cursor = db.rawQuery(sql,args.toArray(new String[0]));
+        return new CursorList<>(cursor,new CommodityRowMapper(),PAGE_SIZE,FEED_WINDOW_BLOCKS);
+    }
+
+    /**
+     * 按(价格,编号)分页读取某一类别、某一价格区间的商品,由(类别,价格)索引按范围读取
+     * @param category 类别
+     * @param minCents 最低价格(分),不限时为NO_MIN_PRICE
+     * @param maxCents 最高价格(分),不限时为NO_MAX_PRICE
+     * @param after 上一页的最后一个商品,为null时读取第一页
+     * @param pageSize 每页数量
+     * @return 商品摘要列表
+     */
+    public List<Commodity> readCommodityTypePage(String category,int minCents,int maxCents,Commodity after,int pageSize) {
+        return readPage(FILTER_CATEGORY,category,minCents,maxCents,after,pageSize);
+    }
+
+    /**
+     * 按(价格,编号)分页读取我发布的商品
      * @param stuId 学生学号
-     * @return 查找到的物品
-     */
-    public List<Commodity> readMyCommodities(String stuId) {
-        List<Commodity> myCommodities = new ArrayList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_commodity where stuId=?",new String[]{stuId});
-        if(cursor.moveToFirst()) {
-            do {
-                String title = cursor.getString(cursor.getColumnIndex("title"));
-                String category = cursor.getString(cursor.getColumnIndex("category"));
-                float price = cursor.getFloat(cursor.getColumnIndex("price"));
-                String phone = cursor.getString(cursor.getColumnIndex("phone"));
-                String description = cursor.getString(cursor.getColumnIndex("description"));
-                byte[] picture = cursor.getBlob(cursor.getColumnIndex("picture"));
-                Commodity commodity = new Commodity();
-                commodity.setTitle(title);
-                commodity.setCategory(category);
-                commodity.setPrice(price);
-                commodity.setDescription(description);
-                commodity.setPhone(phone);
-                commodity.setPicture(picture);
-                myCommodities.add(commodity);
-            }while (cursor.moveToNext());
+     * @param after 上一页的最后一个商品,为null时读取第一页
+     * @param pageSize 每页数量
+     * @return 商品摘要列表
+     */
+    public List<Commodity> readMyCommodityPage(String stuId,Commodity after,int pageSize) {
+        return readPage(FILTER_STU_ID,stuId,NO_MIN_PRICE,NO_MAX_PRICE,after,pageSize);
+    }
+
+    /**
+     * 按标题和描述搜索商品,支持中文和前缀匹配
+     * @param query 用户输入的搜索词
+     * @param minCents 最低价格(分),不限时为NO_MIN_PRICE
+     * @param maxCents 最高价格(分),不限时为NO_MAX_PRICE
+     * @param offset 跳过前面已加载的结果数
+     * @param pageSize 每页数量
+     * @return 按相关度排序的商品摘要列表
+     */
+    public List<Commodity> searchCommodities(String query,int minCents,int maxCents,int offset,int pageSize) {
+        String match = CjkBigramTokenizer.toMatchQuery(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        return readCachedSummaries(SEARCH_SQL + " limit " + pageSize + " offset " + offset,
+                new String[]{match,match,String.valueOf(minCents),String.valueOf(maxCents)});
+    }
+
+    /**
+     * 查询发布位置在某点附近的商品,按精确距离由近到远排序
+     * 空间索引只按外接矩形筛选,矩形四角超出半径的商品再按球面距离剔除
+     * @param latitude 当前纬度
+     * @param longitude 当前经度
+     * @param radiusMeters 半径(米)
+     * @param limit 最多返回的数量
+     * @return 商品摘要列表,距离记录在distance中
+     */
+    public List<Commodity> readNearbyCommodities(double latitude,double longitude,double radiusMeters,int limit) {
+        double[] box = DistanceCalculator.boundingBox(latitude,longitude,radiusMeters);
+        String[] args = new String[]{String.valueOf(box[0]),String.valueOf(box[1]),
+                String.valueOf(box[2]),String.valueOf(box[3])};
+        SQLiteDatabase db = database.getWritableDatabase();
+        boolean hasGeoIndex = DatabaseUtils.longForQuery(db,
+                "select count(*) from sqlite_master where name='tb_commodity_geo'",null) > 0;
+        List<Commodity> nearby = new ArrayList<>();
+        for (Commodity commodity : readSummaries(hasGeoIndex ? NEARBY_SQL : NEARBY_FALLBACK_SQL,args)) {
+            double distance = DistanceCalculator.calculateDistance(latitude,longitude,
+                    commodity.getLatitude(),commodity.getLongitude());
+            if (distance <= radiusMeters) {
+                commodity.setDistance(distance);
+                nearby.add(commodity);
+            }
+        }
+        Collections.sort(nearby,new Comparator<Commodity>() {
+            @Override
+            public int compare(Commodity a, Commodity b) {
+                return Double.compare(a.getDistance(),b.getDistance());
+            }
+        });
+        return nearby.size() > limit ? new ArrayList<>(nearby.subList(0,limit)) : nearby;
+    }
+
+    /**
+     * 查询离某点最近的k件有发布位置的商品,不限半径
+     * 由内存网格索引找出最近的k个编号,只读取这k件商品的摘要,不需要对全部商品排序
+     * @param latitude 当前纬度
+     * @param longitude 当前经度
+     * @param k 返回的数量
+     * @return 按距离由近到远排列的商品摘要,距离记录在distance中
+     */
+    public List<Commodity> readNearestCommodities(double latitude,double longitude,int k) {
+        List<GeoHashIndex.Neighbor> neighbors = geoHashIndex(database.getWritableDatabase()).nearest(latitude,longitude,k);
+        if (neighbors.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder sql = new StringBuilder(NEARBY_COLUMNS + " where tb_commodity.id in (");
+        String[] args = new String[neighbors.size()];
+        for (int i = 0; i < neighbors.size(); i++) {
+            sql.append(i == 0 ? "?" : ",?");
+            args[i] = String.valueOf(neighbors.get(i).id);
+        }
+        sql.append(")");
+        Map<Integer,Commodity> byId = new HashMap<>();
+        for (Commodity commodity : readSummaries(sql.toString(),args)) {
+            byId.put(commodity.getId(),commodity);
         }
+        List<Commodity> nearest = new ArrayList<>();
+        for (GeoHashIndex.Neighbor neighbor : neighbors) {
+            Commodity commodity = byId.get(neighbor.id);
+            //索引与数据库不一致时(如商品在查询期间被删除)跳过
+            if (commodity != null) {
+                commodity.setDistance(neighbor.distance);
+                nearest.add(commodity);
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * 根据编号读取商品的完整信息,进入商品详情时才调用
+     * @param id 商品编号
+     * @return 商品对象,不存在时返回null
+     */
+    public Commodity readCommodity(int id) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        Cursor cursor = db.rawQuery("select id,title,category,priceCents,phone,description,pictureKey,pictureWidth,pictureHeight,stuId"
+                + " from tb_commodity where id=?",new String[]{String.valueOf(id)});
+        Commodity commodity = new CommodityRowMapper().mapFirst(cursor);
         cursor.close();
-        return myCommodities;
-    }
-
-    /**
-     * 获取所有的商品信息
-     * @return 所有的商品列表
-     */
-    public List<Commodity> readAllCommodities() {
-        List<Commodity> allCommodities = new ArrayList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_commodity order by price",null);
-        if(cursor.moveToFirst()) {
-            do {
-                String title = cursor.getString(cursor.getColumnIndex("title"));
-                String category = cursor.getString(cursor.getColumnIndex("category"));
-                float price = cursor.getFloat(cursor.getColumnIndex("price"));
-                String phone = cursor.getString(cursor.getColumnIndex("phone"));
-                String description = cursor.getString(cursor.getColumnIndex("description"));
-                byte[] picture = cursor.getBlob(cursor.getColumnIndex("picture"));
-                String stuId = cursor.getString(cursor.getColumnIndex("stuId"));
-                Commodity commodity = new Commodity();
-                commodity.setTitle(title);
-                commodity.setCategory(category);
-                commodity.setPrice(price);
-                commodity.setDescription(description);
-                commodity.setPhone(phone);
-                commodity.setPicture(picture);
-                commodity.setStuId(stuId);
-                allCommodities.add(commodity);
-            }while (cursor.moveToNext());
+        return commodity;
+    }
+
+    /**
+     * 根据编号删除商品
+     * @param id 商品编号
+     */
+    public void deleteMyCommodity(int id) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        String[] args = new String[]{String.valueOf(id)};
+        //记录被删除行引用的图片,删除后清理不再被引用的图片文件
+        String pictureKey = null;
+        Cursor cursor = db.rawQuery("select pictureKey from " + DB_NAME + " where id=?",args);
+        if (cursor.moveToFirst()) {
+            pictureKey = cursor.getString(0);
         }
         cursor.close();
-        return allCommodities;
+        db.delete(DB_NAME,"id=?",args);
+        InvalidationTracker.getInstance().notifyTablesChanged(DELETE_TABLES);
+        unindexLocation(id);
+        pictureStore.releaseIfUnused(db,pictureKey);
     }
 
     /**
-     * 根据商品名称删除商品
-     * @param title 商品名称
-     * @param description 商品地址
-     * @param price 商品价格
+     * 取得内存网格索引,第一次使用时加载全部商品位置
      */
-    public void deleteMyCommodity(String title,String description,float price) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        if(db.isOpen()) {
-            db.delete(DB_NAME,"title=? and description=? and price=?",new String[]{title,description,String.valueOf(price)});
-            db.close();
+    private static synchronized GeoHashIndex geoHashIndex(SQLiteDatabase db) {
+        if (geoHashIndex == null) {
+            GeoHashIndex index = new GeoHashIndex();
+            Cursor cursor = db.rawQuery("select commodityId,latitude,longitude from tb_commodity_location",null);
+            while (cursor.moveToNext()) {
+                index.put(cursor.getInt(0),cursor.getDouble(1),cursor.getDouble(2));
+            }
+            cursor.close();
+            geoHashIndex = index;
         }
+        return geoHashIndex;
     }
 
     /**
-     * 读取不同类别的商品信息
-     * @param category 类别
-     * @return 商品列表
-     */
-    public List<Commodity> readCommodityType(String category) {
-        List<Commodity> differentTypes = new ArrayList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_commodity where category=?",new String[]{category});
-        if(cursor.moveToFirst()) {
-            do{
-                String title = cursor.getString(cursor.getColumnIndex("title"));
-                float price = cursor.getFloat(cursor.getColumnIndex("price"));
-                String description = cursor.getString(cursor.getColumnIndex("description"));
-                byte[] picture = cursor.getBlob(cursor.getColumnIndex("picture"));
-                Commodity commodity = new Commodity();
-                commodity.setTitle(title);
-                commodity.setPrice(price);
-                commodity.setCategory(category);
-                commodity.setDescription(description);
-                commodity.setPicture(picture);
-                differentTypes.add(commodity);
-            }while (cursor.moveToNext());
+     * 商品位置写入数据库后同步到内存网格索引,索引尚未加载时忽略,加载时会从数据库读到
+     */
+    static synchronized void indexLocation(int id,double latitude,double longitude) {
+        if (geoHashIndex != null) {
+            geoHashIndex.put(id,latitude,longitude);
+        }
+    }
+
+    /**
+     * 商品删除后从内存网格索引中移除
+     */
+    static synchronized void unindexLocation(int id) {
+        if (geoHashIndex != null) {
+            geoHashIndex.remove(id);
         }
+    }
+
+    /**
+     * 键集分页:从上一页最后一项的(价格,编号)之后继续读取,
+     * 不使用offset,翻到多少页都只扫描一页的数据
+     */
+    private List<Commodity> readPage(String filter,String filterArg,int minCents,int maxCents,Commodity after,int pageSize) {
+        List<String> args = new ArrayList<>();
+        String sql = buildPageSql(filter,filterArg,minCents,maxCents,after,pageSize,args);
+        return readCachedSummaries(sql,args.toArray(new String[0]));
+    }
+
+    /**
+     * 拼接按(价格,编号)排序的商品摘要查询,分页读取、首页列表和执行计划测试共用同一条语句
+     * @param filter 额外的过滤条件,FILTER_CATEGORY或FILTER_STU_ID,为null时不过滤
+     * @param filterArg 过滤条件的参数
+     * @param minCents 最低价格(分),不限时为NO_MIN_PRICE
+     * @param maxCents 最高价格(分),不限时为NO_MAX_PRICE
+     * @param after 上一页的最后一个商品,为null时从头读取
+     * @param pageSize 每页数量,不大于0时不限制
+     * @param args 接收按顺序绑定的参数
+     * @return SQL语句
+     */
+    static String buildPageSql(String filter,String filterArg,int minCents,int maxCents,Commodity after,int pageSize,List<String> args) {
+        StringBuilder sql = new StringBuilder("select " + SUMMARY_COLUMNS + " from tb_commodity where 1=1");
+        if (filter != null) {
+            sql.append(" and ").append(filter);
+            args.add(filterArg);
+        }
+        if (after != null) {
+            //从上一页最后一项的价格开始按索引读取,价格相同的再按编号往后
+            appendPriceRange(sql,args,Math.max(minCents,after.getPriceCents()),maxCents);
+            sql.append(" and (priceCents>? or id>?)");
+            args.add(String.valueOf(after.getPriceCents()));
+            args.add(String.valueOf(after.getId()));
+        } else {
+            appendPriceRange(sql,args,minCents,maxCents);
+        }
+        sql.append(" order by priceCents,id");
+        if (pageSize > 0) {
+            sql.append(" limit ").append(pageSize);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 追加价格区间条件,不限的一端不追加,让查询计划按其他条件选择索引
+     */
+    private static void appendPriceRange(StringBuilder sql,List<String> args,int minCents,int maxCents) {
+        if (minCents > NO_MIN_PRICE) {
+            sql.append(" and priceCents>=?");
+            args.add(String.valueOf(minCents));
+        }
+        if (maxCents < NO_MAX_PRICE) {
+            sql.append(" and priceCents<=?");
+            args.add(String.valueOf(maxCents));
+        }
+    }
+
+    /**
+     * 执行摘要查询,每个商品只包含列表展示需要的字段,
+     * 不含联系方式,描述被截断,图片只保留key
+     */
+    private List<Commodity> readSummaries(String sql,String[] args) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        Cursor cursor = db.rawQuery(sql,args);
+        List<Commodity> commodities = new CommodityRowMapper().mapAll(cursor);
         cursor.close();
-        return differentTypes;
+        return commodities;
+    }
+
+    /**
+     * 执行只读取商品表的摘要查询,结果缓存在QueryCache中,商品表被写入后失效
+     */
+    private List<Commodity> readCachedSummaries(final String sql,final String[] args) {
+        return QueryCache.getInstance().query(sql,args,new String[]{DB_NAME},new Callable<List<Commodity>>() {
+            @Override
+            public List<Commodity> call() {
+                return readSummaries(sql,args);
+            }
+        });
     }
 
 }
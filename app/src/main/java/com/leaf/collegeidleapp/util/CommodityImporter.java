@@ -0,0 +1,424 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import com.leaf.collegeidleapp.bean.Commodity;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 商品批量导入类,用于初始化校园市场或恢复数据
+ * 支持CSV和JSON两种格式,字段名为title,category,price,phone,description,stuId,picture,latitude,longitude,
+ * 其中price以元为单位,picture为图片目录下的文件名,经纬度可以省略。导入时使用预编译的插入语句,每BATCH_SIZE行提交一次事务,
+ * 每批的图片在开始事务前转存,事务中只写数据库
+ * @author autumn_leaf
+ */
+public class CommodityImporter {
+
+    private static final String TAG = "CommodityImporter";
+
+    //每个事务插入的行数,兼顾导入速度和单次持有写锁的时间
+    public static final int BATCH_SIZE = 1000;
+
+    //导入目录中的文件名,个人中心的导入按钮从这里读取
+    public static final String CSV_FILE_NAME = "commodities.csv";
+    public static final String JSON_FILE_NAME = "commodities.json";
+    public static final String IMAGE_DIR_NAME = "images";
+
+    static final String INSERT_COMMODITY = "insert into tb_commodity(title,category,priceCents,phone,description,"
+            + "pictureKey,pictureWidth,pictureHeight,stuId,titleTokens,descriptionTokens) values(?,?,?,?,?,?,?,?,?,?,?)";
+    private static final String INSERT_LOCATION = "insert into tb_commodity_location(commodityId,latitude,longitude) values(?,?,?)";
+
+    /**
+     * 导入进度回调,每提交一个事务调用一次
+     */
+    public interface ProgressListener {
+        /**
+         * @param imported 已导入的行数
+         * @param skipped 因格式错误跳过的行数
+         * @param rowsPerSecond 当前平均每秒导入的行数
+         */
+        void onProgress(int imported, int skipped, double rowsPerSecond);
+    }
+
+    /**
+     * 导入结果
+     */
+    public static class Result {
+        public final int imported;
+        public final int skipped;
+        public final long elapsedMillis;
+
+        Result(int imported, int skipped, long elapsedMillis) {
+            this.imported = imported;
+            this.skipped = skipped;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedMillis == 0 ? imported : imported * 1000.0 / elapsedMillis;
+        }
+    }
+
+    /**
+     * 逐条读取记录,每条记录为字段名到字段值的映射,读完返回null
+     */
+    interface RecordReader {
+        Map<String, String> next() throws IOException;
+    }
+
+    private final AppDatabase database;
+    private final PictureStore pictureStore;
+
+    public CommodityImporter(Context context) {
+        database = AppDatabase.getInstance(context);
+        pictureStore = PictureStore.getInstance(context);
+    }
+
+    /**
+     * 导入目录中的commodities.csv或commodities.json,图片放在目录下的images中
+     * @param dir 导入目录
+     * @param listener 进度回调,可以为null
+     * @return 导入结果,目录中没有可导入的文件时返回null
+     * @throws IOException 读取失败,已提交的批次保留,当前批次回滚
+     */
+    public Result importDirectory(File dir, ProgressListener listener) throws IOException {
+        File imageDir = new File(dir, IMAGE_DIR_NAME);
+        if (!imageDir.isDirectory()) {
+            imageDir = null;
+        }
+        File csv = new File(dir, CSV_FILE_NAME);
+        File json = new File(dir, JSON_FILE_NAME);
+        File file = csv.isFile() ? csv : json.isFile() ? json : null;
+        if (file == null) {
+            return null;
+        }
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            return file == csv ? importCsv(reader, imageDir, listener) : importJson(reader, imageDir, listener);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 导入CSV,第一行为字段名,字段中含逗号、引号或换行时用双引号包裹
+     * @param reader CSV内容
+     * @param imageDir 图片目录,为null时忽略picture字段
+     * @param listener 进度回调,可以为null
+     * @return 导入结果
+     * @throws IOException 读取失败,已提交的批次保留,当前批次回滚
+     */
+    public Result importCsv(Reader reader, File imageDir, ProgressListener listener) throws IOException {
+        return importRecords(new CsvRecordReader(reader), imageDir, listener);
+    }
+
+    /**
+     * 导入JSON,内容为商品对象组成的数组
+     * @param reader JSON内容
+     * @param imageDir 图片目录,为null时忽略picture字段
+     * @param listener 进度回调,可以为null
+     * @return 导入结果
+     * @throws IOException 读取失败,已提交的批次保留,当前批次回滚
+     */
+    public Result importJson(Reader reader, File imageDir, ProgressListener listener) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.beginArray();
+        return importRecords(new JsonRecordReader(jsonReader), imageDir, listener);
+    }
+
+    private Result importRecords(RecordReader records, File imageDir, ProgressListener listener) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        int imported = 0;
+        int skipped = 0;
+        SQLiteDatabase db = database.getWritableDatabase();
+        //整个导入过程复用同一条预编译语句,每行只重新绑定参数
+        SQLiteStatement insert = db.compileStatement(INSERT_COMMODITY);
+        SQLiteStatement insertLocation = db.compileStatement(INSERT_LOCATION);
+        try {
+            Map<String, String> record = records.next();
+            List<Commodity> batch = new ArrayList<>(BATCH_SIZE);
+            while (record != null) {
+                //先在事务外解析并转存图片,哈希和写文件不占用写锁
+                batch.clear();
+                while (record != null && batch.size() < BATCH_SIZE) {
+                    try {
+                        Commodity commodity = parseRecord(record);
+                        savePicture(commodity, record, imageDir);
+                        batch.add(commodity);
+                    } catch (IllegalArgumentException e) {
+                        Log.w(TAG, "跳过格式错误的记录：" + record, e);
+                        skipped++;
+                    }
+                    record = records.next();
+                }
+                //WAL模式下非独占事务不阻塞列表页的读取
+                db.beginTransactionNonExclusive();
+                //本批写入的位置,提交后再加入内存网格索引
+                Map<Long, Commodity> located = new HashMap<>();
+                boolean committed = false;
+                try {
+                    for (Commodity commodity : batch) {
+                        bindCommodity(insert, commodity);
+                        long id = insert.executeInsert();
+                        if (commodity.getLatitude() != null && commodity.getLongitude() != null) {
+                            insertLocation.bindLong(1, id);
+                            insertLocation.bindDouble(2, commodity.getLatitude());
+                            insertLocation.bindDouble(3, commodity.getLongitude());
+                            insertLocation.executeInsert();
+                            located.put(id, commodity);
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                    committed = true;
+                } finally {
+                    db.endTransaction();
+                    for (Commodity commodity : batch) {
+                        pictureStore.unpin(commodity.getPictureKey());
+                        if (!committed) {
+                            //本批回滚后,已经转存但没有商品引用的图片一并删除
+                            pictureStore.releaseIfUnused(db, commodity.getPictureKey());
+                        }
+                    }
+                }
+                imported += batch.size();
+                InvalidationTracker.getInstance().notifyTablesChanged(CommodityDbHelper.DB_NAME, "tb_commodity_location");
+                for (Map.Entry<Long, Commodity> entry : located.entrySet()) {
+                    CommodityDbHelper.indexLocation(entry.getKey().intValue(),
+                            entry.getValue().getLatitude(), entry.getValue().getLongitude());
+                }
+                if (listener != null) {
+                    long elapsed = SystemClock.elapsedRealtime() - start;
+                    listener.onProgress(imported, skipped, new Result(imported, skipped, elapsed).rowsPerSecond());
+                }
+            }
+        } finally {
+            insert.close();
+            insertLocation.close();
+        }
+        return new Result(imported, skipped, SystemClock.elapsedRealtime() - start);
+    }
+
+    /**
+     * 把一条记录转换为商品,不处理图片
+     * @throws IllegalArgumentException 缺少标题,价格或经纬度格式错误
+     */
+    static Commodity parseRecord(Map<String, String> record) {
+        String title = record.get("title");
+        if (title == null || title.isEmpty()) {
+            throw new IllegalArgumentException("缺少标题");
+        }
+        Commodity commodity = new Commodity();
+        commodity.setTitle(title);
+        commodity.setCategory(record.get("category"));
+        String price = record.get("price");
+        commodity.setPriceCents(price == null || price.isEmpty() ? 0 : PriceUtils.parseCents(price));
+        commodity.setPhone(record.get("phone"));
+        commodity.setDescription(record.get("description"));
+        commodity.setStuId(record.get("stuId"));
+        String latitude = record.get("latitude");
+        String longitude = record.get("longitude");
+        if (latitude != null && !latitude.isEmpty() && longitude != null && !longitude.isEmpty()) {
+            double lat = Double.parseDouble(latitude);
+            double lng = Double.parseDouble(longitude);
+            if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+                throw new IllegalArgumentException("经纬度超出范围：" + latitude + "," + longitude);
+            }
+            commodity.setLatitude(lat);
+            commodity.setLongitude(lng);
+        }
+        return commodity;
+    }
+
+    /**
+     * 把记录中的图片转存到PictureStore
+     * @throws IllegalArgumentException 图片不存在
+     * @throws IOException 读取或保存图片失败
+     */
+    private void savePicture(Commodity commodity, Map<String, String> record, File imageDir) throws IOException {
+        String picture = record.get("picture");
+        if (imageDir != null && picture != null && !picture.isEmpty()) {
+            File file = new File(imageDir, picture);
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("图片不存在：" + file);
+            }
+            byte[] data = readFile(file);
+            int[] size = PictureStore.decodeSize(data);
+            String key = pictureStore.save(data);
+            if (key == null) {
+                throw new IOException("保存图片失败：" + file);
+            }
+            commodity.setPictureKey(key);
+            commodity.setPictureWidth(size[0]);
+            commodity.setPictureHeight(size[1]);
+        }
+    }
+
+    private static void bindCommodity(SQLiteStatement insert, Commodity commodity) {
+        insert.clearBindings();
+        bindString(insert, 1, commodity.getTitle());
+        bindString(insert, 2, commodity.getCategory());
+        insert.bindLong(3, commodity.getPriceCents());
+        bindString(insert, 4, commodity.getPhone());
+        bindString(insert, 5, commodity.getDescription());
+        bindString(insert, 6, commodity.getPictureKey());
+        insert.bindLong(7, commodity.getPictureWidth());
+        insert.bindLong(8, commodity.getPictureHeight());
+        bindString(insert, 9, commodity.getStuId());
+        insert.bindString(10, CjkBigramTokenizer.tokenize(commodity.getTitle()));
+        insert.bindString(11, CjkBigramTokenizer.tokenize(commodity.getDescription()));
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                int read = in.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("读取图片不完整：" + file);
+                }
+                offset += read;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * CSV记录读取,按RFC 4180处理双引号转义和引号内的换行
+     */
+    static class CsvRecordReader implements RecordReader {
+
+        private final BufferedReader reader;
+        private List<String> header;
+
+        CsvRecordReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = readRow();
+                if (header == null) {
+                    return null;
+                }
+            }
+            List<String> row = readRow();
+            //跳过空行
+            while (row != null && row.size() == 1 && row.get(0).isEmpty()) {
+                row = readRow();
+            }
+            if (row == null) {
+                return null;
+            }
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.size() && i < row.size(); i++) {
+                record.put(header.get(i).trim(), row.get(i));
+            }
+            return record;
+        }
+
+        /**
+         * 读取一行的所有字段,到达末尾时返回null
+         */
+        private List<String> readRow() throws IOException {
+            int c = reader.read();
+            if (c < 0) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c >= 0) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+
+    /**
+     * JSON记录读取,每个对象的数字和布尔值也按字符串读取,嵌套的值忽略
+     */
+    private static class JsonRecordReader implements RecordReader {
+
+        private final JsonReader reader;
+
+        JsonRecordReader(JsonReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (!reader.hasNext()) {
+                reader.endArray();
+                return null;
+            }
+            Map<String, String> record = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                JsonToken token = reader.peek();
+                if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+                    record.put(name, reader.nextString());
+                } else if (token == JsonToken.BOOLEAN) {
+                    record.put(name, String.valueOf(reader.nextBoolean()));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return record;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.leaf.collegeidleapp.util;
+
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.Closeable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由打开的查询结果支撑的只读列表
+ * 只有被访问到的行才转换为实体对象,按块缓存并淘汰最久未访问的块,
+ * 内存占用只与窗口大小有关,与结果总行数无关。不再使用时需要调用close关闭cursor
+ * 调用loadInBackground后,未缓存的块在后台线程读取,读取完成前get返回null;
+ * 等待读取的块超过窗口大小时,最早请求的块已经滑过,还在排队的直接取消
+ * @author autumn_leaf
+ */
+public class CursorList<T> extends AbstractList<T> implements Closeable {
+
+    //读取请求因queryIO队列已满被拒绝后重新提交的间隔
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final Cursor cursor;
+    private final RowMapper<T> mapper;
+    private final int count;
+    private final int blockSize;
+    private final int maxBlocks;
+    //块编号到该块实体的映射,按访问顺序排列
+    private final LinkedHashMap<Integer, List<T>> blocks;
+    //后台读取时使用,为null时在调用get的线程上直接读取
+    private OnBlockLoadedListener listener;
+    //正在后台读取的块,按请求顺序排列
+    private final LinkedHashMap<Integer, BlockLoad> loadingBlocks = new LinkedHashMap<>();
+    //主线程上记录是否已关闭,后台关闭cursor之前就不再接收读取结果
+    private boolean closed;
+    //每一行的编号,第一次调用readIds时读取
+    private volatile long[] ids;
+
+    /**
+     * 后台读取的块可用时在主线程回调,此时应刷新这一块对应的行
+     */
+    public interface OnBlockLoadedListener {
+        /**
+         * @param start 这一块第一行的位置
+         * @param count 这一块的行数
+         */
+        void onBlockLoaded(int start, int count);
+    }
+
+    /**
+     * @param cursor 查询结果,由列表负责关闭
+     * @param mapper 行转换器
+     * @param blockSize 每次从cursor连续读取的行数
+     * @param maxBlocks 最多保留的块数,窗口大小为blockSize*maxBlocks
+     */
+    public CursorList(Cursor cursor, RowMapper<T> mapper, int blockSize, final int maxBlocks) {
+        this.cursor = cursor;
+        this.mapper = mapper;
+        this.blockSize = blockSize;
+        this.maxBlocks = maxBlocks;
+        count = cursor.getCount();
+        mapper.bind(cursor);
+        blocks = new LinkedHashMap<Integer, List<T>>(maxBlocks + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+        }
+        int block = index / blockSize;
+        List<T> rows = blocks.get(block);
+        if (rows == null) {
+            if (listener != null) {
+                loadBlock(block);
+                return null;
+            }
+            rows = readBlock(block);
+            blocks.put(block, rows);
+        }
+        return rows.get(index - block * blockSize);
+    }
+
+    /**
+     * 之后未缓存的块改为在AppExecutors.queryIO中读取,主线程不再访问cursor,
+     * 必须在主线程调用,此后get和close也只能在主线程调用
+     * @param listener 块读取完成后的回调
+     */
+    public void loadInBackground(OnBlockLoadedListener listener) {
+        this.listener = listener;
+    }
+
+    private void loadBlock(int block) {
+        if (closed || loadingBlocks.containsKey(block)) {
+            return;
+        }
+        if (loadingBlocks.size() >= maxBlocks) {
+            //快速滑动时先请求的块读完也会被挤出窗口,取消最早一个还在排队的
+            Iterator<BlockLoad> iterator = loadingBlocks.values().iterator();
+            while (iterator.hasNext()) {
+                BlockLoad eldest = iterator.next();
+                if (AppExecutors.getInstance().queryIO().remove(eldest)) {
+                    eldest.cancelled = true;
+                    iterator.remove();
+                    break;
+                }
+            }
+        }
+        BlockLoad load = new BlockLoad(block);
+        loadingBlocks.put(block, load);
+        AppExecutors.getInstance().queryIO().execute(load);
+    }
+
+    /**
+     * 在queryIO中读取一块,取消后不再读取
+     */
+    private class BlockLoad implements Runnable, AppExecutors.Rejectable {
+        final int block;
+        volatile boolean cancelled;
+
+        BlockLoad(int block) {
+            this.block = block;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final List<T> rows;
+            //cursor不是线程安全的,同一时间只允许一个线程移动
+            synchronized (cursor) {
+                if (cursor.isClosed()) {
+                    return;
+                }
+                rows = readBlock(block);
+            }
+            AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (loadingBlocks.get(block) == BlockLoad.this) {
+                        loadingBlocks.remove(block);
+                    }
+                    if (!closed) {
+                        blocks.put(block, rows);
+                        listener.onBlockLoaded(block * blockSize, rows.size());
+                    }
+                }
+            });
+        }
+
+        /**
+         * 队列已满时稍后重新提交,期间被取消或列表已关闭则放弃
+         */
+        @Override
+        public void onRejected() {
+            new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (!cancelled && !closed) {
+                        AppExecutors.getInstance().queryIO().execute(BlockLoad.this);
+                    }
+                }
+            }, RETRY_DELAY_MILLIS);
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 按顺序读取每一行的编号,用于在后台与另一次查询的结果比较,只读取编号列,不转换为实体对象。
+     * 可以在任意线程调用,与后台读取块互斥,结果保存下来供下次使用
+     * @param idColumn 编号列名
+     * @return 每一行的编号,列表已关闭时返回null
+     */
+    public long[] readIds(String idColumn) {
+        long[] result = ids;
+        if (result != null) {
+            return result;
+        }
+        synchronized (cursor) {
+            if (cursor.isClosed()) {
+                return null;
+            }
+            int column = cursor.getColumnIndexOrThrow(idColumn);
+            result = new long[count];
+            for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+                result[i] = cursor.getLong(column);
+            }
+        }
+        ids = result;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        blocks.clear();
+        if (listener == null) {
+            cursor.close();
+            return;
+        }
+        //还在排队的读取不再需要
+        for (BlockLoad load : loadingBlocks.values()) {
+            load.cancelled = true;
+            AppExecutors.getInstance().queryIO().remove(load);
+        }
+        loadingBlocks.clear();
+        //后台可能正在读取,等读取结束后在后台关闭
+        AppExecutors.getInstance().queryIO().execute(new CloseTask());
+    }
+
+    /**
+     * 在后台关闭cursor,queryIO队列已满时改在diskIO中关闭,保证cursor一定被关闭
+     */
+    private class CloseTask implements Runnable, AppExecutors.Rejectable {
+        @Override
+        public void run() {
+            synchronized (cursor) {
+                cursor.close();
+            }
+        }
+
+        @Override
+        public void onRejected() {
+            AppExecutors.getInstance().diskIO().execute(this);
+        }
+    }
+
+    private List<T> readBlock(int block) {
+        if (cursor.isClosed()) {
+            throw new IllegalStateException("CursorList已关闭");
+        }
+        int start = block * blockSize;
+        int end = Math.min(start + blockSize, count);
+        List<T> rows = new ArrayList<>(end - start);
+        //块内连续移动,cursor只需要在跨越窗口时重新填充
+        if (cursor.moveToPosition(start)) {
+            do {
+                rows.add(mapper.map(cursor));
+            } while (rows.size() < end - start && cursor.moveToNext());
+        }
+        return rows;
+    }
+}
@@ -3,12 +3,15 @@ package com.leaf.collegeidleapp.util;
 
 public class DistanceCalculator {
 
+    // 地球半径（米）
+    private static final int EARTH_RADIUS = 6371000;
+
     /**
      * 计算两个经纬度之间的距离
      */
     public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         // 使用Haversine公式
-        final int R = 6371000; // 地球半径（米）
+        final int R = EARTH_RADIUS;
 
         double latDistance = Math.toRadians(lat2 - lat1);
         double lonDistance = Math.toRadians(lon2 - lon1);
@@ -22,6 +25,28 @@ public class DistanceCalculator {
         return R * c;
     }
 
+    /**
+     * 计算以某点为圆心、半径为radiusMeters的圆的外接经纬度矩形，用于空间索引的初步筛选
+     * 矩形包含极点或跨越180度经线时经度不做限制
+     * @return {最小纬度, 最大纬度, 最小经度, 最大经度}
+     */
+    public static double[] boundingBox(double lat, double lon, double radiusMeters) {
+        double angle = radiusMeters / EARTH_RADIUS;
+        double dLat = Math.toDegrees(angle);
+        double minLat = lat - dLat;
+        double maxLat = lat + dLat;
+        double minLon = -180;
+        double maxLon = 180;
+        if (minLat > -90 && maxLat < 90) {
+            double dLon = Math.toDegrees(Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(lat))));
+            if (lon - dLon >= -180 && lon + dLon <= 180) {
+                minLon = lon - dLon;
+                maxLon = lon + dLon;
+            }
+        }
+        return new double[]{Math.max(minLat, -90), Math.min(maxLat, 90), minLon, maxLon};
+    }
+
     /**
      * 格式化距离显示
      */
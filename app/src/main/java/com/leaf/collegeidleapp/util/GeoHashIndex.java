@@ -0,0 +1,249 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 内存中的地理网格索引,按6位geohash单元格存放商品坐标,用于查询离某点最近的k件商品
+ * 查询从所在单元格开始逐圈向外扩展,用大小为k的大顶堆保留当前最近的商品,外圈不可能更近时停止;
+ * 经度方向在±180°处首尾相接,日期变更线两侧的商品互为邻居。
+ * 候选商品按单位球面上的弦长比较,弦长与球面距离单调一致且不需要三角函数,
+ * 只对最终的k个结果用DistanceCalculator计算球面距离
+ * @author autumn_leaf
+ */
+public class GeoHashIndex {
+
+    //经度和纬度各占的位数,交错后共30位,即6位base32的geohash,单元格在中纬度约1公里x0.6公里
+    private static final int BITS = 15;
+    private static final int CELLS = 1 << BITS;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    /**
+     * 查询结果
+     */
+    public static class Neighbor {
+        //商品编号
+        public final int id;
+        //球面距离(米)
+        public final double distance;
+
+        Neighbor(int id, double distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+
+    private static class Point {
+        final int id;
+        final double latitude;
+        final double longitude;
+        //单位球面上的坐标,插入时计算一次
+        final double x;
+        final double y;
+        final double z;
+        //查询时与查询点弦长的平方
+        double chord2;
+
+        Point(int id, double latitude, double longitude) {
+            this.id = id;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            double lat = Math.toRadians(latitude);
+            double lng = Math.toRadians(longitude);
+            x = Math.cos(lat) * Math.cos(lng);
+            y = Math.cos(lat) * Math.sin(lng);
+            z = Math.sin(lat);
+        }
+    }
+
+    //单元格(整数形式的geohash)到其中商品的映射
+    private final Map<Long, Map<Integer, Point>> cells = new HashMap<>();
+    //商品编号到所在单元格,删除和移动时使用
+    private final Map<Integer, Long> cellOfId = new HashMap<>();
+
+    /**
+     * 加入或移动一件商品
+     * @param id 商品编号
+     * @param latitude 纬度
+     * @param longitude 经度
+     */
+    public synchronized void put(int id, double latitude, double longitude) {
+        remove(id);
+        long cell = cellKey(column(longitude), row(latitude));
+        Map<Integer, Point> points = cells.get(cell);
+        if (points == null) {
+            points = new HashMap<>();
+            cells.put(cell, points);
+        }
+        points.put(id, new Point(id, latitude, longitude));
+        cellOfId.put(id, cell);
+    }
+
+    /**
+     * 移除一件商品,不存在时忽略
+     * @param id 商品编号
+     */
+    public synchronized void remove(int id) {
+        Long cell = cellOfId.remove(id);
+        if (cell == null) {
+            return;
+        }
+        Map<Integer, Point> points = cells.get(cell);
+        points.remove(id);
+        if (points.isEmpty()) {
+            cells.remove(cell);
+        }
+    }
+
+    public synchronized int size() {
+        return cellOfId.size();
+    }
+
+    /**
+     * 查询离某点最近的k件商品
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @param k 最多返回的数量
+     * @return 按距离由近到远排列的商品
+     */
+    public synchronized List<Neighbor> nearest(double latitude, double longitude, int k) {
+        List<Neighbor> result = new ArrayList<>();
+        if (k <= 0 || cellOfId.isEmpty()) {
+            return result;
+        }
+        Point query = new Point(-1, latitude, longitude);
+        //第ring圈的点与查询点至少隔着ring-1个单元格,按单元格较短的一边(弧度)估计外圈的最近距离
+        double cellAngle = Math.min(Math.toRadians(360.0 / CELLS) * Math.cos(Math.toRadians(latitude)),
+                Math.toRadians(180.0 / CELLS));
+        PriorityQueue<Point> heap = new PriorityQueue<>(k, new Comparator<Point>() {
+            @Override
+            public int compare(Point a, Point b) {
+                return Double.compare(b.chord2, a.chord2);
+            }
+        });
+        int column = column(longitude);
+        int row = row(latitude);
+        int visited = 0;
+        for (int ring = 0; visited < cellOfId.size(); ring++) {
+            if (heap.size() == k && ring > 1 && heap.peek().chord2 <= chord2((ring - 1) * cellAngle)) {
+                break;
+            }
+            if (8L * ring > cells.size() || 2 * ring >= CELLS) {
+                //这一圈的单元格比非空单元格还多,或经度方向已经绕满一周,直接检查剩下的非空单元格
+                for (Map<Integer, Point> points : cells.values()) {
+                    Point any = points.values().iterator().next();
+                    int ringOf = Math.max(columnDistance(column(any.longitude), column), Math.abs(row(any.latitude) - row));
+                    if (ringOf >= ring) {
+                        offer(heap, k, points, query);
+                    }
+                }
+                break;
+            }
+            for (int dx = -ring; dx <= ring; dx++) {
+                visited += offerCell(heap, k, column + dx, row - ring, query);
+                if (ring > 0) {
+                    visited += offerCell(heap, k, column + dx, row + ring, query);
+                }
+            }
+            for (int dy = -ring + 1; dy <= ring - 1; dy++) {
+                visited += offerCell(heap, k, column - ring, row + dy, query);
+                visited += offerCell(heap, k, column + ring, row + dy, query);
+            }
+        }
+        for (Point point : heap) {
+            result.add(new Neighbor(point.id,
+                    DistanceCalculator.calculateDistance(latitude, longitude, point.latitude, point.longitude)));
+        }
+        Collections.sort(result, new Comparator<Neighbor>() {
+            @Override
+            public int compare(Neighbor a, Neighbor b) {
+                return Double.compare(a.distance, b.distance);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 计算某点所在单元格的6位geohash
+     * @param latitude 纬度
+     * @param longitude 经度
+     * @return geohash字符串
+     */
+    public static String geohash(double latitude, double longitude) {
+        long key = cellKey(column(longitude), row(latitude));
+        char[] hash = new char[BITS * 2 / 5];
+        for (int i = hash.length - 1; i >= 0; i--) {
+            hash[i] = BASE32[(int) (key & 31)];
+            key >>>= 5;
+        }
+        return new String(hash);
+    }
+
+    private int offerCell(PriorityQueue<Point> heap, int k, int column, int row, Point query) {
+        if (row < 0 || row >= CELLS) {
+            return 0;
+        }
+        //越过±180°的列从另一侧接上
+        Map<Integer, Point> points = cells.get(cellKey((column % CELLS + CELLS) % CELLS, row));
+        if (points == null) {
+            return 0;
+        }
+        offer(heap, k, points, query);
+        return points.size();
+    }
+
+    private static void offer(PriorityQueue<Point> heap, int k, Map<Integer, Point> points, Point query) {
+        for (Point point : points.values()) {
+            double dx = point.x - query.x;
+            double dy = point.y - query.y;
+            double dz = point.z - query.z;
+            point.chord2 = dx * dx + dy * dy + dz * dz;
+            if (heap.size() < k) {
+                heap.add(point);
+            } else if (point.chord2 < heap.peek().chord2) {
+                heap.poll();
+                heap.add(point);
+            }
+        }
+    }
+
+    /**
+     * 球心角angle(弧度)对应的单位球面弦长的平方
+     */
+    private static double chord2(double angle) {
+        double chord = 2 * Math.sin(Math.min(angle, Math.PI) / 2);
+        return chord * chord;
+    }
+
+    private static int column(double longitude) {
+        return Math.min(CELLS - 1, Math.max(0, (int) Math.floor((longitude + 180) / 360 * CELLS)));
+    }
+
+    /**
+     * 两列之间相隔的列数,取经度方向上较短的一侧
+     */
+    private static int columnDistance(int a, int b) {
+        int distance = Math.abs(a - b);
+        return Math.min(distance, CELLS - distance);
+    }
+
+    private static int row(double latitude) {
+        return Math.min(CELLS - 1, Math.max(0, (int) Math.floor((latitude + 90) / 180 * CELLS)));
+    }
+
+    /**
+     * 经度位和纬度位从高到低交错(经度在前),得到与geohash相同的二进制位
+     */
+    private static long cellKey(int column, int row) {
+        long key = 0;
+        for (int i = BITS - 1; i >= 0; i--) {
+            key = (key << 2) | (((column >> i) & 1) << 1) | ((row >> i) & 1);
+        }
+        return key;
+    }
+}
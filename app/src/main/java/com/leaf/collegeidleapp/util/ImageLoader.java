@@ -0,0 +1,307 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * 商品图片加载器
+ * 在后台从ThumbnailStore读取缩略图,按ImageView的大小缩小解码,结果按商品编号放入按字节计算大小的LRU缓存;
+ * 从缓存中移除且不再显示的位图留作复用,下次解码直接写入它的内存;
+ * ImageView换绑其他商品或被回收时,取消还没完成的解码。
+ * 除解码外的所有方法都必须在主线程调用
+ * @author autumn_leaf
+ */
+public class ImageLoader {
+
+    private static final String TAG = "ImageLoader";
+    //内存缓存占应用最大内存的比例
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+    //等待复用的位图最多占用的字节数
+    private static final int MAX_REUSABLE_BYTES = 4 * 1024 * 1024;
+
+    private static volatile ImageLoader instance;
+
+    private final ThumbnailStore thumbnailStore;
+    private final int screenWidth;
+    //商品编号和目标大小到位图的缓存
+    private final LruCache<String, Bitmap> memoryCache;
+    //当前在缓存中的位图
+    private final Set<Bitmap> cached = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+    //每个ImageView当前显示的位图和还没完成的请求,页面销毁后随ImageView一起释放
+    private final Map<ImageView, Bitmap> shown = new WeakHashMap<>();
+    private final PendingRequests<ImageView, Request> requests = new PendingRequests<>();
+    //既不在缓存中也没有显示的位图,解码线程从这里取出一张内存足够放下解码结果的复用
+    private final ReusePool<Bitmap> reusable = new ReusePool<Bitmap>(MAX_REUSABLE_BYTES) {
+        @Override
+        protected int sizeOf(Bitmap bitmap) {
+            return bitmap.getAllocationByteCount();
+        }
+
+        @Override
+        protected boolean canHold(Bitmap bitmap, int byteCount) {
+            return bitmap.getConfig() == Bitmap.Config.ARGB_8888 && bitmap.getAllocationByteCount() >= byteCount;
+        }
+    };
+
+    private ImageLoader(Context context) {
+        thumbnailStore = ThumbnailStore.getInstance(context);
+        screenWidth = context.getResources().getDisplayMetrics().widthPixels;
+        int maxBytes = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / MEMORY_CACHE_DIVISOR);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    cached.remove(oldValue);
+                    releaseIfUnused(oldValue);
+                }
+            }
+        };
+    }
+
+    public static ImageLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImageLoader.class) {
+                if (instance == null) {
+                    instance = new ImageLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 在ImageView中显示商品图片,缓存中没有时先清空,解码完成后再显示
+     * @param view 显示图片的ImageView
+     * @param id 商品编号
+     * @param pictureKey 图片key,为null时只清空
+     * @param kind 使用哪种缩略图,ThumbnailStore.LIST或ThumbnailStore.DETAIL
+     */
+    public void load(ImageView view, long id, String pictureKey, int kind) {
+        if (pictureKey == null) {
+            cancel(view);
+            return;
+        }
+        int[] size = getTargetSize(view);
+        String cacheKey = id + "@" + kind + ":" + size[0] + "x" + size[1];
+        if (requests.isPending(view, cacheKey)) {
+            //同一张图片已经在解码
+            return;
+        }
+        cancelRequest(view);
+        Bitmap bitmap = memoryCache.get(cacheKey);
+        show(view, bitmap);
+        if (bitmap == null) {
+            Request request = new Request(view, cacheKey, pictureKey, kind, size[0], size[1]);
+            requests.put(view, request);
+            AppExecutors.getInstance().imageIO().execute(request);
+        }
+    }
+
+    /**
+     * 取消ImageView还没完成的解码并清空图片,行滑出屏幕被回收时调用
+     * @param view 显示图片的ImageView
+     */
+    public void cancel(ImageView view) {
+        cancelRequest(view);
+        show(view, null);
+    }
+
+    private void cancelRequest(ImageView view) {
+        Request request = requests.cancel(view);
+        if (request != null) {
+            //还在排队的请求直接移出队列
+            AppExecutors.getInstance().imageIO().remove(request);
+        }
+    }
+
+    private void show(ImageView view, Bitmap bitmap) {
+        Bitmap previous = shown.get(view);
+        if (previous == bitmap) {
+            return;
+        }
+        view.setImageBitmap(bitmap);
+        if (bitmap != null) {
+            shown.put(view, bitmap);
+        } else {
+            shown.remove(view);
+        }
+        if (previous != null) {
+            releaseIfUnused(previous);
+        }
+    }
+
+    /**
+     * 既不在缓存中也没有显示的位图留作复用,超出上限时丢弃最早的
+     */
+    private void releaseIfUnused(Bitmap bitmap) {
+        //同时显示的图片只有一屏,逐个比较即可
+        if (cached.contains(bitmap) || shown.containsValue(bitmap) || !bitmap.isMutable()) {
+            return;
+        }
+        reusable.put(bitmap);
+    }
+
+    /**
+     * 按ImageView的大小确定解码大小,还没测量时使用布局中的大小
+     */
+    private int[] getTargetSize(ImageView view) {
+        int width = view.getWidth();
+        int height = view.getHeight();
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        if (width <= 0 && params != null) {
+            width = params.width;
+        }
+        if (height <= 0 && params != null) {
+            height = params.height;
+        }
+        //wrap_content等无法确定大小时不超过屏幕宽度
+        if (width <= 0) {
+            width = screenWidth;
+        }
+        if (height <= 0) {
+            height = screenWidth;
+        }
+        return new int[]{width, height};
+    }
+
+    /**
+     * 计算缩小倍数,取2的幂,缩小后宽高仍不小于目标大小
+     * @param width 原图宽
+     * @param height 原图高
+     * @param reqWidth 目标宽
+     * @param reqHeight 目标高
+     * @return inSampleSize
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 在解码线程中缩小解码缩略图
+     */
+    private Bitmap decode(String pictureKey, int kind, int reqWidth, int reqHeight) {
+        File file = thumbnailStore.get(pictureKey, kind);
+        if (file == null) {
+            return null;
+        }
+        String path = file.getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+        options.inJustDecodeBounds = false;
+        //解码结果可以写入,之后才能作为inBitmap复用
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+        int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+        options.inBitmap = reusable.take(width * height * 4);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            //复用的位图不适用时重新分配内存
+            Log.w(TAG, "复用位图失败：" + e.getMessage());
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+
+    /**
+     * 一次解码请求,取消后不再解码,已解码的结果留作复用;
+     * 在imageIO队列中被更新的请求挤掉时从requests中移除,之后同一张图片可以重新请求
+     */
+    private class Request implements Runnable, PendingRequests.Request, AppExecutors.Rejectable {
+        final ImageView view;
+        final String cacheKey;
+        final String pictureKey;
+        final int kind;
+        final int width;
+        final int height;
+        volatile boolean cancelled;
+
+        Request(ImageView view, String cacheKey, String pictureKey, int kind, int width, int height) {
+            this.view = view;
+            this.cacheKey = cacheKey;
+            this.pictureKey = pictureKey;
+            this.kind = kind;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public String key() {
+            return cacheKey;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void onRejected() {
+            cancelled = true;
+            requests.finish(view, this);
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final Bitmap bitmap = decode(pictureKey, kind, width, height);
+            AppExecutors.getInstance().mainThread().execute(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(bitmap);
+                }
+            });
+        }
+
+        private void deliver(Bitmap bitmap) {
+            boolean current = !cancelled && requests.finish(view, this);
+            if (bitmap == null) {
+                return;
+            }
+            Bitmap existing = memoryCache.get(cacheKey);
+            if (existing != null) {
+                //另一个请求先解码了同一张图片,使用缓存中的那一张
+                if (current) {
+                    show(view, existing);
+                }
+                releaseIfUnused(bitmap);
+                return;
+            }
+            //先显示再放入缓存,放入时即使被挤出也不会被当作空闲位图复用
+            if (current) {
+                show(view, bitmap);
+            }
+            cached.add(bitmap);
+            memoryCache.put(cacheKey, bitmap);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 数据表变化的通知中心
+ * 各DbHelper写入提交后调用notifyTablesChanged,先清除QueryCache中读取过这些表的结果,
+ * 再通知关心这些表的观察者,不相关的表被写入时观察者不会收到通知
+ * @author autumn_leaf
+ */
+public class InvalidationTracker {
+
+    /**
+     * 观察的表被写入后回调,在执行写入的线程中调用,不能在这里执行耗时操作
+     */
+    public interface Observer {
+        void onInvalidated(Set<String> tables);
+    }
+
+    private static final InvalidationTracker INSTANCE = new InvalidationTracker();
+
+    private static class Registration {
+        final Observer observer;
+        final Set<String> tables;
+
+        Registration(Observer observer, Set<String> tables) {
+            this.observer = observer;
+            this.tables = tables;
+        }
+    }
+
+    //写入远多于注册,但注册的观察者很少,遍历时不加锁
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    InvalidationTracker() {
+    }
+
+    public static InvalidationTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 注册观察者
+     * @param observer 观察者
+     * @param tables 关心的表
+     */
+    public void addObserver(Observer observer, String... tables) {
+        registrations.add(new Registration(observer, new HashSet<>(Arrays.asList(tables))));
+    }
+
+    public void removeObserver(Observer observer) {
+        for (Registration registration : registrations) {
+            if (registration.observer == observer) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * 表被写入后调用,写入提交后调用才能保证观察者重新查询时读到新数据
+     * @param tables 被写入的表
+     */
+    public void notifyTablesChanged(String... tables) {
+        QueryCache.getInstance().invalidate(tables);
+        Set<String> changed = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(tables)));
+        for (Registration registration : registrations) {
+            if (!Collections.disjoint(registration.tables, changed)) {
+                registration.observer.onInvalidated(changed);
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.leaf.collegeidleapp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按稳定编号比较列表的新旧两个快照,得到把旧列表变为新列表所需的最少的增、删、移动和内容变化
+ * 两边都有的项中,旧顺序里新位置的最长递增子序列保持不动,其余的才需要移动;
+ * 计算只访问编号和传入的比较器,可以在后台线程执行,结果在主线程按顺序交给ListUpdateCallback
+ * @author autumn_leaf
+ */
+public class ListDiffer {
+
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int MOVED = 2;
+    private static final int CHANGED = 3;
+
+    /**
+     * 接收列表变化,位置都是按顺序执行到当前这一步时的位置
+     */
+    public interface ListUpdateCallback {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    /**
+     * 比较编号相同的两项显示的内容是否相同
+     */
+    public interface ContentComparator {
+        boolean areContentsTheSame(int oldPosition, int newPosition);
+    }
+
+    /**
+     * 列表项的编号和内容比较
+     */
+    public interface ItemCallback<T> {
+        long getId(T item);
+
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * 比较结果,按计算时的顺序保存每一步变化
+     */
+    public static final class Result {
+        private final List<int[]> operations = new ArrayList<>();
+
+        private void add(int type, int a, int b) {
+            operations.add(new int[]{type, a, b});
+        }
+
+        /**
+         * @return 新旧列表是否完全相同
+         */
+        public boolean isEmpty() {
+            return operations.isEmpty();
+        }
+
+        public void dispatchUpdatesTo(ListUpdateCallback callback) {
+            for (int[] operation : operations) {
+                switch (operation[0]) {
+                    case INSERTED:
+                        callback.onInserted(operation[1], operation[2]);
+                        break;
+                    case REMOVED:
+                        callback.onRemoved(operation[1], operation[2]);
+                        break;
+                    case MOVED:
+                        callback.onMoved(operation[1], operation[2]);
+                        break;
+                    default:
+                        callback.onChanged(operation[1], operation[2]);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 新的列表及其相对上一次结果的变化,在后台计算好一起交给主线程
+     */
+    public static final class Update<T> implements Closeable {
+        public final List<T> items;
+        //为null时没有可比较的旧列表,需要整体刷新
+        public final Result diff;
+
+        public Update(List<T> items, Result diff) {
+            this.items = items;
+            this.diff = diff;
+        }
+
+        @Override
+        public void close() throws IOException {
+            //被丢弃时关闭背后的cursor
+            if (items instanceof Closeable) {
+                ((Closeable) items).close();
+            }
+        }
+    }
+
+    private ListDiffer() {
+    }
+
+    /**
+     * 比较两个列表
+     * @param oldItems 旧列表的快照,计算期间不能被修改
+     * @param newItems 新列表
+     * @param callback 编号和内容比较
+     * @return 比较结果
+     */
+    public static <T> Result calculate(final List<T> oldItems, final List<T> newItems, final ItemCallback<T> callback) {
+        long[] oldIds = new long[oldItems.size()];
+        for (int i = 0; i < oldIds.length; i++) {
+            oldIds[i] = callback.getId(oldItems.get(i));
+        }
+        long[] newIds = new long[newItems.size()];
+        for (int i = 0; i < newIds.length; i++) {
+            newIds[i] = callback.getId(newItems.get(i));
+        }
+        return calculate(oldIds, newIds, new ContentComparator() {
+            @Override
+            public boolean areContentsTheSame(int oldPosition, int newPosition) {
+                return callback.areContentsTheSame(oldItems.get(oldPosition), newItems.get(newPosition));
+            }
+        });
+    }
+
+    /**
+     * 按编号比较两个列表,同一列表中的编号不能重复
+     * @param oldIds 旧列表每一项的编号
+     * @param newIds 新列表每一项的编号
+     * @param contents 内容比较,为null时编号相同就视为内容相同
+     * @return 比较结果
+     */
+    public static Result calculate(long[] oldIds, long[] newIds, ContentComparator contents) {
+        Result result = new Result();
+        Map<Long, Integer> oldPositions = new HashMap<>(oldIds.length * 2);
+        for (int i = 0; i < oldIds.length; i++) {
+            oldPositions.put(oldIds[i], i);
+        }
+        Map<Long, Integer> newPositions = new HashMap<>(newIds.length * 2);
+        for (int i = 0; i < newIds.length; i++) {
+            newPositions.put(newIds[i], i);
+        }
+
+        //从后往前删除,前面的位置不受影响,连续的一段合并为一次
+        int removedEnd = -1;
+        for (int i = oldIds.length - 1; i >= -1; i--) {
+            boolean removed = i >= 0 && !newPositions.containsKey(oldIds[i]);
+            if (removed && removedEnd < 0) {
+                removedEnd = i;
+            } else if (!removed && removedEnd >= 0) {
+                result.add(REMOVED, i + 1, removedEnd - i);
+                removedEnd = -1;
+            }
+        }
+
+        //剩下的项按旧顺序排列,其新位置的最长递增子序列不需要移动
+        IdList current = new IdList(Math.max(oldIds.length, newIds.length));
+        int[] keptNewPositions = new int[oldIds.length];
+        int kept = 0;
+        for (long id : oldIds) {
+            Integer position = newPositions.get(id);
+            if (position != null) {
+                current.add(id);
+                keptNewPositions[kept++] = position;
+            }
+        }
+        boolean[] stays = new boolean[newIds.length];
+        for (int position : longestIncreasing(keptNewPositions, kept)) {
+            stays[position] = true;
+        }
+
+        //从后往前把每一项放到它后面一项之前,新增的连续一段合并为一次
+        int i = newIds.length - 1;
+        while (i >= 0) {
+            if (stays[i]) {
+                i--;
+                continue;
+            }
+            //只有需要放置的项才查找位置,大部分项不动时整体接近线性
+            int anchor = i + 1 < newIds.length ? current.indexOf(newIds[i + 1]) : current.size();
+            if (!oldPositions.containsKey(newIds[i])) {
+                int start = i;
+                while (start > 0 && !oldPositions.containsKey(newIds[start - 1])) {
+                    start--;
+                }
+                current.insert(anchor, newIds, start, i - start + 1);
+                result.add(INSERTED, anchor, i - start + 1);
+                i = start - 1;
+                continue;
+            }
+            int from = current.indexOf(newIds[i]);
+            int to = from < anchor ? anchor - 1 : anchor;
+            current.move(from, to);
+            result.add(MOVED, from, to);
+            i--;
+        }
+
+        //此时列表已与新列表顺序一致,按新位置通知内容变化
+        if (contents != null) {
+            int changedStart = -1;
+            for (int position = 0; position <= newIds.length; position++) {
+                boolean changed = false;
+                if (position < newIds.length) {
+                    Integer oldPosition = oldPositions.get(newIds[position]);
+                    changed = oldPosition != null && !contents.areContentsTheSame(oldPosition, position);
+                }
+                if (changed && changedStart < 0) {
+                    changedStart = position;
+                } else if (!changed && changedStart >= 0) {
+                    result.add(CHANGED, changedStart, position - changedStart);
+                    changedStart = -1;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 最长严格递增子序列中的元素值,O(n log n)
+     */
+    private static int[] longestIncreasing(int[] values, int count) {
+        //tails[k]为长度k+1的递增子序列结尾元素的下标,previous记录每个元素在子序列中的前一个下标
+        int[] tails = new int[count];
+        int[] previous = new int[count];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[tails[middle]] < values[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+        int[] sequence = new int[length];
+        for (int i = length - 1, k = length > 0 ? tails[length - 1] : -1; i >= 0; i--, k = previous[k]) {
+            sequence[i] = values[k];
+        }
+        return sequence;
+    }
+
+    /**
+     * 计算过程中模拟列表当前顺序的编号数组
+     */
+    private static final class IdList {
+        private long[] ids;
+        private int size;
+
+        IdList(int capacity) {
+            ids = new long[Math.max(capacity, 1)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(long id) {
+            ids[size++] = id;
+        }
+
+        int indexOf(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("编号不在列表中：" + id);
+        }
+
+        void insert(int position, long[] source, int start, int count) {
+            if (size + count > ids.length) {
+                long[] grown = new long[Math.max(ids.length * 2, size + count)];
+                System.arraycopy(ids, 0, grown, 0, size);
+                ids = grown;
+            }
+            System.arraycopy(ids, position, ids, position + count, size - position);
+            System.arraycopy(source, start, ids, position, count);
+            size += count;
+        }
+
+        void move(int from, int to) {
+            long id = ids[from];
+            if (from < to) {
+                System.arraycopy(ids, from + 1, ids, from, to - from);
+            } else {
+                System.arraycopy(ids, to, ids, to + 1, from - to);
+            }
+            ids[to] = id;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * 数据库版本迁移
+ * 每个迁移把数据库从上一版本升级到version版本:先依次执行建表/建索引等语句,再执行数据迁移
+ * @author autumn_leaf
+ */
+public class Migration {
+
+    //迁移完成后的数据库版本
+    final int version;
+    //按顺序执行的SQL语句
+    final String[] statements;
+
+    public Migration(int version, String... statements) {
+        this.version = version;
+        this.statements = statements;
+    }
+
+    /**
+     * 执行迁移,由AppDatabase在升级事务中调用
+     * @param context 上下文
+     * @param db 数据库
+     */
+    final void migrate(Context context, SQLiteDatabase db) {
+        for (String statement : statements) {
+            db.execSQL(statement);
+        }
+        migrateData(context, db);
+    }
+
+    /**
+     * SQL语句执行完后需要用代码搬迁数据时重写此方法
+     * @param context 上下文
+     * @param db 数据库
+     */
+    protected void migrateData(Context context, SQLiteDatabase db) {
+
+    }
+
+    /**
+     * 升级事务提交后由AppDatabase.onOpen调用,删除文件等无法随事务回滚的操作放在这里
+     * @param context 上下文
+     * @param db 数据库
+     */
+    protected void afterCommit(Context context, SQLiteDatabase db) {
+
+    }
+}
@@ -3,24 +3,25 @@ package com.leaf.collegeidleapp.util;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 
 import com.leaf.collegeidleapp.bean.Collection;
+import com.leaf.collegeidleapp.bean.CollectionRowMapper;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 我的收藏数据库连接类
  * @author autumn_leaf
  */
-public class MyCollectionDbHelper extends SQLiteOpenHelper {
+public class MyCollectionDbHelper {
 
     //定义数据库表名
     public static final String DB_NAME = "tb_collection";
-    /** 创建收藏信息表 **/
-    private static final String CREATE_COLLECTION_DB = "create table tb_collection (" +
+    /** 创建收藏信息表,第6版起重建为只保存学号和商品编号,见SchemaMigrations **/
+    static final String CREATE_COLLECTION_DB = "create table tb_collection (" +
             "id integer primary key autoincrement," +
             "stuId text," +
             "picture blob," +
@@ -29,35 +30,55 @@ public class MyCollectionDbHelper extends SQLiteOpenHelper {
             "price float," +
             "phone text )";
 
-    public MyCollectionDbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
+    /**收藏列表查询,通过商品编号关联商品表读取最新的商品信息*/
+    static final String READ_COLLECTIONS_SQL = "select c.id,c.commodityId,m.title,m.description,m.priceCents,m.phone,"
+            + "m.pictureKey,m.pictureWidth,m.pictureHeight from tb_collection c"
+            + " join tb_commodity m on m.id=c.commodityId where c.stuId=? order by c.id desc";
+
+    private final AppDatabase database;
 
-    @Override
-    public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_COLLECTION_DB);
+    public MyCollectionDbHelper(Context context) {
+        database = AppDatabase.getInstance(context);
     }
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    /**
+     * 收藏商品,已经收藏过时不重复添加
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     */
+    public void addMyCollection(String stuId,int commodityId) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put("stuId",stuId);
+        values.put("commodityId",commodityId);
+        db.insertWithOnConflict(DB_NAME,null,values,SQLiteDatabase.CONFLICT_IGNORE);
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
+    }
 
+    /**
+     * 把某件商品设置为已收藏或未收藏
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     * @param favorited 是否收藏
+     */
+    public void setFavorited(String stuId,int commodityId,boolean favorited) {
+        if (favorited) {
+            addMyCollection(stuId,commodityId);
+        } else {
+            deleteMyCollection(stuId,commodityId);
+        }
     }
 
     /**
-     * 添加我的收藏商品
-     * @param collection 收藏对象
+     * 判断是否已收藏该商品,按(学号,商品编号)唯一索引查找
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     * @return 已收藏返回true
      */
-    public void addMyCollection(Collection collection) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put("stuId",collection.getStuId());
-        values.put("picture",collection.getPicture());
-        values.put("title",collection.getTitle());
-        values.put("description",collection.getDescription());
-        values.put("price",collection.getPrice());
-        values.put("phone",collection.getPhone());
-        db.insert(DB_NAME,null,values);
-        values.clear();
+    public boolean isFavorited(String stuId,int commodityId) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        return DatabaseUtils.longForQuery(db,"select count(*) from tb_collection where stuId=? and commodityId=?",
+                new String[]{stuId,String.valueOf(commodityId)}) > 0;
     }
 
     /**
@@ -65,42 +86,43 @@ public class MyCollectionDbHelper extends SQLiteOpenHelper {
      * @param stuId 学号
      * @return 收藏的商品信息
      */
-    public List<Collection> readMyCollections(String stuId) {
-        List<Collection> collections = new ArrayList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_collection where stuId=?",new String[]{stuId});
-        if(cursor.moveToFirst()) {
-            do {
-                String title = cursor.getString(cursor.getColumnIndex("title"));
-                float price = cursor.getFloat(cursor.getColumnIndex("price"));
-                String phone = cursor.getString(cursor.getColumnIndex("phone"));
-                String description = cursor.getString(cursor.getColumnIndex("description"));
-                byte[] picture = cursor.getBlob(cursor.getColumnIndex("picture"));
-                Collection collection = new Collection();
-                collection.setPicture(picture);
-                collection.setTitle(title);
-                collection.setDescription(description);
-                collection.setPrice(price);
-                collection.setPhone(phone);
-                collections.add(collection);
-            }while (cursor.moveToNext());
-        }
-        cursor.close();
-        return collections;
+    public List<Collection> readMyCollections(final String stuId) {
+        //关联读取商品表,收藏或商品变化时缓存都会失效
+        return QueryCache.getInstance().query(READ_COLLECTIONS_SQL,new String[]{stuId},
+                new String[]{DB_NAME,CommodityDbHelper.DB_NAME},new Callable<List<Collection>>() {
+            @Override
+            public List<Collection> call() {
+                SQLiteDatabase db = database.getWritableDatabase();
+                Cursor cursor = db.rawQuery(READ_COLLECTIONS_SQL,new String[]{stuId});
+                List<Collection> collections = new CollectionRowMapper().mapAll(cursor);
+                cursor.close();
+                for (Collection collection : collections) {
+                    collection.setStuId(stuId);
+                }
+                return collections;
+            }
+        });
     }
 
     /**
-     * 删除收藏的商品项
-     * @param title 标题
-     * @param description 地址
-     * @param price 价格
+     * 根据编号删除收藏的商品项
+     * @param id 收藏编号
      */
-    public void deleteMyCollection(String title,String description,float price) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        if(db.isOpen()) {
-            db.delete(DB_NAME,"title=? and description=? and price=?",new String[]{title,description,String.valueOf(price)});
-            db.close();
-        }
+    public void deleteMyCollection(int id) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.delete(DB_NAME,"id=?",new String[]{String.valueOf(id)});
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
+    }
+
+    /**
+     * 取消收藏某件商品
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     */
+    public void deleteMyCollection(String stuId,int commodityId) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        db.delete(DB_NAME,"stuId=? and commodityId=?",new String[]{stuId,String.valueOf(commodityId)});
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
     }
 
 }
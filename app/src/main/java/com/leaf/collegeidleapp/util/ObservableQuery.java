@@ -0,0 +1,139 @@
+package com.leaf.collegeidleapp.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * 随数据表变化自动重新执行的查询
+ * 观察的表被写入后,等待一小段时间合并连续的写入,再通过AsyncRepository在后台重新查询,结果在主线程交给onResult。
+ * 界面不可见时只记下表已变化,回到前台时再查询一次;界面销毁时停止观察
+ * @author autumn_leaf
+ */
+public abstract class ObservableQuery<T> implements InvalidationTracker.Observer, LifecycleObserver {
+
+    //表被写入后等待多久再重新查询,期间的写入合并为一次查询
+    private static final long DEBOUNCE_MS = 200;
+
+    private final LifecycleOwner owner;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    //正在执行的查询,以及它是否由表变化引起
+    private AsyncRepository.Task<T> task;
+    private boolean taskIsRefresh;
+    //不可见期间表发生过变化
+    private boolean stale;
+    private boolean stopped;
+
+    private final Runnable refreshTask = new Runnable() {
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            if (!owner.getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.STARTED)) {
+                stale = true;
+                return;
+            }
+            //第一次查询还没返回时仍按第一次查询重新执行
+            execute(task == null || taskIsRefresh);
+        }
+    };
+
+    /**
+     * 必须在主线程创建,创建后调用load执行第一次查询
+     * @param owner 使用查询的界面,销毁时停止观察
+     * @param tables 查询读取的表
+     */
+    protected ObservableQuery(LifecycleOwner owner, String... tables) {
+        this.owner = owner;
+        owner.getLifecycle().addObserver(this);
+        InvalidationTracker.getInstance().addObserver(this, tables);
+    }
+
+    /**
+     * 在主线程调用,取出当前的查询条件
+     * @param refresh 是否因为表变化重新查询,为false时是调用load引起的
+     * @return 在后台线程执行的查询
+     */
+    protected abstract Callable<T> prepare(boolean refresh);
+
+    /**
+     * 在主线程接收查询结果
+     * @param result 查询结果
+     * @param refresh 与prepare的参数相同
+     */
+    protected abstract void onResult(T result, boolean refresh);
+
+    /**
+     * 立即重新查询,查询条件改变时调用,还没返回的上一次查询被丢弃
+     */
+    public void load() {
+        execute(false);
+    }
+
+    /**
+     * @return 是否有查询还没返回
+     */
+    public boolean isLoading() {
+        return task != null;
+    }
+
+    /**
+     * 停止观察,之后不再回调
+     */
+    public void stop() {
+        stopped = true;
+        InvalidationTracker.getInstance().removeObserver(this);
+        owner.getLifecycle().removeObserver(this);
+        mainHandler.removeCallbacks(refreshTask);
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    @Override
+    public void onInvalidated(Set<String> tables) {
+        //可能在任意线程中调用,交给主线程延迟执行,连续的写入只重新查询一次
+        mainHandler.removeCallbacks(refreshTask);
+        mainHandler.postDelayed(refreshTask, DEBOUNCE_MS);
+    }
+
+    private void execute(final boolean refresh) {
+        if (stopped) {
+            return;
+        }
+        mainHandler.removeCallbacks(refreshTask);
+        stale = false;
+        if (task != null) {
+            task.cancel();
+        }
+        taskIsRefresh = refresh;
+        task = AsyncRepository.query(owner, prepare(refresh), new AsyncRepository.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+                task = null;
+                ObservableQuery.this.onResult(result, refresh);
+            }
+        });
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    void onStart() {
+        if (stale) {
+            execute(task == null || taskIsRefresh);
+        }
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+    void onDestroy() {
+        stop();
+    }
+}
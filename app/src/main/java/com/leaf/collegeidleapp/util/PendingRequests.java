@@ -0,0 +1,74 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 每个显示目标当前还没完成的请求,ImageLoader用它记录每个ImageView正在解码的图片
+ * 目标被回收后请求随之释放,只在主线程访问
+ * @author autumn_leaf
+ */
+class PendingRequests<V, R extends PendingRequests.Request> {
+
+    /**
+     * 一次请求
+     */
+    interface Request {
+        /**
+         * @return 请求的内容,相同时不必重复请求
+         */
+        String key();
+
+        /**
+         * 取消请求,之后不再执行,结果也不再显示
+         */
+        void cancel();
+    }
+
+    private final Map<V, R> requests = new WeakHashMap<>();
+
+    /**
+     * @param target 显示目标
+     * @param key 请求的内容
+     * @return 目标是否已有相同内容的请求在进行中
+     */
+    boolean isPending(V target, String key) {
+        R request = requests.get(target);
+        return request != null && request.key().equals(key);
+    }
+
+    /**
+     * 记录目标的新请求,之前的请求应先调用cancel取消
+     */
+    void put(V target, R request) {
+        requests.put(target, request);
+    }
+
+    /**
+     * 取消并移除目标的请求
+     * @param target 显示目标
+     * @return 被取消的请求,没有时返回null
+     */
+    R cancel(V target) {
+        R request = requests.remove(target);
+        if (request != null) {
+            request.cancel();
+        }
+        return request;
+    }
+
+    /**
+     * 请求完成或被丢弃时调用,只有它仍是目标当前的请求时才移除,
+     * 之后再请求相同的内容会重新提交
+     * @param target 显示目标
+     * @param request 完成或被丢弃的请求
+     * @return 是否是目标当前的请求
+     */
+    boolean finish(V target, R request) {
+        if (requests.get(target) != request) {
+            return false;
+        }
+        requests.remove(target);
+        return true;
+    }
+}
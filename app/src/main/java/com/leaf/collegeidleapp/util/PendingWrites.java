@@ -0,0 +1,178 @@
+package com.leaf.collegeidleapp.util;
+
+import com.leaf.collegeidleapp.bean.Review;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 后写队列中还没写入数据库的收藏和评论
+ * 同一商品的多次收藏/取消收藏只保留最后一次,短时间内重复提交的相同评论只保留一条。
+ * 只负责合并和日志格式,不访问数据库和文件,由WriteBehindQueue加锁后调用
+ * @author autumn_leaf
+ */
+class PendingWrites {
+
+    //同一学生对同一商品在这段时间内提交的相同评论视为重复点击
+    static final long DUPLICATE_REVIEW_WINDOW_MS = 5000;
+
+    //等待写入的收藏状态,键为学号和商品编号
+    private final Map<String, Boolean> favorites = new LinkedHashMap<>();
+    //等待写入的评论,键为学号、商品编号和内容,值为队列自己的副本,写入后回填的编号不影响界面上的评论
+    private final Map<String, Review> reviews = new LinkedHashMap<>();
+    //最近提交过的评论及提交时间,用于过滤重复点击
+    private final Map<String, Long> recentReviews = new LinkedHashMap<>();
+    //还没写入数据库的评论的临时编号,从-1往下递减,不会与数据库中的编号重复
+    private int nextTemporaryId = -1;
+
+    void setFavorited(String stuId, int commodityId, boolean favorited) {
+        favorites.put(favoriteKey(stuId, commodityId), favorited);
+    }
+
+    Boolean pendingFavorite(String stuId, int commodityId) {
+        return favorites.get(favoriteKey(stuId, commodityId));
+    }
+
+    /**
+     * 加入一条评论,接受时给评论分配临时编号,队列中保存一份副本
+     * @param review 界面上显示的评论
+     * @param now 提交时间,SystemClock.elapsedRealtime
+     * @return 是否接受,短时间内重复提交的相同评论返回false
+     */
+    boolean addReview(Review review, long now) {
+        String key = reviewKey(review);
+        Iterator<Long> times = recentReviews.values().iterator();
+        while (times.hasNext() && now - times.next() > DUPLICATE_REVIEW_WINDOW_MS) {
+            times.remove();
+        }
+        if (reviews.containsKey(key) || recentReviews.containsKey(key)) {
+            return false;
+        }
+        recentReviews.put(key, now);
+        review.setId(nextTemporaryId--);
+        reviews.put(key, copyOf(review));
+        return true;
+    }
+
+    boolean isEmpty() {
+        return favorites.isEmpty() && reviews.isEmpty();
+    }
+
+    /**
+     * @return 等待写入的收藏状态的快照
+     */
+    Map<String, Boolean> favorites() {
+        return new LinkedHashMap<>(favorites);
+    }
+
+    /**
+     * @return 等待写入的评论,写入数据库时把编号回填到这些副本中
+     */
+    List<Review> reviews() {
+        return new ArrayList<>(reviews.values());
+    }
+
+    /**
+     * 移除已经写入数据库的修改,写入期间又有新提交的收藏状态不移除
+     * @param writtenFavorites 写入的收藏状态
+     * @param writtenReviews 写入的评论
+     */
+    void removeWritten(Map<String, Boolean> writtenFavorites, List<Review> writtenReviews) {
+        for (Map.Entry<String, Boolean> entry : writtenFavorites.entrySet()) {
+            if (entry.getValue().equals(favorites.get(entry.getKey()))) {
+                favorites.remove(entry.getKey());
+            }
+        }
+        for (Review review : writtenReviews) {
+            reviews.remove(reviewKey(review));
+        }
+    }
+
+    /**
+     * @return 仍在等待的修改对应的日志,每条一行
+     */
+    List<JSONObject> toJournal() {
+        List<JSONObject> entries = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : favorites.entrySet()) {
+            String[] key = entry.getKey().split("\n", 2);
+            entries.add(favoriteToJson(key[0], Integer.parseInt(key[1]), entry.getValue()));
+        }
+        for (Review review : reviews.values()) {
+            entries.add(reviewToJson(review));
+        }
+        return entries;
+    }
+
+    /**
+     * 重放一条日志,本次启动后已经提交的修改更新,以本次为准
+     * @param entry 日志
+     * @throws JSONException 日志不完整
+     */
+    void replay(JSONObject entry) throws JSONException {
+        if ("favorite".equals(entry.getString("type"))) {
+            String key = favoriteKey(entry.getString("stuId"), entry.getInt("commodityId"));
+            if (!favorites.containsKey(key)) {
+                favorites.put(key, entry.getBoolean("favorited"));
+            }
+        } else {
+            Review review = new Review();
+            //值为null的字段不会写入日志
+            review.setStuId(entry.optString("stuId", null));
+            review.setCommodityId(entry.getInt("commodityId"));
+            review.setContent(entry.optString("content", null));
+            review.setCreatedAt(entry.getLong("createdAt"));
+            String key = reviewKey(review);
+            if (!reviews.containsKey(key)) {
+                reviews.put(key, review);
+            }
+        }
+    }
+
+    private static Review copyOf(Review review) {
+        Review copy = new Review();
+        copy.setStuId(review.getStuId());
+        copy.setCommodityId(review.getCommodityId());
+        copy.setContent(review.getContent());
+        copy.setCreatedAt(review.getCreatedAt());
+        return copy;
+    }
+
+    private static String favoriteKey(String stuId, int commodityId) {
+        return stuId + "\n" + commodityId;
+    }
+
+    private static String reviewKey(Review review) {
+        return review.getStuId() + "\n" + review.getCommodityId() + "\n" + review.getContent();
+    }
+
+    static JSONObject favoriteToJson(String stuId, int commodityId, boolean favorited) {
+        try {
+            return new JSONObject()
+                    .put("type", "favorite")
+                    .put("stuId", stuId)
+                    .put("commodityId", commodityId)
+                    .put("favorited", favorited);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static JSONObject reviewToJson(Review review) {
+        try {
+            return new JSONObject()
+                    .put("type", "review")
+                    .put("stuId", review.getStuId())
+                    .put("commodityId", review.getCommodityId())
+                    .put("content", review.getContent())
+                    .put("createdAt", review.getCreatedAt());
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
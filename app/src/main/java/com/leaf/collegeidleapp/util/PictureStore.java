@@ -0,0 +1,257 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 商品图片文件存储类
+ * 图片按内容的SHA-256摘要命名保存在应用私有目录下,相同内容只存一份,
+ * 数据库中只保存图片的key和宽高。
+ * save返回的key在调用unpin之前不会被清理,避免引用它的商品写入前,另一个线程删除同一内容的旧商品时把文件一并删除
+ * @author autumn_leaf
+ */
+public class PictureStore {
+
+    private static final String TAG = "PictureStore";
+    //图片存放目录
+    private static final String DIR_NAME = "pictures";
+
+    private static volatile PictureStore instance;
+
+    private final Context context;
+    //图片目录,第一次读写图片时才创建,构造时不访问磁盘,可以在主线程获取实例
+    private File directory;
+    //已经保存但引用它的商品还没写入的图片key及其保存次数,由this保护
+    private final Map<String, Integer> pinned = new HashMap<>();
+
+    private PictureStore(Context context) {
+        this.context = context;
+    }
+
+    private synchronized File getDirectory() {
+        if (directory == null) {
+            directory = new File(context.getFilesDir(), DIR_NAME);
+            if (!directory.exists() && !directory.mkdirs()) {
+                Log.e(TAG, "创建图片目录失败：" + directory);
+            }
+        }
+        return directory;
+    }
+
+    public static PictureStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (PictureStore.class) {
+                if (instance == null) {
+                    instance = new PictureStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 保存图片,内容相同的图片直接复用已有文件
+     * 保存成功后图片不会被清理,写入引用它的商品后(或放弃写入时)必须调用unpin
+     * @param data 图片字节
+     * @return 图片的key,保存失败时返回null
+     */
+    public String save(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        String key = hash(data);
+        //先占住key再检查文件,之后releaseIfUnused不会删除它;正在进行的清理结束后才能占住
+        pin(key);
+        File file = getFile(key);
+        if (file.exists()) {
+            return key;
+        }
+        //先写临时文件再重命名,避免留下写了一半的图片
+        File temp = new File(getDirectory(), key + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(temp);
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "保存图片失败：" + e.getMessage());
+            temp.delete();
+            unpin(key);
+            return null;
+        } finally {
+            closeQuietly(out);
+        }
+        if (!temp.renameTo(file) && !file.exists()) {
+            temp.delete();
+            unpin(key);
+            return null;
+        }
+        return key;
+    }
+
+    private synchronized void pin(String key) {
+        Integer count = pinned.get(key);
+        pinned.put(key, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * 引用图片的商品已经写入或放弃写入,之后图片没有商品引用时可以被清理
+     * @param key save返回的图片key,为null时忽略
+     */
+    public synchronized void unpin(String key) {
+        if (key == null) {
+            return;
+        }
+        Integer count = pinned.get(key);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            pinned.remove(key);
+        } else {
+            pinned.put(key, count - 1);
+        }
+    }
+
+    /**
+     * 根据key获取图片文件
+     */
+    public File getFile(String key) {
+        return new File(getDirectory(), key);
+    }
+
+    /**
+     * 读取图片的原始字节
+     * @param key 图片key
+     * @return 图片字节,不存在时返回null
+     */
+    public byte[] read(String key) {
+        if (key == null) {
+            return null;
+        }
+        File file = getFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            int offset = 0;
+            while (offset < data.length) {
+                int count = in.read(data, offset, data.length - offset);
+                if (count < 0) {
+                    break;
+                }
+                offset += count;
+            }
+            return data;
+        } catch (IOException e) {
+            Log.e(TAG, "读取图片失败：" + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * 只解析图片宽高,不分配像素内存
+     * @param data 图片字节
+     * @return {宽, 高}
+     */
+    public static int[] decodeSize(byte[] data) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        return new int[]{options.outWidth, options.outHeight};
+    }
+
+    /**
+     * 商品表不再引用该图片且没有正在写入的商品使用它时删除图片文件,
+     * 统计引用和删除在同一把锁内完成,不会与save交错
+     * @param db 数据库
+     * @param key 图片key
+     */
+    public synchronized void releaseIfUnused(SQLiteDatabase db, String key) {
+        if (key == null || pinned.containsKey(key)) {
+            return;
+        }
+        long references = DatabaseUtils.longForQuery(db,
+                "select count(*) from tb_commodity where pictureKey=?", new String[]{key});
+        if (references == 0) {
+            if (!getFile(key).delete()) {
+                Log.w(TAG, "删除图片失败：" + key);
+            }
+            ThumbnailStore.getInstance(context).remove(key);
+        }
+    }
+
+    /**
+     * 删除所有不再被商品表引用的图片文件,以及中断写入留下的临时文件,正在保存的图片除外
+     * @param db 数据库
+     */
+    public synchronized void releaseUnreferenced(SQLiteDatabase db) {
+        File[] files = getDirectory().listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> keys = new HashSet<>();
+        Cursor cursor = db.rawQuery("select distinct pictureKey from tb_commodity where pictureKey is not null", null);
+        try {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        for (File file : files) {
+            String name = file.getName();
+            String key = name.endsWith(".tmp") ? name.substring(0, name.length() - ".tmp".length()) : name;
+            if (keys.contains(key) || pinned.containsKey(key)) {
+                continue;
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "删除图片失败：" + file.getName());
+            }
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
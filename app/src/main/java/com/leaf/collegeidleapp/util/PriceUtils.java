@@ -0,0 +1,57 @@
+package com.leaf.collegeidleapp.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 价格工具类,数据库中价格以分为单位的整数保存,输入和显示时与元互相换算
+ * @author autumn_leaf
+ */
+public class PriceUtils {
+
+    private PriceUtils() {
+    }
+
+    /**
+     * 把以元为单位的输入换算为分,超过两位的小数四舍五入
+     * @param yuan 用户输入的价格,如"12.5"
+     * @return 以分为单位的价格
+     * @throws NumberFormatException 不是数字、为负数或超出范围
+     */
+    public static int parseCents(String yuan) {
+        BigDecimal cents = new BigDecimal(yuan.trim()).movePointRight(2).setScale(0, RoundingMode.HALF_UP);
+        if (cents.signum() < 0) {
+            throw new NumberFormatException("价格不能为负数：" + yuan);
+        }
+        try {
+            return cents.intValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("价格超出范围：" + yuan);
+        }
+    }
+
+    /**
+     * 解析价格区间输入,留空的一端不限
+     * @param minYuan 最低价输入
+     * @param maxYuan 最高价输入
+     * @return {最低价,最高价},单位为分
+     * @throws NumberFormatException 输入不是有效价格,或最低价高于最高价
+     */
+    public static int[] parseRange(String minYuan, String maxYuan) {
+        int min = minYuan.trim().isEmpty() ? CommodityDbHelper.NO_MIN_PRICE : parseCents(minYuan);
+        int max = maxYuan.trim().isEmpty() ? CommodityDbHelper.NO_MAX_PRICE : parseCents(maxYuan);
+        if (min > max) {
+            throw new NumberFormatException("最低价高于最高价");
+        }
+        return new int[]{min, max};
+    }
+
+    /**
+     * 把以分为单位的价格格式化为元,去掉多余的0,如1250显示为"12.5元"
+     * @param cents 以分为单位的价格
+     * @return 显示的价格
+     */
+    public static String format(int cents) {
+        return BigDecimal.valueOf(cents, 2).stripTrailingZeros().toPlainString() + "元";
+    }
+}
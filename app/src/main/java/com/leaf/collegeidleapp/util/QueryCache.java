@@ -0,0 +1,153 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * 列表查询结果的LRU缓存
+ * 以SQL和参数为键,每条结果记录它读取的表,DbHelper写入某张表后经InvalidationTracker只清除读取过这张表的结果。
+ * 查询开始后被写入的表的结果不会放入缓存,避免把写入前读到的旧数据缓存下来
+ * @author autumn_leaf
+ */
+public class QueryCache {
+
+    //最多缓存的查询结果数,每条结果最多一页
+    public static final int MAX_ENTRIES = 64;
+
+    private static final QueryCache INSTANCE = new QueryCache(MAX_ENTRIES);
+
+    private static class Entry {
+        final List<?> rows;
+        final String[] tables;
+
+        Entry(List<?> rows, String[] tables) {
+            this.rows = rows;
+            this.tables = tables;
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries;
+    //每张表最后一次被写入时的版本号
+    private final Map<String, Long> tableVersions = new HashMap<>();
+    private long version;
+    private long hitCount;
+    private long missCount;
+
+    QueryCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Entry>(maxEntries + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public static QueryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 读取缓存的结果,没有缓存时执行查询并缓存
+     * @param sql 查询语句
+     * @param args 查询参数
+     * @param tables 查询读取的表
+     * @param loader 执行查询
+     * @return 查询结果的副本,调用方可以修改
+     */
+    public <T> List<T> query(String sql, String[] args, String[] tables, Callable<List<T>> loader) {
+        String key = sql + '\u0000' + Arrays.toString(args);
+        long startVersion;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hitCount++;
+                @SuppressWarnings("unchecked")
+                List<T> rows = (List<T>) entry.rows;
+                return new ArrayList<>(rows);
+            }
+            missCount++;
+            startVersion = version;
+        }
+        List<T> rows;
+        try {
+            rows = loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        synchronized (this) {
+            if (!modifiedSince(tables, startVersion)) {
+                entries.put(key, new Entry(new ArrayList<>(rows), tables.clone()));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * 表被写入后调用,清除读取过这些表的结果,写入提交后调用才能保证不会缓存到旧数据
+     * @param tables 被写入的表
+     */
+    public synchronized void invalidate(String... tables) {
+        version++;
+        for (String table : tables) {
+            tableVersions.put(table, version);
+        }
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (readsAny(iterator.next().tables, tables)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hitCount + missCount;
+        return "QueryCache[size=" + entries.size() + ",hits=" + hitCount + ",misses=" + missCount
+                + ",hitRate=" + (total == 0 ? 0 : hitCount * 100 / total) + "%]";
+    }
+
+    private boolean modifiedSince(String[] tables, long startVersion) {
+        for (String table : tables) {
+            Long modified = tableVersions.get(table);
+            if (modified != null && modified > startVersion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean readsAny(String[] read, String[] written) {
+        for (String a : read) {
+            for (String b : written) {
+                if (a.equals(b)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
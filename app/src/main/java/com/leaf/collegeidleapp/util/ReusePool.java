@@ -0,0 +1,62 @@
+package com.leaf.collegeidleapp.util;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * 等待复用的对象,总字节数超出上限时丢弃最早放入的
+ * ImageLoader用它保存既不在缓存中也没有显示的位图,解码线程取出一张作为inBitmap,可以在任意线程访问
+ * @author autumn_leaf
+ */
+abstract class ReusePool<T> {
+
+    private final int maxBytes;
+    private final LinkedList<T> items = new LinkedList<>();
+    private int bytes;
+
+    ReusePool(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 对象占用的字节数
+     */
+    protected abstract int sizeOf(T item);
+
+    /**
+     * @param item 等待复用的对象
+     * @param byteCount 需要的字节数
+     * @return 这个对象能否用来存放需要的内容
+     */
+    protected abstract boolean canHold(T item, int byteCount);
+
+    synchronized void put(T item) {
+        items.addLast(item);
+        bytes += sizeOf(item);
+        while (bytes > maxBytes) {
+            bytes -= sizeOf(items.removeFirst());
+        }
+    }
+
+    /**
+     * 取出最早放入的、能存放需要内容的对象
+     * @param byteCount 需要的字节数
+     * @return 可以复用的对象,没有时返回null
+     */
+    synchronized T take(int byteCount) {
+        Iterator<T> iterator = items.iterator();
+        while (iterator.hasNext()) {
+            T candidate = iterator.next();
+            if (canHold(candidate, byteCount)) {
+                iterator.remove();
+                bytes -= sizeOf(candidate);
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    synchronized int bytes() {
+        return bytes;
+    }
+}
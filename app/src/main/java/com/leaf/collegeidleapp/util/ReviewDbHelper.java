@@ -3,80 +3,128 @@ package com.leaf.collegeidleapp.util;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 
 import com.leaf.collegeidleapp.bean.Review;
+import com.leaf.collegeidleapp.bean.ReviewRowMapper;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * 评论/留言数据库连接类
  * @author autumn_leaf
  */
-public class ReviewDbHelper extends SQLiteOpenHelper {
+public class ReviewDbHelper {
 
     //定义数据库表名
     public static final String DB_NAME = "tb_review";
-    /** 创建评论信息表 **/
-    private static final String CREATE_REVIEW_DB = "create table tb_review (" +
+    /** 创建评论信息表,第7版起重建为按商品编号关联并以毫秒时间戳记录时间,见SchemaMigrations **/
+    static final String CREATE_REVIEW_DB = "create table tb_review (" +
             "id integer primary key autoincrement," +
             "stuId text," +
             "currentTime text," +
             "content text," +
             "position integer )";
 
-    public ReviewDbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
+    //评论每页加载的数量
+    public static final int PAGE_SIZE = 20;
 
-    @Override
-    public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_REVIEW_DB);
-    }
+    /**评论分页查询,按时间从新到旧,同一时间按编号排序*/
+    static final String READ_REVIEW_PAGE_SQL = "select id,stuId,createdAt,content from tb_review where commodityId=?"
+            + " and (createdAt<? or (createdAt=? and id<?)) order by createdAt desc,id desc limit ";
 
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    private final AppDatabase database;
 
+    public ReviewDbHelper(Context context) {
+        database = AppDatabase.getInstance(context);
     }
 
     /**
-     * 添加评论
+     * 添加评论,写入后把编号回填到评论对象
      * @param review 评论对象
      */
     public void addReview(Review review) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteDatabase db = database.getWritableDatabase();
         ContentValues values = new ContentValues();
+        values.put("commodityId",review.getCommodityId());
         values.put("stuId",review.getStuId());
-        values.put("currentTime",review.getCurrentTime());
         values.put("content",review.getContent());
-        values.put("position",review.getPosition());
-        db.insert(DB_NAME,null,values);
+        values.put("createdAt",review.getCreatedAt());
+        review.setId((int) db.insert(DB_NAME,null,values));
         values.clear();
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
     }
 
     /**
-     * 根据商品项编号读取相应的评论信息
-     * @return 评论对象数组
+     * 添加评论,同一学生在同一时刻对同一商品发表的相同内容只写入一次,
+     * 供写入队列重放日志时使用,重复重放不会产生重复的评论
+     * @param review 评论对象
+     * @return 是否写入了新评论
      */
-    public LinkedList<Review> readReviews(int  position) {
-        LinkedList<Review> reviews = new LinkedList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_review where position=?",new String[]{String.valueOf(position)});
-        if(cursor.moveToFirst()) {
-            do{
-                String stuId = cursor.getString(cursor.getColumnIndex("stuId"));
-                String currentTime = cursor.getString(cursor.getColumnIndex("currentTime"));
-                String content = cursor.getString(cursor.getColumnIndex("content"));
-                Review review = new Review();
-                review.setStuId(stuId);
-                review.setCurrentTime(currentTime);
-                review.setContent(content);
-                reviews.add(review);
-            }while (cursor.moveToNext());
+    boolean addReviewOnce(Review review) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        List<String> args = new ArrayList<>();
+        String sql = buildCountSameReviewSql(review,args);
+        if (DatabaseUtils.longForQuery(db,sql,args.toArray(new String[0])) > 0) {
+            return false;
         }
-        cursor.close();
-        return reviews;
+        addReview(review);
+        return true;
+    }
+
+    /**
+     * 拼接统计相同评论数量的查询,按(商品编号,时间)索引查找。
+     * 绑定参数不能为null,stuId和内容为null时直接写成is null
+     * @param review 评论对象
+     * @param args 接收按顺序绑定的参数
+     * @return SQL语句
+     */
+    static String buildCountSameReviewSql(Review review,List<String> args) {
+        StringBuilder sql = new StringBuilder("select count(*) from tb_review where commodityId=? and createdAt=?");
+        args.add(String.valueOf(review.getCommodityId()));
+        args.add(String.valueOf(review.getCreatedAt()));
+        appendEquals(sql,args,"stuId",review.getStuId());
+        appendEquals(sql,args,"content",review.getContent());
+        return sql.toString();
+    }
+
+    private static void appendEquals(StringBuilder sql,List<String> args,String column,String value) {
+        if (value == null) {
+            sql.append(" and ").append(column).append(" is null");
+        } else {
+            sql.append(" and ").append(column).append("=?");
+            args.add(value);
+        }
+    }
+
+    /**
+     * 按时间从新到旧分页读取某件商品的评论
+     * @param commodityId 商品编号
+     * @param after 上一页的最后一条评论,为null时读取第一页
+     * @param pageSize 每页数量
+     * @return 评论列表
+     */
+    public List<Review> readReviewPage(final int commodityId,Review after,int pageSize) {
+        String createdAt = after == null ? String.valueOf(Long.MAX_VALUE) : String.valueOf(after.getCreatedAt());
+        String id = after == null ? String.valueOf(Integer.MAX_VALUE) : String.valueOf(after.getId());
+        final String sql = READ_REVIEW_PAGE_SQL + pageSize;
+        final String[] args = new String[]{String.valueOf(commodityId),createdAt,createdAt,id};
+        return QueryCache.getInstance().query(sql,args,new String[]{DB_NAME},new Callable<List<Review>>() {
+            @Override
+            public List<Review> call() {
+                SQLiteDatabase db = database.getWritableDatabase();
+                Cursor cursor = db.rawQuery(sql,args);
+                List<Review> reviews = new ReviewRowMapper().mapAll(cursor);
+                cursor.close();
+                for (Review review : reviews) {
+                    review.setCommodityId(commodityId);
+                }
+                return reviews;
+            }
+        });
     }
 
 }
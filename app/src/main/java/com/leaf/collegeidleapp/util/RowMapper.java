@@ -0,0 +1,55 @@
+package com.leaf.collegeidleapp.util;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把查询结果的每一行转换为实体对象
+ * 实现类由注解处理器为带有@CursorMapped的实体类生成,每个查询新建一个实例:
+ * 列下标在开始读取时按列名解析一次,之后每行只按下标取值
+ * @author autumn_leaf
+ */
+public abstract class RowMapper<T> {
+
+    /**
+     * 读取查询结果中剩余的所有行
+     * @param cursor 查询结果,不会被关闭
+     * @return 实体列表
+     */
+    public List<T> mapAll(Cursor cursor) {
+        List<T> rows = new ArrayList<>(Math.max(cursor.getCount(), 0));
+        bind(cursor);
+        while (cursor.moveToNext()) {
+            rows.add(map(cursor));
+        }
+        return rows;
+    }
+
+    /**
+     * 读取查询结果的第一行
+     * @param cursor 查询结果,不会被关闭
+     * @return 实体对象,没有数据时返回null
+     */
+    public T mapFirst(Cursor cursor) {
+        if (!cursor.moveToFirst()) {
+            return null;
+        }
+        bind(cursor);
+        return map(cursor);
+    }
+
+    /**
+     * 按列名解析各字段在查询结果中的下标,不存在的列为-1
+     * @param cursor 查询结果
+     */
+    public abstract void bind(Cursor cursor);
+
+    /**
+     * 把当前行转换为实体对象,调用前需要先bind同一个cursor
+     * @param cursor 查询结果
+     * @return 实体对象
+     */
+    public abstract T map(Cursor cursor);
+}
@@ -0,0 +1,361 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据库结构的全部版本迁移,按版本号从小到大排列
+ * 新建数据库先执行第1版建表语句,再依次执行全部迁移,与老用户升级后的结构完全一致
+ * @author autumn_leaf
+ */
+final class SchemaMigrations {
+
+    private static final String TAG = "SchemaMigrations";
+
+    /**第1版建表语句*/
+    static final String[] BASE_SCHEMA = {
+            UserDbHelper.CREATE_USER_DB,
+            StudentDbHelper.CREATE_STUDENT_DB,
+            CommodityDbHelper.CREATE_COMMODITY_DB,
+            MyCollectionDbHelper.CREATE_COLLECTION_DB,
+            ReviewDbHelper.CREATE_REVIEW_DB
+    };
+
+    /**
+     * 把第1版评论表中"yyyy年MM月dd日 HH:mm:ss"格式的本地时间换算为毫秒时间戳,
+     * 'utc'修饰符把左边的本地时间转换为UTC,格式不符时结果为null
+     */
+    static final String LEGACY_REVIEW_TIME_MILLIS = "strftime('%s',substr(currentTime,1,4)||'-'||substr(currentTime,6,2)"
+            + "||'-'||substr(currentTime,9,2)||' '||substr(currentTime,13,8),'utc')*1000";
+
+    /**
+     * 商品位置的R*Tree空间索引,以tb_commodity_location为准,由其上的触发器同步
+     * R*Tree以单精度保存坐标,存入的点会扩大为包含原坐标的极小矩形,查询按矩形相交筛选
+     */
+    static final String[] GEO_INDEX_SCHEMA = {
+            "create virtual table tb_commodity_geo using rtree(id,minLat,maxLat,minLng,maxLng)",
+            "insert into tb_commodity_geo(id,minLat,maxLat,minLng,maxLng)"
+                    + " select commodityId,latitude,latitude,longitude,longitude from tb_commodity_location",
+            "create trigger tb_commodity_geo_ai after insert on tb_commodity_location begin"
+                    + " insert into tb_commodity_geo(id,minLat,maxLat,minLng,maxLng)"
+                    + " values(new.commodityId,new.latitude,new.latitude,new.longitude,new.longitude); end",
+            "create trigger tb_commodity_geo_au after update on tb_commodity_location begin"
+                    + " delete from tb_commodity_geo where id=old.commodityId;"
+                    + " insert into tb_commodity_geo(id,minLat,maxLat,minLng,maxLng)"
+                    + " values(new.commodityId,new.latitude,new.latitude,new.longitude,new.longitude); end",
+            "create trigger tb_commodity_geo_ad after delete on tb_commodity_location begin"
+                    + " delete from tb_commodity_geo where id=old.commodityId; end"
+    };
+
+    /**全部迁移,新增迁移追加到末尾,数据库版本随之升高*/
+    static final Migration[] MIGRATIONS = {
+            //第2版:图片从picture字段移出到文件存储,表中只保存图片key和宽高
+            new Migration(2,
+                    "alter table tb_commodity add column pictureKey text",
+                    "alter table tb_commodity add column pictureWidth integer",
+                    "alter table tb_commodity add column pictureHeight integer",
+                    "alter table tb_collection add column pictureKey text",
+                    "alter table tb_collection add column pictureWidth integer",
+                    "alter table tb_collection add column pictureHeight integer") {
+                @Override
+                protected void migrateData(Context context, SQLiteDatabase db) {
+                    movePicturesToStore(context, db, CommodityDbHelper.DB_NAME);
+                    movePicturesToStore(context, db, MyCollectionDbHelper.DB_NAME);
+                }
+            },
+            //第3版:为高频查询条件建立索引
+            new Migration(3,
+                    "create index idx_commodity_stuId on tb_commodity(stuId)",
+                    "create index idx_commodity_category_price on tb_commodity(category,price)",
+                    "create index idx_commodity_price on tb_commodity(price)",
+                    "create index idx_review_position on tb_review(position)",
+                    "create index idx_collection_stuId on tb_collection(stuId)",
+                    "create index idx_user_username on tb_user(username)",
+                    "create index idx_student_stuNumber on tb_student(stuNumber)"),
+            //第4版:标题和描述的全文索引
+            //SQLite自带分词器不能切分中文,分词结果由代码写入titleTokens/descriptionTokens字段,
+            //全文索引以商品表为外部内容表,只保存倒排索引,由触发器随商品表的增删改同步
+            new Migration(4,
+                    "alter table tb_commodity add column titleTokens text",
+                    "alter table tb_commodity add column descriptionTokens text",
+                    "create virtual table tb_commodity_fts using fts4(content=\"tb_commodity\",titleTokens,descriptionTokens)",
+                    "create trigger tb_commodity_fts_bu before update on tb_commodity begin"
+                            + " delete from tb_commodity_fts where docid=old.id; end",
+                    "create trigger tb_commodity_fts_bd before delete on tb_commodity begin"
+                            + " delete from tb_commodity_fts where docid=old.id; end",
+                    "create trigger tb_commodity_fts_au after update on tb_commodity begin"
+                            + " insert into tb_commodity_fts(docid,titleTokens,descriptionTokens)"
+                            + " values(new.id,new.titleTokens,new.descriptionTokens); end",
+                    "create trigger tb_commodity_fts_ai after insert on tb_commodity begin"
+                            + " insert into tb_commodity_fts(docid,titleTokens,descriptionTokens)"
+                            + " values(new.id,new.titleTokens,new.descriptionTokens); end") {
+                @Override
+                protected void migrateData(Context context, SQLiteDatabase db) {
+                    tokenizeCommodities(db);
+                }
+            },
+            //第5版:评论和收藏改为按商品编号关联,删除商品时一并删除其评论和收藏
+            new Migration(5,
+                    "alter table tb_review add column commodityId integer",
+                    "alter table tb_collection add column commodityId integer",
+                    "create index idx_review_commodityId on tb_review(commodityId)",
+                    "create index idx_collection_commodityId on tb_collection(commodityId)",
+                    "create trigger tb_commodity_cascade_bd before delete on tb_commodity begin"
+                            + " delete from tb_review where commodityId=old.id;"
+                            + " delete from tb_collection where commodityId=old.id; end") {
+                @Override
+                protected void migrateData(Context context, SQLiteDatabase db) {
+                    linkReviewsByPosition(db);
+                    //换算时还要按位置更新评论,换算完才删除位置索引
+                    db.execSQL("drop index idx_review_position");
+                    //收藏保存的是商品信息的副本,按标题、描述和价格找回对应的商品
+                    db.execSQL("update tb_collection set commodityId=(select min(c.id) from tb_commodity c"
+                            + " where c.title=tb_collection.title and c.description=tb_collection.description"
+                            + " and c.price=tb_collection.price)");
+                }
+            },
+            //第6版:收藏只保存(学号,商品编号),商品信息和图片通过关联商品表读取
+            //重建收藏表期间先删除引用它的触发器,改名后再重新创建
+            new Migration(6,
+                    "drop trigger tb_commodity_cascade_bd",
+                    "create table tb_collection_new (" +
+                            "id integer primary key autoincrement," +
+                            "stuId text not null," +
+                            "commodityId integer not null," +
+                            "unique(stuId,commodityId))",
+                    "insert or ignore into tb_collection_new(id,stuId,commodityId)"
+                            + " select id,stuId,commodityId from tb_collection"
+                            + " where stuId is not null and commodityId is not null order by id",
+                    "drop table tb_collection",
+                    "alter table tb_collection_new rename to tb_collection",
+                    "create index idx_collection_commodityId on tb_collection(commodityId)",
+                    "create trigger tb_commodity_cascade_bd before delete on tb_commodity begin"
+                            + " delete from tb_review where commodityId=old.id;"
+                            + " delete from tb_collection where commodityId=old.id; end") {
+                @Override
+                protected void afterCommit(Context context, SQLiteDatabase db) {
+                    //原来只被收藏副本引用的图片已经没有商品使用,升级提交后才删除,回滚时图片仍在
+                    PictureStore.getInstance(context).releaseUnreferenced(db);
+                }
+            },
+            //第7版:评论表重建为按商品编号关联、以毫秒时间戳记录时间,按(商品编号,时间)建立索引
+            //未能关联到商品的旧评论无法再显示,不再保留;时间无法解析的按0处理
+            new Migration(7,
+                    "drop trigger tb_commodity_cascade_bd",
+                    "create table tb_review_new (" +
+                            "id integer primary key autoincrement," +
+                            "commodityId integer not null," +
+                            "stuId text," +
+                            "content text," +
+                            "createdAt integer not null)",
+                    "insert into tb_review_new(id,commodityId,stuId,content,createdAt)"
+                            + " select id,commodityId,stuId,content,ifnull(" + LEGACY_REVIEW_TIME_MILLIS + ",0)"
+                            + " from tb_review where commodityId is not null order by id",
+                    "drop table tb_review",
+                    "alter table tb_review_new rename to tb_review",
+                    "create index idx_review_commodity_createdAt on tb_review(commodityId,createdAt)",
+                    "create trigger tb_commodity_cascade_bd before delete on tb_commodity begin"
+                            + " delete from tb_review where commodityId=old.id;"
+                            + " delete from tb_collection where commodityId=old.id; end"),
+            //第8版:用户名唯一,登录和注册按唯一索引直接查找
+            //以前注册不检查重名,同名账号只保留最早注册的一个,与原来登录时按顺序匹配的结果一致
+            new Migration(8,
+                    "delete from tb_user where id not in (select min(id) from tb_user group by username)",
+                    "drop index idx_user_username",
+                    "create unique index idx_user_username on tb_user(username)"),
+            //第9版:商品价格改为以分为单位的整数,避免浮点数比较和显示误差,按(类别,价格)建立索引支持价格区间筛选
+            //重建商品表期间先删除其上的触发器,全文索引按编号关联,编号不变索引不需要重建
+            new Migration(9,
+                    "drop trigger tb_commodity_cascade_bd",
+                    "drop trigger tb_commodity_fts_bu",
+                    "drop trigger tb_commodity_fts_bd",
+                    "drop trigger tb_commodity_fts_au",
+                    "drop trigger tb_commodity_fts_ai",
+                    "create table tb_commodity_new (" +
+                            "id integer primary key autoincrement," +
+                            "title text," +
+                            "category text," +
+                            "priceCents integer not null default 0," +
+                            "phone text," +
+                            "description text," +
+                            "pictureKey text," +
+                            "pictureWidth integer," +
+                            "pictureHeight integer," +
+                            "stuId text," +
+                            "titleTokens text," +
+                            "descriptionTokens text)",
+                    "insert into tb_commodity_new(id,title,category,priceCents,phone,description,pictureKey,"
+                            + "pictureWidth,pictureHeight,stuId,titleTokens,descriptionTokens)"
+                            + " select id,title,category,cast(round(ifnull(price,0)*100) as integer),phone,description,"
+                            + "pictureKey,pictureWidth,pictureHeight,stuId,titleTokens,descriptionTokens"
+                            + " from tb_commodity order by id",
+                    "drop table tb_commodity",
+                    "alter table tb_commodity_new rename to tb_commodity",
+                    "create index idx_commodity_stuId on tb_commodity(stuId)",
+                    "create index idx_commodity_priceCents on tb_commodity(priceCents)",
+                    "create index idx_commodity_category_priceCents on tb_commodity(category,priceCents)",
+                    "create trigger tb_commodity_fts_bu before update on tb_commodity begin"
+                            + " delete from tb_commodity_fts where docid=old.id; end",
+                    "create trigger tb_commodity_fts_bd before delete on tb_commodity begin"
+                            + " delete from tb_commodity_fts where docid=old.id; end",
+                    "create trigger tb_commodity_fts_au after update on tb_commodity begin"
+                            + " insert into tb_commodity_fts(docid,titleTokens,descriptionTokens)"
+                            + " values(new.id,new.titleTokens,new.descriptionTokens); end",
+                    "create trigger tb_commodity_fts_ai after insert on tb_commodity begin"
+                            + " insert into tb_commodity_fts(docid,titleTokens,descriptionTokens)"
+                            + " values(new.id,new.titleTokens,new.descriptionTokens); end",
+                    "create trigger tb_commodity_cascade_bd before delete on tb_commodity begin"
+                            + " delete from tb_review where commodityId=old.id;"
+                            + " delete from tb_collection where commodityId=old.id; end"),
+            //第10版:发布商品时记录经纬度,支持查询附近的商品
+            //位置单独存放,R*Tree空间索引在数据迁移中创建,系统SQLite不支持时按(纬度,经度)索引查询
+            new Migration(10,
+                    "create table tb_commodity_location (" +
+                            "commodityId integer primary key," +
+                            "latitude real not null," +
+                            "longitude real not null)",
+                    "create index idx_commodity_location_latitude on tb_commodity_location(latitude,longitude)",
+                    "drop trigger tb_commodity_cascade_bd",
+                    "create trigger tb_commodity_cascade_bd before delete on tb_commodity begin"
+                            + " delete from tb_review where commodityId=old.id;"
+                            + " delete from tb_collection where commodityId=old.id;"
+                            + " delete from tb_commodity_location where commodityId=old.id; end") {
+                @Override
+                protected void migrateData(Context context, SQLiteDatabase db) {
+                    createGeoIndex(db);
+                }
+            }
+    };
+
+    private SchemaMigrations() {
+    }
+
+    /**
+     * @return 执行完全部迁移后的数据库版本
+     */
+    static int latestVersion() {
+        int version = 1;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= version) {
+                throw new IllegalStateException("迁移版本必须递增：" + migration.version);
+            }
+            version = migration.version;
+        }
+        return version;
+    }
+
+    /**
+     * 创建R*Tree空间索引,系统SQLite没有编译R*Tree模块时跳过
+     * 创建虚拟表失败只影响这一条语句,不会回滚升级事务
+     * @param db 数据库
+     */
+    private static void createGeoIndex(SQLiteDatabase db) {
+        try {
+            db.execSQL(GEO_INDEX_SCHEMA[0]);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "不支持R*Tree,附近商品改用经纬度索引查询", e);
+            return;
+        }
+        for (int i = 1; i < GEO_INDEX_SCHEMA.length; i++) {
+            db.execSQL(GEO_INDEX_SCHEMA[i]);
+        }
+    }
+
+    /**
+     * 为已有商品补写分词字段,写完后按商品表重建全文索引
+     * @param db 数据库
+     */
+    private static void tokenizeCommodities(SQLiteDatabase db) {
+        SQLiteStatement update = db.compileStatement(
+                "update tb_commodity set titleTokens=?,descriptionTokens=? where id=?");
+        Cursor cursor = db.rawQuery("select id,title,description from tb_commodity", null);
+        try {
+            while (cursor.moveToNext()) {
+                update.bindString(1, CjkBigramTokenizer.tokenize(cursor.getString(1)));
+                update.bindString(2, CjkBigramTokenizer.tokenize(cursor.getString(2)));
+                update.bindLong(3, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+        //逐行更新时触发器删除的是尚未建立索引的旧行,重建一次保证索引统计信息准确
+        db.execSQL("insert into tb_commodity_fts(tb_commodity_fts) values('rebuild')");
+    }
+
+    /**
+     * 旧版评论按商品在首页列表中的位置保存,首页按价格排序,
+     * 按同样的顺序把位置换算为商品编号,已经对不上的评论无法找回,保持为空
+     * @param db 数据库
+     */
+    private static void linkReviewsByPosition(SQLiteDatabase db) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("select id from tb_commodity order by price,id", null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        SQLiteStatement update = db.compileStatement("update tb_review set commodityId=? where position=?");
+        try {
+            for (int position = 0; position < ids.size(); position++) {
+                update.bindLong(1, ids.get(position));
+                update.bindLong(2, position);
+                update.executeUpdateDelete();
+            }
+        } finally {
+            update.close();
+        }
+    }
+
+    /**
+     * 把表中picture字段的图片逐行转存为文件,并清空原字段
+     * 任一图片保存失败都会抛出异常,原字段在事务回滚后保持不变
+     * @param context 上下文
+     * @param db 数据库
+     * @param table 表名
+     */
+    private static void movePicturesToStore(Context context, SQLiteDatabase db, String table) {
+        //先取出所有待迁移的id,避免边遍历边修改同一张表
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("select id from " + table + " where picture is not null", null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        PictureStore store = PictureStore.getInstance(context);
+        ContentValues values = new ContentValues();
+        for (long id : ids) {
+            byte[] picture = AppDatabase.readBlob(db, table, "picture", id);
+            values.clear();
+            if (picture != null && picture.length > 0) {
+                int[] size = PictureStore.decodeSize(picture);
+                String key = store.save(picture);
+                if (key == null) {
+                    //磁盘已满等原因保存失败时不能清空原字段,抛出异常使整个升级事务回滚,下次启动再重试
+                    throw new IllegalStateException("图片转存失败：" + table + " id=" + id);
+                }
+                values.put("pictureKey", key);
+                values.put("pictureWidth", size[0]);
+                values.put("pictureHeight", size[1]);
+            }
+            values.putNull("picture");
+            db.update(table, values, "id=?", new String[]{String.valueOf(id)});
+            store.unpin(values.getAsString("pictureKey"));
+        }
+    }
+}
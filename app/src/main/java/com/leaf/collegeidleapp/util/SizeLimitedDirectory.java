@@ -0,0 +1,131 @@
+package com.leaf.collegeidleapp.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 限制总大小的文件目录,ThumbnailStore用它保存缩略图
+ * 文件先写到newTempFile取得的临时文件再通过commit放入,总大小超过上限时按最后使用时间从旧到新删除,直到低于上限的trimRatio。
+ * 总大小在第一次使用时统计一次,之后随放入和删除增减,正在写入的临时文件不计入,可以在任意线程访问
+ * @author autumn_leaf
+ */
+class SizeLimitedDirectory {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private final float trimRatio;
+    //目录中文件的总字节数,为-1表示还没统计
+    private long totalBytes = -1;
+
+    /**
+     * @param directory 目录,需要已经创建
+     * @param maxBytes 总大小上限
+     * @param trimRatio 超出上限后删除到上限的这个比例,避免每次放入都要清理
+     */
+    SizeLimitedDirectory(File directory, long maxBytes, float trimRatio) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.trimRatio = trimRatio;
+    }
+
+    File getFile(String name) {
+        return new File(directory, name);
+    }
+
+    /**
+     * 不同线程可能同时写同一个文件,临时文件按线程区分
+     * @param file 目标文件
+     * @return 写入用的临时文件
+     */
+    File newTempFile(File file) {
+        return new File(file.getPath() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+    }
+
+    private static boolean isTempFile(File file) {
+        return file.getName().endsWith(TEMP_SUFFIX);
+    }
+
+    /**
+     * 用写好的临时文件替换目录中的文件,超出上限时清理
+     * @param temp 临时文件
+     * @param file 目标文件
+     * @return 是否放入成功,失败时删除临时文件
+     */
+    synchronized boolean commit(File temp, File file) {
+        ensureTotalBytes();
+        long previous = file.exists() ? file.length() : 0;
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return false;
+        }
+        totalBytes += file.length() - previous;
+        if (totalBytes > maxBytes) {
+            trim();
+        }
+        return true;
+    }
+
+    /**
+     * 删除目录中的文件
+     * @param file 要删除的文件
+     */
+    synchronized void delete(File file) {
+        ensureTotalBytes();
+        long length = file.length();
+        if (file.exists() && file.delete()) {
+            totalBytes -= length;
+        }
+    }
+
+    synchronized long totalBytes() {
+        ensureTotalBytes();
+        return totalBytes;
+    }
+
+    private void ensureTotalBytes() {
+        if (totalBytes >= 0) {
+            return;
+        }
+        totalBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!isTempFile(file)) {
+                    totalBytes += file.length();
+                }
+            }
+        }
+    }
+
+    /**
+     * 按最后使用时间从旧到新删除,直到低于上限的trimRatio
+     */
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        long target = (long) (maxBytes * trimRatio);
+        for (File file : files) {
+            if (totalBytes <= target) {
+                break;
+            }
+            if (isTempFile(file)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+}
@@ -4,22 +4,22 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 
 import com.leaf.collegeidleapp.bean.Student;
+import com.leaf.collegeidleapp.bean.StudentRowMapper;
 
-import java.util.LinkedList;
+import java.util.List;
 
 /**
  * 学生数据库连接类
  * @author : autumn_leaf
  */
-public class StudentDbHelper extends SQLiteOpenHelper {
+public class StudentDbHelper {
 
     //定义学生表
     public static final String DB_NAME = "tb_student";
     /**创建学生表*/
-    private static final String CREATE_STUDENT_DB = "create table tb_student(" +
+    static final String CREATE_STUDENT_DB = "create table tb_student(" +
             "id integer primary key autoincrement," +
             "stuNumber text," +
             "stuName text," +
@@ -28,18 +28,10 @@ public class StudentDbHelper extends SQLiteOpenHelper {
             "stuQq text," +
             "stuAddress text)";
 
-    public StudentDbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
-
-    @Override
-    public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_STUDENT_DB);
-    }
-
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    private final AppDatabase database;
 
+    public StudentDbHelper(Context context) {
+        database = AppDatabase.getInstance(context);
     }
 
     /**
@@ -47,7 +39,7 @@ public class StudentDbHelper extends SQLiteOpenHelper {
      * @param student 学生对象
      */
     public void saveStudent(Student student) {
-        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteDatabase db = database.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put("stuNumber",student.getStuNumber());
         values.put("stuName",student.getStuName());
@@ -57,6 +49,7 @@ public class StudentDbHelper extends SQLiteOpenHelper {
         values.put("stuAddress",student.getStuAddress());
         db.insert(DB_NAME,null,values);
         values.clear();
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
     }
 
     /**
@@ -64,28 +57,10 @@ public class StudentDbHelper extends SQLiteOpenHelper {
      * @param stuNumber 学号
      * @return 查询到的学生对象列表
      */
-    public LinkedList<Student> readStudents(String stuNumber) {
-        LinkedList<Student> students = new LinkedList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
+    public List<Student> readStudents(String stuNumber) {
+        SQLiteDatabase db = database.getWritableDatabase();
         Cursor cursor = db.rawQuery("select * from tb_student where stuNumber=?",new String[]{stuNumber});
-        if(cursor.moveToFirst()) {
-            do {
-                //String stuNum = cursor.getString(cursor.getColumnIndex("stuNumber"));
-                String stuName = cursor.getString(cursor.getColumnIndex("stuName"));
-                String stuMajor = cursor.getString(cursor.getColumnIndex("stuMajor"));
-                String stuPhone = cursor.getString(cursor.getColumnIndex("stuPhone"));
-                String stuQq = cursor.getString(cursor.getColumnIndex("stuQq"));
-                String stuAddress = cursor.getString(cursor.getColumnIndex("stuAddress"));
-                Student student = new Student();
-                //student.setStuNumber(stuNum);
-                student.setStuName(stuName);
-                student.setStuMajor(stuMajor);
-                student.setStuPhone(stuPhone);
-                student.setStuQq(stuQq);
-                student.setStuAddress(stuAddress);
-                students.add(student);
-            }while (cursor.moveToNext());
-        }
+        List<Student> students = new StudentRowMapper().mapAll(cursor);
         cursor.close();
         return students;
     }
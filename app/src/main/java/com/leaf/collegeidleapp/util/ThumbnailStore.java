@@ -0,0 +1,328 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 商品缩略图的磁盘缓存
+ * 发布商品时从原图生成列表和详情两种固定大小的缩略图,两种分别保存在缓存目录下的子目录中。
+ * 列表缩略图小且大小固定,每件商品都保留一份,启动时在后台为缺少的补生成,列表滑动时从不读取原图;
+ * 详情缩略图总大小超过上限时删除最久没有使用的,打开详情页时再从原图生成。
+ * 内存中的一层由ImageLoader的位图缓存负责。
+ * 缩略图按图片key命名,内容相同的图片共用一份
+ * @author autumn_leaf
+ */
+public class ThumbnailStore {
+
+    private static final String TAG = "ThumbnailStore";
+    //缩略图目录,位于缓存目录下,被系统清理后可以重新生成
+    private static final String DIR_NAME = "thumbnails";
+
+    //列表缩略图:裁成正方形,与列表中centerCrop显示的效果一致
+    public static final int LIST = 0;
+    //详情缩略图:保持宽高比,长边不超过DETAIL_SIZE
+    public static final int DETAIL = 1;
+    //两种缩略图各自的子目录,详情缩略图的淘汰不会删除列表缩略图
+    private static final String[] KIND_DIR_NAMES = {"list", "detail"};
+
+    //列表图片为140dp,按480dpi的屏幕取像素数
+    private static final int LIST_SIZE = 420;
+    private static final int DETAIL_SIZE = 1080;
+    private static final int JPEG_QUALITY = 85;
+
+    //详情缩略图的总大小上限,列表缩略图不设上限,只随图片删除
+    private static final long MAX_DETAIL_BYTES = 64 * 1024 * 1024;
+    //超出上限后删除到上限的这个比例,避免每次写入都要清理
+    private static final float TRIM_RATIO = 0.9f;
+
+    private static volatile ThumbnailStore instance;
+
+    private final Context context;
+    //按种类的缩略图目录,第一次读写时才创建,并负责统计总大小和清理
+    private final SizeLimitedDirectory[] directories = new SizeLimitedDirectory[KIND_DIR_NAMES.length];
+    private boolean backfillStarted;
+    //已经排队等待补生成列表缩略图的图片key,避免重复排队
+    private final Set<String> regenerating = new HashSet<>();
+
+    private ThumbnailStore(Context context) {
+        this.context = context;
+    }
+
+    public static ThumbnailStore getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailStore.class) {
+                if (instance == null) {
+                    instance = new ThumbnailStore(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private synchronized SizeLimitedDirectory getDirectory(int kind) {
+        if (directories[kind] == null) {
+            File dir = new File(new File(context.getCacheDir(), DIR_NAME), KIND_DIR_NAMES[kind]);
+            if (!dir.exists() && !dir.mkdirs()) {
+                Log.e(TAG, "创建缩略图目录失败：" + dir);
+            }
+            long maxBytes = kind == DETAIL ? MAX_DETAIL_BYTES : Long.MAX_VALUE;
+            directories[kind] = new SizeLimitedDirectory(dir, maxBytes, TRIM_RATIO);
+        }
+        return directories[kind];
+    }
+
+    private File getFile(String pictureKey, int kind) {
+        return getDirectory(kind).getFile(pictureKey);
+    }
+
+    /**
+     * 取得缩略图文件
+     * 详情缩略图还没生成或已被淘汰时从原图生成;列表缩略图缺失时不读取原图,
+     * 返回null由列表显示占位图,并在后台补生成,行下次绑定时即可显示
+     * @param pictureKey 图片key
+     * @param kind LIST或DETAIL
+     * @return 缩略图文件,没有可用的缩略图时返回null
+     */
+    public File get(String pictureKey, int kind) {
+        File file = getFile(pictureKey, kind);
+        if (file.exists()) {
+            if (kind == DETAIL) {
+                //按最后使用时间淘汰
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return file;
+        }
+        if (kind == LIST) {
+            regenerateInBackground(pictureKey);
+            return null;
+        }
+        return generateFromPicture(pictureKey, kind) ? file : null;
+    }
+
+    /**
+     * 在后台从原图补生成列表缩略图,与启动时的补生成在同一个线程中排队
+     */
+    private void regenerateInBackground(final String pictureKey) {
+        synchronized (regenerating) {
+            if (!regenerating.add(pictureKey)) {
+                return;
+            }
+        }
+        AppExecutors.getInstance().backgroundIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!getFile(pictureKey, LIST).exists()) {
+                        generateFromPicture(pictureKey, LIST);
+                    }
+                } finally {
+                    synchronized (regenerating) {
+                        regenerating.remove(pictureKey);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 从已经解码的原图生成两种缩略图,发布商品时调用,不必再读取原图
+     * @param pictureKey 图片key
+     * @param picture 原图
+     */
+    public void generate(String pictureKey, Bitmap picture) {
+        if (pictureKey == null || picture == null) {
+            return;
+        }
+        for (int kind = LIST; kind <= DETAIL; kind++) {
+            generate(pictureKey, picture, kind);
+        }
+    }
+
+    private boolean generate(String pictureKey, Bitmap picture, int kind) {
+        Bitmap thumbnail = scale(picture, kind);
+        boolean written = write(kind, getFile(pictureKey, kind), thumbnail);
+        thumbnail.recycle();
+        return written;
+    }
+
+    /**
+     * 读取原图生成一种缩略图,解码时只缩小到这种缩略图需要的大小
+     * @return 是否生成成功
+     */
+    private boolean generateFromPicture(String pictureKey, int kind) {
+        File original = PictureStore.getInstance(context).getFile(pictureKey);
+        if (!original.exists()) {
+            return false;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(original.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return false;
+        }
+        int width = options.outWidth;
+        int height = options.outHeight;
+        if (kind == LIST) {
+            //缩小后短边仍不小于列表缩略图的边长
+            int reqShort = Math.min(LIST_SIZE, Math.min(width, height));
+            options.inSampleSize = ImageLoader.calculateInSampleSize(width, height, reqShort, reqShort);
+        } else {
+            //缩小后长边仍不小于详情缩略图的长边
+            int reqLong = Math.min(DETAIL_SIZE, Math.max(width, height));
+            options.inSampleSize = width >= height
+                    ? ImageLoader.calculateInSampleSize(width, height, reqLong, 1)
+                    : ImageLoader.calculateInSampleSize(width, height, 1, reqLong);
+        }
+        options.inJustDecodeBounds = false;
+        Bitmap picture = BitmapFactory.decodeFile(original.getPath(), options);
+        if (picture == null) {
+            return false;
+        }
+        boolean written = generate(pictureKey, picture, kind);
+        picture.recycle();
+        return written;
+    }
+
+    /**
+     * 缩放到缩略图大小,透明部分填充白色
+     */
+    private static Bitmap scale(Bitmap picture, int kind) {
+        int width = picture.getWidth();
+        int height = picture.getHeight();
+        int outWidth;
+        int outHeight;
+        float scale;
+        if (kind == LIST) {
+            //短边缩放到LIST_SIZE,居中裁掉长边多出的部分
+            outWidth = LIST_SIZE;
+            outHeight = LIST_SIZE;
+            scale = Math.max((float) LIST_SIZE / width, (float) LIST_SIZE / height);
+        } else {
+            //长边不超过DETAIL_SIZE,小图保持原样
+            scale = Math.min(1f, Math.min((float) DETAIL_SIZE / width, (float) DETAIL_SIZE / height));
+            outWidth = Math.max(1, Math.round(width * scale));
+            outHeight = Math.max(1, Math.round(height * scale));
+        }
+        Bitmap thumbnail = Bitmap.createBitmap(outWidth, outHeight, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(thumbnail);
+        canvas.drawColor(Color.WHITE);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((outWidth - width * scale) / 2, (outHeight - height * scale) / 2);
+        canvas.drawBitmap(picture, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        return thumbnail;
+    }
+
+    /**
+     * 先写临时文件再重命名,写入后超出上限时清理
+     * @return 是否写入成功
+     */
+    private boolean write(int kind, File file, Bitmap thumbnail) {
+        File temp = getDirectory(kind).newTempFile(file);
+        FileOutputStream out = null;
+        boolean compressed;
+        try {
+            out = new FileOutputStream(temp);
+            compressed = thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.e(TAG, "保存缩略图失败：" + e.getMessage());
+            temp.delete();
+            return false;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        if (!compressed) {
+            //不完整的文件不能替换已有的缩略图
+            Log.e(TAG, "压缩缩略图失败：" + file.getName());
+            temp.delete();
+            return false;
+        }
+        return getDirectory(kind).commit(temp, file);
+    }
+
+    /**
+     * 删除某张图片的缩略图,图片文件被删除时调用
+     * @param pictureKey 图片key
+     */
+    public void remove(String pictureKey) {
+        for (int kind = LIST; kind <= DETAIL; kind++) {
+            getDirectory(kind).delete(getFile(pictureKey, kind));
+        }
+    }
+
+    /**
+     * 在后台为每件已有商品补生成列表缩略图,从最新发布的商品开始。
+     * 详情缩略图只在打开详情页时生成。每次启动调用一次,已经生成过的直接跳过
+     */
+    public void backfillInBackground() {
+        synchronized (this) {
+            if (backfillStarted) {
+                return;
+            }
+            backfillStarted = true;
+        }
+        AppExecutors.getInstance().backgroundIO().execute(new Runnable() {
+            @Override
+            public void run() {
+                backfill();
+            }
+        });
+    }
+
+    private void backfill() {
+        deleteLegacyFiles();
+        List<String> keys = new ArrayList<>();
+        Cursor cursor = AppDatabase.getInstance(context).getReadableDatabase().rawQuery(
+                "select pictureKey from tb_commodity where pictureKey is not null"
+                        + " group by pictureKey order by max(id) desc", null);
+        try {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        int generated = 0;
+        for (String key : keys) {
+            if (!getFile(key, LIST).exists() && generateFromPicture(key, LIST)) {
+                generated++;
+            }
+        }
+        Log.i(TAG, "补生成列表缩略图" + generated + "张");
+    }
+
+    /**
+     * 删除旧版本直接放在缩略图目录下、带种类后缀的缩略图,它们已经不会再被读取
+     */
+    private void deleteLegacyFiles() {
+        File[] files = new File(context.getCacheDir(), DIR_NAME).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile() && !file.delete()) {
+                Log.w(TAG, "删除旧缩略图失败：" + file);
+            }
+        }
+    }
+}
@@ -4,78 +4,72 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteOpenHelper;
 
 import com.leaf.collegeidleapp.bean.User;
-
-import java.util.LinkedList;
+import com.leaf.collegeidleapp.bean.UserRowMapper;
 
 /**
  * 用户数据库连接类
  * @author : autumn_leaf
  */
-public class UserDbHelper extends SQLiteOpenHelper {
+public class UserDbHelper {
 
     //定义数据库表名
     public static final String DB_NAME = "tb_user";
     /** 创建用户信息表 **/
-    private static final String CREATE_USER_DB = "create table tb_user (" +
+    static final String CREATE_USER_DB = "create table tb_user (" +
             "id integer primary key autoincrement," +
             "uuid text," +
             "username text," +
             "password text )";
 
 
-    public UserDbHelper(Context context, String name, SQLiteDatabase.CursorFactory factory, int version) {
-        super(context, name, factory, version);
-    }
-
-    @Override
-    public void onCreate(SQLiteDatabase db) {
-        db.execSQL(CREATE_USER_DB);
-    }
-
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    private final AppDatabase database;
 
+    public UserDbHelper(Context context) {
+        database = AppDatabase.getInstance(context);
     }
 
     /**
-     * 注册时添加用户信息
+     * 注册时添加用户信息,用户名已存在时不添加
      * @param user 学生用户
+     * @return 添加成功返回true,用户名已被注册返回false
      */
-    public void addUser(User user) {
-        SQLiteDatabase db = this.getWritableDatabase();
+    public boolean addUser(User user) {
+        SQLiteDatabase db = database.getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put("uuid",user.getUuid());
         values.put("username",user.getUsername());
         values.put("password",user.getPassword());
-        db.insert(DB_NAME,null,values);
+        //由用户名唯一索引判断重名,检查和插入在同一条语句中完成
+        long id = db.insertWithOnConflict(DB_NAME,null,values,SQLiteDatabase.CONFLICT_IGNORE);
         values.clear();
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
+        return id != -1;
     }
 
     /**
-     * 登陆时查询用户信息
-     * @return users 查询到的用户
+     * 按用户名查找用户
+     * @param username 用户名
+     * @return 用户,不存在时返回null
      */
-    public LinkedList<User> readUsers() {
-        LinkedList<User> users = new LinkedList<>();
-        SQLiteDatabase db = this.getWritableDatabase();
-        Cursor cursor = db.rawQuery("select * from tb_user",null);
-        if(cursor.moveToFirst()) {
-            do{
-                String uuid = cursor.getString(cursor.getColumnIndex("uuid"));
-                String username = cursor.getString(cursor.getColumnIndex("username"));
-                String password = cursor.getString(cursor.getColumnIndex("password"));
-                User user = new User();
-                user.setUuid(uuid);
-                user.setUsername(username);
-                user.setPassword(password);
-                users.add(user);
-            }while (cursor.moveToNext());
-        }
+    public User findUser(String username) {
+        SQLiteDatabase db = database.getWritableDatabase();
+        Cursor cursor = db.rawQuery("select id,uuid,username,password from tb_user where username=?",new String[]{username});
+        User user = new UserRowMapper().mapFirst(cursor);
         cursor.close();
-        return users;
+        return user;
+    }
+
+    /**
+     * 登录验证,耗时与用户数量无关,但仍需在子线程中调用
+     * @param username 用户名
+     * @param password 密码
+     * @return 用户名存在且密码正确返回true
+     */
+    public boolean authenticate(String username,String password) {
+        User user = findUser(username);
+        return user != null && password.equals(user.getPassword());
     }
 
     /**
@@ -85,10 +79,11 @@ public class UserDbHelper extends SQLiteOpenHelper {
      * @return 是否修改好
      */
     public boolean updateUser(String username,String password) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        SQLiteDatabase db = database.getWritableDatabase();
         String sql = "update tb_user set password=? where username=?";
         String[] obj = new String[]{password,username};
         db.execSQL(sql,obj);
+        InvalidationTracker.getInstance().notifyTablesChanged(DB_NAME);
         return true;
     }
 
@@ -0,0 +1,305 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.leaf.collegeidleapp.bean.Review;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 评论和收藏的后写队列
+ * 界面提交的修改立即返回,先记入内存并追加到日志文件,稍后在diskIO线程中合并为一个事务写入数据库。
+ * 同一商品的多次收藏/取消收藏只保留最后一次,短时间内重复提交的相同评论只保留一条。
+ * 进程在写入数据库前被杀死时,下次启动从日志中重放,已经写入的评论不会重复写入
+ * @author autumn_leaf
+ */
+public class WriteBehindQueue {
+
+    private static final String TAG = "WriteBehindQueue";
+    //日志文件名,每行一条JSON格式的修改
+    private static final String JOURNAL_NAME = "write_behind.journal";
+    //提交后等待多久再写入数据库,期间的连续操作合并到同一个事务
+    private static final long FLUSH_DELAY_MS = 300;
+    //写入数据库失败后第一次重试的等待时间,之后每次失败加倍,直到MAX_RETRY_DELAY_MS
+    private static final long FIRST_RETRY_DELAY_MS = 1000;
+    private static final long MAX_RETRY_DELAY_MS = 60 * 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static volatile WriteBehindQueue instance;
+
+    private final Context context;
+    //日志文件,只在journalIO线程中访问
+    private File journal;
+    private final AppDatabase database;
+    private final MyCollectionDbHelper collectionDbHelper;
+    private final ReviewDbHelper reviewDbHelper;
+    //日志文件的读写都在这个线程中按顺序执行
+    private final ExecutorService journalIO = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    //以下字段都由this保护
+    //等待写入的收藏和评论
+    private final PendingWrites pending = new PendingWrites();
+    private boolean flushScheduled;
+    //下次写入失败后的重试等待时间,写入成功后复位
+    private long retryDelayMs = FIRST_RETRY_DELAY_MS;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private WriteBehindQueue(Context context) {
+        //构造时不访问磁盘,日志在后台读取
+        this.context = context;
+        database = AppDatabase.getInstance(context);
+        collectionDbHelper = new MyCollectionDbHelper(context);
+        reviewDbHelper = new ReviewDbHelper(context);
+        journalIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                replayJournal();
+            }
+        });
+    }
+
+    public static WriteBehindQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (WriteBehindQueue.class) {
+                if (instance == null) {
+                    instance = new WriteBehindQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 收藏或取消收藏,立即返回
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     * @param favorited 是否收藏
+     */
+    public void setFavorited(String stuId, int commodityId, boolean favorited) {
+        synchronized (this) {
+            pending.setFavorited(stuId, commodityId, favorited);
+        }
+        appendToJournal(PendingWrites.favoriteToJson(stuId, commodityId, favorited));
+        scheduleFlush();
+    }
+
+    /**
+     * 还没写入数据库的收藏状态
+     * @param stuId 学号
+     * @param commodityId 商品编号
+     * @return 最后一次提交的收藏状态,没有等待写入的修改时返回null,此时以数据库为准
+     */
+    public synchronized Boolean pendingFavorite(String stuId, int commodityId) {
+        return pending.pendingFavorite(stuId, commodityId);
+    }
+
+    /**
+     * 发表评论,立即返回
+     * @param review 评论,接受时设置为负数的临时编号,写入数据库的是队列中的副本,
+     *               后台线程不会修改界面持有的这个对象,重新读取列表后换成数据库中的评论
+     * @return 是否接受,短时间内重复提交的相同评论返回false
+     */
+    public boolean addReview(Review review) {
+        synchronized (this) {
+            if (!pending.addReview(review, SystemClock.elapsedRealtime())) {
+                return false;
+            }
+        }
+        appendToJournal(PendingWrites.reviewToJson(review));
+        scheduleFlush();
+        return true;
+    }
+
+    private void scheduleFlush() {
+        synchronized (this) {
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        postFlush(FLUSH_DELAY_MS);
+    }
+
+    private void postFlush(long delayMs) {
+        mainHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                AppExecutors.getInstance().diskIO().execute(flushTask);
+            }
+        }, delayMs);
+    }
+
+    /**
+     * 把等待中的修改在一个事务中写入数据库,在diskIO线程中执行
+     */
+    private void flush() {
+        Map<String, Boolean> favorites;
+        List<Review> reviews;
+        synchronized (this) {
+            flushScheduled = false;
+            favorites = pending.favorites();
+            reviews = pending.reviews();
+        }
+        if (favorites.isEmpty() && reviews.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = database.getWritableDatabase();
+        try {
+            db.beginTransactionNonExclusive();
+            try {
+                for (Map.Entry<String, Boolean> entry : favorites.entrySet()) {
+                    String[] key = entry.getKey().split("\n", 2);
+                    collectionDbHelper.setFavorited(key[0], Integer.parseInt(key[1]), entry.getValue());
+                }
+                for (Review review : reviews) {
+                    reviewDbHelper.addReviewOnce(review);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            //事务中各DbHelper已通知过,提交后再通知一次,避免提交前开始的查询缓存旧结果或观察者读到旧数据
+            InvalidationTracker.getInstance().notifyTablesChanged(MyCollectionDbHelper.DB_NAME, ReviewDbHelper.DB_NAME);
+        } catch (RuntimeException e) {
+            //SQLiteException之外的异常同样不能结束diskIO线程,留在队列和日志中,等待一段时间后重试,
+            //等待期间提交的修改一起写入
+            long delayMs;
+            synchronized (this) {
+                delayMs = retryDelayMs;
+                retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+                flushScheduled = true;
+            }
+            Log.e(TAG, "写入数据库失败," + delayMs + "ms后重试", e);
+            postFlush(delayMs);
+            return;
+        }
+        synchronized (this) {
+            retryDelayMs = FIRST_RETRY_DELAY_MS;
+            pending.removeWritten(favorites, reviews);
+        }
+        journalIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                rewriteJournal();
+            }
+        });
+    }
+
+    private void appendToJournal(final JSONObject entry) {
+        journalIO.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Writer writer = new OutputStreamWriter(new FileOutputStream(journal, true), UTF_8);
+                    try {
+                        writer.write(entry.toString());
+                        writer.write('\n');
+                    } finally {
+                        writer.close();
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "写入日志失败", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 写入数据库后用仍在等待的修改重写日志,没有等待的修改时删除日志
+     */
+    private void rewriteJournal() {
+        List<JSONObject> entries;
+        synchronized (this) {
+            entries = pending.toJournal();
+        }
+        if (entries.isEmpty()) {
+            if (journal.exists() && !journal.delete()) {
+                Log.e(TAG, "删除日志失败：" + journal);
+            }
+            return;
+        }
+        //先写临时文件再重命名,重写到一半被杀死时旧日志仍然完整
+        File temp = new File(journal.getPath() + ".tmp");
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+            try {
+                for (JSONObject entry : entries) {
+                    writer.write(entry.toString());
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(journal)) {
+                Log.e(TAG, "替换日志失败：" + journal);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "重写日志失败", e);
+        }
+    }
+
+    /**
+     * 启动时把上次没有写入数据库的修改重新放入队列,本次已经提交的修改更新,以本次为准
+     */
+    private void replayJournal() {
+        journal = new File(context.getFilesDir(), JOURNAL_NAME);
+        if (!journal.exists()) {
+            return;
+        }
+        int replayed = 0;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), UTF_8));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        synchronized (this) {
+                            pending.replay(new JSONObject(line));
+                        }
+                        replayed++;
+                    } catch (JSONException e) {
+                        //被杀死时可能留下写了一半的最后一行
+                        Log.w(TAG, "跳过损坏的日志：" + line);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "读取日志失败", e);
+            return;
+        }
+        if (replayed > 0) {
+            Log.i(TAG, "重放" + replayed + "条未写入的修改");
+            scheduleFlush();
+        }
+    }
+}
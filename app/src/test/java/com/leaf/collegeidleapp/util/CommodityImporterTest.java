@@ -0,0 +1,155 @@
+package com.leaf.collegeidleapp.util;
+
+import com.leaf.collegeidleapp.bean.Commodity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 在JVM上检查导入的CSV解析、记录校验,以及按批次用同一条插入语句导入十万行的耗时
+ */
+public class CommodityImporterTest {
+
+    private static final int ROWS = 100000;
+    //导入十万行的耗时上限,按批提交时在开发机上约需数秒,逐行提交需要数分钟
+    private static final long MAX_IMPORT_SECONDS = 30;
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SchemaMigrations.BASE_SCHEMA) {
+                statement.execute(sql);
+            }
+            for (Migration migration : SchemaMigrations.MIGRATIONS) {
+                for (String sql : migration.statements) {
+                    statement.execute(sql);
+                }
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void csvReaderHandlesQuotesAndLineBreaks() throws IOException {
+        String csv = "title,price,description\r\n"
+                + "\"台灯,护眼\",12.5,\"说\"\"明\"\"\n第二行\"\r\n"
+                + "\n"
+                + "键盘,8,\n";
+        CommodityImporter.CsvRecordReader reader = new CommodityImporter.CsvRecordReader(new StringReader(csv));
+        Map<String, String> first = reader.next();
+        assertEquals("台灯,护眼", first.get("title"));
+        assertEquals("12.5", first.get("price"));
+        assertEquals("说\"明\"\n第二行", first.get("description"));
+        Map<String, String> second = reader.next();
+        assertEquals("键盘", second.get("title"));
+        assertEquals("", second.get("description"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void parseRecordConvertsPriceAndRejectsBadRows() {
+        Map<String, String> record = new HashMap<>();
+        record.put("title", "自行车");
+        record.put("price", "120.35");
+        record.put("latitude", "30.5");
+        record.put("longitude", "114.3");
+        Commodity commodity = CommodityImporter.parseRecord(record);
+        assertEquals(12035, commodity.getPriceCents());
+        assertEquals(30.5, commodity.getLatitude(), 0);
+
+        record.put("latitude", "91");
+        assertRejected(record);
+        record.remove("latitude");
+        record.put("title", "");
+        assertRejected(record);
+    }
+
+    @Test
+    public void hundredThousandRowsImportInSeconds() throws IOException, SQLException {
+        StringBuilder csv = new StringBuilder("title,category,price,phone,description,stuId\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("二手自行车").append(i).append(",生活用品,").append(100 + i % 500)
+                    .append(".5,13800000000,\"九成新,骑行正常\",2017").append(i % 1000).append('\n');
+        }
+        CommodityImporter.CsvRecordReader reader = new CommodityImporter.CsvRecordReader(new StringReader(csv.toString()));
+
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        int imported = 0;
+        try (PreparedStatement insert = connection.prepareStatement(CommodityImporter.INSERT_COMMODITY)) {
+            Map<String, String> record = reader.next();
+            while (record != null) {
+                //与CommodityImporter相同,每BATCH_SIZE行提交一次
+                for (int batch = 0; record != null && batch < CommodityImporter.BATCH_SIZE; batch++) {
+                    bind(insert, CommodityImporter.parseRecord(record));
+                    insert.executeUpdate();
+                    imported++;
+                    record = reader.next();
+                }
+                connection.commit();
+            }
+        }
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+
+        assertEquals(ROWS, imported);
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from tb_commodity_fts where tb_commodity_fts match '"
+                     + CjkBigramTokenizer.toMatchQuery("自行车") + "'")) {
+            //插入时触发器同时建立了全文索引
+            assertEquals(ROWS, resultSet.getInt(1));
+        }
+        assertTrue("导入" + ROWS + "行用了" + seconds + "秒", seconds < MAX_IMPORT_SECONDS);
+    }
+
+    private static void assertRejected(Map<String, String> record) {
+        try {
+            CommodityImporter.parseRecord(record);
+            fail("应当跳过：" + record);
+        } catch (IllegalArgumentException expected) {
+            //格式错误的记录由导入过程计入跳过的行数
+        }
+    }
+
+    /**
+     * 按CommodityImporter.bindCommodity的顺序绑定参数
+     */
+    private static void bind(PreparedStatement insert, Commodity commodity) throws SQLException {
+        insert.setString(1, commodity.getTitle());
+        insert.setString(2, commodity.getCategory());
+        insert.setLong(3, commodity.getPriceCents());
+        insert.setString(4, commodity.getPhone());
+        insert.setString(5, commodity.getDescription());
+        insert.setNull(6, Types.VARCHAR);
+        insert.setLong(7, commodity.getPictureWidth());
+        insert.setLong(8, commodity.getPictureHeight());
+        insert.setString(9, commodity.getStuId());
+        insert.setString(10, CjkBigramTokenizer.tokenize(commodity.getTitle()));
+        insert.setString(11, CjkBigramTokenizer.tokenize(commodity.getDescription()));
+    }
+}
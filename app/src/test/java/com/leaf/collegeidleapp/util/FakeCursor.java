@@ -0,0 +1,265 @@
+package com.leaf.collegeidleapp.util;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+/**
+ * 在JVM上使用的内存Cursor,列名查找方式与AbstractCursor相同
+ */
+class FakeCursor implements Cursor {
+
+    private final String[] columns;
+    private final Object[][] rows;
+    private int position = -1;
+    private boolean closed;
+
+    FakeCursor(String[] columns, Object[][] rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    private Object value(int column) {
+        return rows[position][column];
+    }
+
+    @Override
+    public int getCount() {
+        return rows.length;
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position >= rows.length) {
+            this.position = rows.length;
+            return false;
+        }
+        if (position < 0) {
+            this.position = -1;
+            return false;
+        }
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(rows.length - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return position == 0 && rows.length != 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        return position == rows.length - 1 && rows.length != 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return rows.length == 0 || position == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return rows.length == 0 || position == rows.length;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        //与AbstractCursor一致:去掉表名前缀后逐个忽略大小写比较
+        int periodIndex = columnName.lastIndexOf('.');
+        if (periodIndex != -1) {
+            columnName = columnName.substring(periodIndex + 1);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return columns[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columns;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        return (byte[]) value(columnIndex);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return ((Number) value(columnIndex)).shortValue();
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? 0 : ((Number) value).intValue();
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? 0 : ((Number) value).longValue();
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? 0 : ((Number) value).floatValue();
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = value(columnIndex);
+        return value == null ? 0 : ((Number) value).doubleValue();
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object value = value(columnIndex);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        } else if (value instanceof Float || value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof Number) {
+            return FIELD_TYPE_INTEGER;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return value(columnIndex) == null;
+    }
+
+    @Override
+    public void deactivate() {
+    }
+
+    @Override
+    public boolean requery() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void setNotificationUri(ContentResolver cr, Uri uri) {
+    }
+
+    @Override
+    public Uri getNotificationUri() {
+        return null;
+    }
+
+    @Override
+    public boolean getWantsAllOnMoveCalls() {
+        return false;
+    }
+
+    @Override
+    public void setExtras(Bundle extras) {
+    }
+
+    @Override
+    public Bundle getExtras() {
+        return Bundle.EMPTY;
+    }
+
+    @Override
+    public Bundle respond(Bundle extras) {
+        return Bundle.EMPTY;
+    }
+}
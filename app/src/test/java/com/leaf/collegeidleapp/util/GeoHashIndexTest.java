@@ -0,0 +1,119 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 网格索引的最近k件查询与全部排序的结果一致,插入和删除后同样一致
+ */
+public class GeoHashIndexTest {
+
+    private static final int POINTS = 20000;
+    private static final int K = 20;
+
+    @Test
+    public void geohashMatchesReference() {
+        assertEquals("u4pruy", GeoHashIndex.geohash(57.64911, 10.40744));
+    }
+
+    @Test
+    public void nearestMatchesBruteForce() {
+        Random random = new Random(42);
+        GeoHashIndex index = new GeoHashIndex();
+        double[][] points = new double[POINTS][];
+        for (int i = 0; i < POINTS; i++) {
+            //大部分商品集中在校园附近,少量分布在全国
+            points[i] = i % 10 == 0
+                    ? new double[]{20 + random.nextDouble() * 25, 100 + random.nextDouble() * 20}
+                    : new double[]{30.5 + random.nextGaussian() * 0.05, 114.3 + random.nextGaussian() * 0.05};
+            index.put(i, points[i][0], points[i][1]);
+        }
+        double[][] queries = {{30.5, 114.3}, {30.52, 114.36}, {40.0, 116.0}, {-33.9, 18.4}};
+        for (double[] query : queries) {
+            assertNearest(index, points, null, query);
+        }
+
+        //删除一部分,再移动或重新加入一部分后仍然一致
+        boolean[] removed = new boolean[POINTS];
+        for (int i = 0; i < POINTS; i += 3) {
+            index.remove(i);
+            removed[i] = true;
+        }
+        for (int i = 1; i < POINTS; i += 7) {
+            points[i] = new double[]{30.5 + random.nextGaussian() * 0.01, 114.3 + random.nextGaussian() * 0.01};
+            index.put(i, points[i][0], points[i][1]);
+            removed[i] = false;
+        }
+        int remaining = 0;
+        for (boolean r : removed) {
+            remaining += r ? 0 : 1;
+        }
+        assertEquals(remaining, index.size());
+        for (double[] query : queries) {
+            assertNearest(index, points, removed, query);
+        }
+    }
+
+    @Test
+    public void nearestWrapsAcrossAntimeridian() {
+        Random random = new Random(7);
+        GeoHashIndex index = new GeoHashIndex();
+        double[][] points = new double[POINTS][];
+        for (int i = 0; i < POINTS; i++) {
+            //集中在日期变更线两侧,经度在±180°附近
+            double longitude = 180 + random.nextGaussian() * 0.05;
+            if (longitude > 180) {
+                longitude -= 360;
+            }
+            points[i] = new double[]{-16.5 + random.nextGaussian() * 0.05, longitude};
+            index.put(i, points[i][0], points[i][1]);
+        }
+        double[][] queries = {{-16.5, 179.999}, {-16.5, -179.999}, {-16.45, 179.95}};
+        for (double[] query : queries) {
+            assertNearest(index, points, null, query);
+        }
+    }
+
+    @Test
+    public void fewerPointsThanK() {
+        GeoHashIndex index = new GeoHashIndex();
+        index.put(1, 30.5, 114.3);
+        index.put(2, -30.5, -60.0);
+        List<GeoHashIndex.Neighbor> nearest = index.nearest(30.5, 114.31, K);
+        assertEquals(2, nearest.size());
+        assertEquals(1, nearest.get(0).id);
+        assertEquals(2, nearest.get(1).id);
+    }
+
+    private static void assertNearest(GeoHashIndex index, double[][] points, boolean[] removed, double[] query) {
+        List<double[]> expected = new ArrayList<>();
+        for (int i = 0; i < points.length; i++) {
+            if (removed == null || !removed[i]) {
+                expected.add(new double[]{i,
+                        DistanceCalculator.calculateDistance(query[0], query[1], points[i][0], points[i][1])});
+            }
+        }
+        double[] distances = new double[expected.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = expected.get(i)[1];
+        }
+        Arrays.sort(distances);
+
+        List<GeoHashIndex.Neighbor> nearest = index.nearest(query[0], query[1], K);
+        assertEquals(K, nearest.size());
+        for (int i = 0; i < K; i++) {
+            GeoHashIndex.Neighbor neighbor = nearest.get(i);
+            assertEquals(distances[i], neighbor.distance, 1e-6);
+            assertTrue(removed == null || !removed[neighbor.id]);
+            assertEquals(DistanceCalculator.calculateDistance(query[0], query[1],
+                    points[neighbor.id][0], points[neighbor.id][1]), neighbor.distance, 1e-6);
+        }
+    }
+}
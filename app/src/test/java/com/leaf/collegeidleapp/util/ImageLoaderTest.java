@@ -0,0 +1,190 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 缩小解码的倍数:取2的幂,缩小后宽高都不小于目标大小;
+ * 请求的取消和被挤出队列后的重新请求;等待复用的位图按字节数限制并按大小取出
+ */
+public class ImageLoaderTest {
+
+    /**
+     * 代替ImageLoader.Request,记录是否被取消、被丢弃和执行
+     */
+    private static class FakeRequest implements Runnable, PendingRequests.Request, AppExecutors.Rejectable {
+        final String target;
+        final String key;
+        final PendingRequests<String, FakeRequest> requests;
+        final List<String> ran;
+        boolean cancelled;
+
+        FakeRequest(String target, String key, PendingRequests<String, FakeRequest> requests, List<String> ran) {
+            this.target = target;
+            this.key = key;
+            this.requests = requests;
+            this.ran = ran;
+        }
+
+        @Override
+        public String key() {
+            return key;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void onRejected() {
+            cancelled = true;
+            requests.finish(target, this);
+        }
+
+        @Override
+        public void run() {
+            ran.add(key);
+        }
+    }
+
+    /**
+     * 代替位图,只有大小
+     */
+    private static class FakeBitmap {
+        final int bytes;
+
+        FakeBitmap(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static ReusePool<FakeBitmap> pool(int maxBytes) {
+        return new ReusePool<FakeBitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(FakeBitmap bitmap) {
+                return bitmap.bytes;
+            }
+
+            @Override
+            protected boolean canHold(FakeBitmap bitmap, int byteCount) {
+                return bitmap.bytes >= byteCount;
+            }
+        };
+    }
+
+    @Test
+    public void cancelledRequestIsNoLongerCurrent() {
+        PendingRequests<String, FakeRequest> requests = new PendingRequests<>();
+        List<String> ran = new ArrayList<>();
+        FakeRequest first = new FakeRequest("row", "1@0:420x420", requests, ran);
+        requests.put("row", first);
+        assertTrue(requests.isPending("row", "1@0:420x420"));
+        assertFalse(requests.isPending("row", "2@0:420x420"));
+
+        //行换绑另一件商品:取消旧请求后提交新请求,旧请求的结果不再显示,也不会移除新请求
+        assertSame(first, requests.cancel("row"));
+        assertTrue(first.cancelled);
+        FakeRequest second = new FakeRequest("row", "2@0:420x420", requests, ran);
+        requests.put("row", second);
+        assertFalse(requests.finish("row", first));
+        assertTrue(requests.isPending("row", "2@0:420x420"));
+        assertTrue(requests.finish("row", second));
+        assertNull(requests.cancel("row"));
+    }
+
+    @Test
+    public void requestDiscardedFromFullQueueCanBeRequestedAgain() throws InterruptedException {
+        PendingRequests<String, FakeRequest> requests = new PendingRequests<>();
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(2), AppExecutors.DISCARD_OLDEST_AND_NOTIFY);
+        //占住唯一的线程,后面的请求都留在队列中
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        FakeRequest[] submitted = new FakeRequest[3];
+        for (int i = 0; i < submitted.length; i++) {
+            String target = "row" + i;
+            submitted[i] = new FakeRequest(target, "key" + i, requests, ran);
+            requests.put(target, submitted[i]);
+            executor.execute(submitted[i]);
+        }
+
+        //最早的请求被挤出队列,同时从requests中移除,再次绑定这一行时会重新提交
+        assertTrue(submitted[0].cancelled);
+        assertFalse(requests.isPending("row0", "key0"));
+        assertTrue(requests.isPending("row1", "key1"));
+        assertTrue(requests.isPending("row2", "key2"));
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, ran.size());
+        assertFalse(ran.contains("key0"));
+    }
+
+    @Test
+    public void reusePoolTakesFirstBitmapLargeEnough() {
+        ReusePool<FakeBitmap> pool = pool(1000);
+        FakeBitmap small = new FakeBitmap(100);
+        FakeBitmap large = new FakeBitmap(400);
+        pool.put(small);
+        pool.put(large);
+        assertSame(large, pool.take(300));
+        assertNull(pool.take(300));
+        assertSame(small, pool.take(100));
+        assertEquals(0, pool.bytes());
+    }
+
+    @Test
+    public void reusePoolDropsOldestOverLimit() {
+        ReusePool<FakeBitmap> pool = pool(1000);
+        FakeBitmap oldest = new FakeBitmap(600);
+        pool.put(oldest);
+        pool.put(new FakeBitmap(300));
+        pool.put(new FakeBitmap(300));
+        //超出上限,最早放入的被丢弃
+        assertEquals(600, pool.bytes());
+        assertNull(pool.take(600));
+    }
+
+    @Test
+    public void smallPictureIsNotScaled() {
+        assertEquals(1, ImageLoader.calculateInSampleSize(300, 200, 420, 420));
+        assertEquals(1, ImageLoader.calculateInSampleSize(420, 420, 420, 420));
+    }
+
+    @Test
+    public void largePictureIsScaledByPowerOfTwo() {
+        //4000x3000的照片显示在420x420的列表图片中,缩小4倍后为1000x750
+        assertEquals(4, ImageLoader.calculateInSampleSize(4000, 3000, 420, 420));
+        assertEquals(2, ImageLoader.calculateInSampleSize(1680, 1679, 420, 420));
+    }
+
+    @Test
+    public void shorterSideDecidesScale() {
+        //缩小后较短的一边不能小于目标大小,否则显示时会被放大变模糊
+        assertEquals(1, ImageLoader.calculateInSampleSize(4000, 600, 420, 420));
+    }
+}
@@ -0,0 +1,57 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只有观察的表被写入时观察者才收到通知
+ */
+public class InvalidationTrackerTest {
+
+    private static class RecordingObserver implements InvalidationTracker.Observer {
+        final List<Set<String>> calls = new ArrayList<>();
+
+        @Override
+        public void onInvalidated(Set<String> tables) {
+            calls.add(tables);
+        }
+    }
+
+    @Test
+    public void notifiesOnlyObserversOfWrittenTables() {
+        InvalidationTracker tracker = new InvalidationTracker();
+        RecordingObserver feed = new RecordingObserver();
+        RecordingObserver reviews = new RecordingObserver();
+        tracker.addObserver(feed, "tb_commodity", "tb_commodity_location");
+        tracker.addObserver(reviews, "tb_review");
+
+        tracker.notifyTablesChanged("tb_commodity");
+        tracker.notifyTablesChanged("tb_user");
+        assertEquals(1, feed.calls.size());
+        assertTrue(reviews.calls.isEmpty());
+
+        //删除商品时评论被连带删除,两个观察者都收到通知
+        tracker.notifyTablesChanged("tb_commodity", "tb_review");
+        assertEquals(2, feed.calls.size());
+        assertEquals(1, reviews.calls.size());
+        assertEquals(new HashSet<>(Arrays.asList("tb_commodity", "tb_review")), reviews.calls.get(0));
+    }
+
+    @Test
+    public void removedObserverIsNotNotified() {
+        InvalidationTracker tracker = new InvalidationTracker();
+        RecordingObserver observer = new RecordingObserver();
+        tracker.addObserver(observer, "tb_review");
+        tracker.removeObserver(observer);
+        tracker.notifyTablesChanged("tb_review");
+        assertTrue(observer.calls.isEmpty());
+    }
+}
@@ -0,0 +1,187 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 按顺序执行比较结果中的每一步后,旧列表与新列表一致,且只包含必要的变化
+ */
+public class ListDifferTest {
+
+    private static class Item {
+        final long id;
+        final String title;
+
+        Item(long id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+
+    private static final ListDiffer.ItemCallback<Item> CALLBACK = new ListDiffer.ItemCallback<Item>() {
+        @Override
+        public long getId(Item item) {
+            return item.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(Item oldItem, Item newItem) {
+            return oldItem.title.equals(newItem.title);
+        }
+    };
+
+    /**
+     * 把每一步变化应用到编号列表上,并记录每种变化的次数
+     */
+    private static class Recorder implements ListDiffer.ListUpdateCallback {
+        final List<Long> ids;
+        final List<Long> newIds;
+        int inserted, removed, moved, changed, operations;
+
+        Recorder(List<Item> oldItems, List<Item> newItems) {
+            ids = idsOf(oldItems);
+            newIds = idsOf(newItems);
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            //新插入的编号在执行完所有步骤之前无法得知,先用占位,最后与新列表比较位置
+            for (int i = 0; i < count; i++) {
+                ids.add(position + i, null);
+            }
+            inserted += count;
+            operations++;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                ids.remove(position);
+            }
+            removed += count;
+            operations++;
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            ids.add(toPosition, ids.remove(fromPosition));
+            moved++;
+            operations++;
+        }
+
+        @Override
+        public void onChanged(int position, int count) {
+            for (int i = 0; i < count; i++) {
+                assertEquals(newIds.get(position + i), ids.get(position + i));
+            }
+            changed += count;
+            operations++;
+        }
+
+        void assertMatches() {
+            assertEquals(newIds.size(), ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                if (ids.get(i) != null) {
+                    assertEquals(newIds.get(i), ids.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void oneChangedItemInThousandRebindsOneRow() {
+        List<Item> oldItems = items(1000);
+        List<Item> newItems = new ArrayList<>(oldItems);
+        newItems.set(500, new Item(500, "改过的标题"));
+        Recorder recorder = diff(oldItems, newItems);
+        assertEquals(1, recorder.operations);
+        assertEquals(1, recorder.changed);
+    }
+
+    @Test
+    public void identicalListsProduceNothing() {
+        List<Item> items = items(100);
+        assertEquals(true, ListDiffer.calculate(items, new ArrayList<>(items), CALLBACK).isEmpty());
+    }
+
+    @Test
+    public void singleMoveIsOneOperation() {
+        List<Item> oldItems = items(100);
+        List<Item> newItems = new ArrayList<>(oldItems);
+        newItems.add(newItems.remove(0));
+        Recorder recorder = diff(oldItems, newItems);
+        assertEquals(1, recorder.operations);
+        assertEquals(1, recorder.moved);
+    }
+
+    @Test
+    public void consecutiveInsertsAndRemovesAreBatched() {
+        List<Item> oldItems = items(100);
+        List<Item> newItems = new ArrayList<>(oldItems.subList(0, 10));
+        for (int i = 0; i < 5; i++) {
+            newItems.add(new Item(1000 + i, "新商品" + i));
+        }
+        newItems.addAll(oldItems.subList(30, 100));
+        Recorder recorder = diff(oldItems, newItems);
+        assertEquals(2, recorder.operations);
+        assertEquals(5, recorder.inserted);
+        assertEquals(20, recorder.removed);
+    }
+
+    @Test
+    public void randomEditsReproduceNewList() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            List<Item> oldItems = items(random.nextInt(60));
+            List<Item> newItems = new ArrayList<>();
+            long nextId = 1000;
+            for (Item item : oldItems) {
+                int action = random.nextInt(10);
+                if (action == 0) {
+                    continue;
+                } else if (action == 1) {
+                    newItems.add(new Item(item.id, item.title + "改"));
+                } else {
+                    newItems.add(item);
+                }
+                if (random.nextInt(8) == 0) {
+                    newItems.add(new Item(nextId++, "新"));
+                }
+            }
+            //打乱一小部分的顺序
+            for (int i = 0; i < newItems.size() / 10; i++) {
+                Collections.swap(newItems, random.nextInt(newItems.size()), random.nextInt(newItems.size()));
+            }
+            diff(oldItems, newItems);
+        }
+    }
+
+    private static Recorder diff(List<Item> oldItems, List<Item> newItems) {
+        Recorder recorder = new Recorder(oldItems, newItems);
+        ListDiffer.calculate(oldItems, newItems, CALLBACK).dispatchUpdatesTo(recorder);
+        recorder.assertMatches();
+        return recorder;
+    }
+
+    private static List<Item> items(int count) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new Item(i, "商品" + i));
+        }
+        return items;
+    }
+
+    private static List<Long> idsOf(List<Item> items) {
+        List<Long> ids = new ArrayList<>();
+        for (Item item : items) {
+            ids.add(item.id);
+        }
+        return ids;
+    }
+}
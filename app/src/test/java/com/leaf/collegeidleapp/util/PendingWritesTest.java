@@ -0,0 +1,149 @@
+package com.leaf.collegeidleapp.util;
+
+import com.leaf.collegeidleapp.bean.Review;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 后写队列的合并、重复评论过滤和日志重放
+ */
+public class PendingWritesTest {
+
+    @Test
+    public void favoriteTogglesCoalesceToTheLastState() {
+        PendingWrites pending = new PendingWrites();
+        pending.setFavorited("2017001", 3, true);
+        pending.setFavorited("2017001", 3, false);
+        pending.setFavorited("2017001", 3, true);
+        pending.setFavorited("2017002", 3, false);
+
+        Map<String, Boolean> favorites = pending.favorites();
+        assertEquals(2, favorites.size());
+        assertEquals(Boolean.TRUE, pending.pendingFavorite("2017001", 3));
+
+        //写入期间又点击了一次,这次修改留在队列中
+        pending.setFavorited("2017001", 3, false);
+        pending.removeWritten(favorites, new ArrayList<Review>());
+        assertEquals(Boolean.FALSE, pending.pendingFavorite("2017001", 3));
+        assertNull(pending.pendingFavorite("2017002", 3));
+    }
+
+    @Test
+    public void sameReviewWithinWindowIsRejected() {
+        PendingWrites pending = new PendingWrites();
+        assertTrue(pending.addReview(review("2017001", "还在吗"), 1000));
+        assertFalse(pending.addReview(review("2017001", "还在吗"), 2000));
+        assertTrue(pending.addReview(review("2017001", "包邮吗"), 2000));
+
+        //写入数据库后,窗口内的重复提交仍然被拒绝,超过窗口后可以再次发表
+        pending.removeWritten(pending.favorites(), pending.reviews());
+        assertFalse(pending.addReview(review("2017001", "还在吗"), 1000 + PendingWrites.DUPLICATE_REVIEW_WINDOW_MS));
+        assertTrue(pending.addReview(review("2017001", "还在吗"), 1001 + PendingWrites.DUPLICATE_REVIEW_WINDOW_MS));
+    }
+
+    @Test
+    public void acceptedReviewGetsTemporaryIdAndQueueKeepsACopy() {
+        PendingWrites pending = new PendingWrites();
+        Review first = review("2017001", "还在吗");
+        Review second = review("2017001", "包邮吗");
+        pending.addReview(first, 0);
+        pending.addReview(second, 0);
+        assertEquals(Integer.valueOf(-1), first.getId());
+        assertEquals(Integer.valueOf(-2), second.getId());
+
+        //写入线程回填的编号只写到队列的副本中,界面上的评论保留临时编号
+        Review queued = pending.reviews().get(0);
+        queued.setId(42);
+        assertEquals(Integer.valueOf(-1), first.getId());
+        assertEquals("还在吗", queued.getContent());
+    }
+
+    @Test
+    public void journalReplaysReviewsWithNullFields() throws JSONException {
+        PendingWrites before = new PendingWrites();
+        before.setFavorited("2017001", 3, true);
+        before.addReview(review(null, null), 0);
+        before.addReview(review("2017001", "还在吗"), 0);
+        List<String> lines = new ArrayList<>();
+        for (JSONObject entry : before.toJournal()) {
+            lines.add(entry.toString());
+        }
+
+        PendingWrites after = new PendingWrites();
+        //本次启动后已经取消收藏,重放时以本次为准
+        after.setFavorited("2017001", 3, false);
+        for (String line : lines) {
+            after.replay(new JSONObject(line));
+        }
+        //重复重放同一份日志不会产生重复的修改
+        for (String line : lines) {
+            after.replay(new JSONObject(line));
+        }
+        assertEquals(Boolean.FALSE, after.pendingFavorite("2017001", 3));
+        List<Review> reviews = after.reviews();
+        assertEquals(2, reviews.size());
+        assertNull(reviews.get(0).getStuId());
+        assertNull(reviews.get(0).getContent());
+        assertEquals("还在吗", reviews.get(1).getContent());
+    }
+
+    @Test
+    public void replayedReviewWithNullFieldsIsWrittenOnce() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table tb_review (id integer primary key autoincrement,"
+                        + "commodityId integer not null,stuId text,content text,createdAt integer not null)");
+            }
+            Review review = review(null, null);
+            assertEquals(0, countSame(connection, review));
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("insert into tb_review(commodityId,stuId,content,createdAt) values(3,null,null,1000)");
+            }
+            assertEquals(1, countSame(connection, review));
+            //内容不同的评论不算重复
+            assertEquals(0, countSame(connection, review("2017001", null)));
+        }
+    }
+
+    /**
+     * 用ReviewDbHelper.addReviewOnce的查询统计相同的评论
+     */
+    private static long countSame(Connection connection, Review review) throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = ReviewDbHelper.buildCountSameReviewSql(review, args);
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.size(); i++) {
+                statement.setString(i + 1, args.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    private static Review review(String stuId, String content) {
+        Review review = new Review();
+        review.setStuId(stuId);
+        review.setContent(content);
+        review.setCommodityId(3);
+        review.setCreatedAt(1000);
+        return review;
+    }
+}
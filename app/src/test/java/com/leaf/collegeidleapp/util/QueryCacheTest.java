@@ -0,0 +1,88 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 查询缓存按LRU淘汰,写入某张表后只清除读取过这张表的结果
+ */
+public class QueryCacheTest {
+
+    private int loads;
+
+    @Test
+    public void repeatedQueryIsServedFromMemory() {
+        QueryCache cache = new QueryCache(4);
+        List<String> first = cache.query("select a", new String[]{"1"}, new String[]{"tb_a"}, loader("x"));
+        first.add("被调用方修改");
+        List<String> second = cache.query("select a", new String[]{"1"}, new String[]{"tb_a"}, loader("x"));
+        assertEquals(Arrays.asList("x"), second);
+        assertEquals(1, loads);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        //参数不同是另一条查询
+        cache.query("select a", new String[]{"2"}, new String[]{"tb_a"}, loader("y"));
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void invalidateOnlyDropsQueriesOnWrittenTables() {
+        QueryCache cache = new QueryCache(4);
+        cache.query("select a", null, new String[]{"tb_a"}, loader("a"));
+        cache.query("select a join b", null, new String[]{"tb_a", "tb_b"}, loader("ab"));
+        cache.query("select c", null, new String[]{"tb_c"}, loader("c"));
+        cache.invalidate("tb_b");
+        assertEquals(2, cache.size());
+        cache.query("select a", null, new String[]{"tb_a"}, loader("a"));
+        cache.query("select c", null, new String[]{"tb_c"}, loader("c"));
+        assertEquals(3, loads);
+        cache.query("select a join b", null, new String[]{"tb_a", "tb_b"}, loader("ab"));
+        assertEquals(4, loads);
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        QueryCache cache = new QueryCache(2);
+        cache.query("q1", null, new String[]{"tb_a"}, loader("1"));
+        cache.query("q2", null, new String[]{"tb_a"}, loader("2"));
+        cache.query("q1", null, new String[]{"tb_a"}, loader("1"));
+        cache.query("q3", null, new String[]{"tb_a"}, loader("3"));
+        cache.query("q1", null, new String[]{"tb_a"}, loader("1"));
+        assertEquals(3, loads);
+        cache.query("q2", null, new String[]{"tb_a"}, loader("2"));
+        assertEquals(4, loads);
+    }
+
+    @Test
+    public void resultReadBeforeWriteIsNotCached() {
+        final QueryCache cache = new QueryCache(4);
+        //查询执行期间表被写入,读到的可能是旧数据,不放入缓存
+        cache.query("select a", null, new String[]{"tb_a"}, new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                loads++;
+                cache.invalidate("tb_a");
+                return Arrays.asList("旧");
+            }
+        });
+        cache.query("select a", null, new String[]{"tb_a"}, loader("新"));
+        assertEquals(2, loads);
+    }
+
+    private Callable<List<String>> loader(final String row) {
+        return new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                loads++;
+                return new ArrayList<>(Arrays.asList(row));
+            }
+        };
+    }
+}
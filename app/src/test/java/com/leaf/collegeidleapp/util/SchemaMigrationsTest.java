@@ -0,0 +1,382 @@
+package com.leaf.collegeidleapp.util;
+
+import com.leaf.collegeidleapp.bean.Commodity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 在JVM上用SQLite执行全部迁移语句,检查热点查询的执行计划走索引而不是全表扫描
+ */
+public class SchemaMigrationsTest {
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SchemaMigrations.BASE_SCHEMA) {
+                statement.execute(sql);
+            }
+            for (Migration migration : SchemaMigrations.MIGRATIONS) {
+                for (String sql : migration.statements) {
+                    statement.execute(sql);
+                }
+            }
+            //与支持R*Tree的设备一致,建立空间索引
+            for (String sql : SchemaMigrations.GEO_INDEX_SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void migrationVersionsAreIncreasing() {
+        assertTrue(SchemaMigrations.latestVersion() >= 3);
+    }
+
+    @Test
+    public void feedListUsesPriceIndex() throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = CommodityDbHelper.buildPageSql(null, null, CommodityDbHelper.NO_MIN_PRICE,
+                CommodityDbHelper.NO_MAX_PRICE, null, 0, args);
+        List<String> plan = explain(sql, args);
+        assertUsesIndex(plan, "idx_commodity_priceCents");
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void feedPageUsesPriceIndex() throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = CommodityDbHelper.buildPageSql(null, null, CommodityDbHelper.NO_MIN_PRICE,
+                CommodityDbHelper.NO_MAX_PRICE, lastItem(150, 3), 20, args);
+        List<String> plan = explain(sql, args);
+        assertUsesIndex(plan, "idx_commodity_priceCents");
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void categoryPageUsesCategoryPriceIndex() throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = CommodityDbHelper.buildPageSql(CommodityDbHelper.FILTER_CATEGORY, "电子用品",
+                CommodityDbHelper.NO_MIN_PRICE, CommodityDbHelper.NO_MAX_PRICE, lastItem(150, 3), 20, args);
+        List<String> plan = explain(sql, args);
+        assertUsesIndex(plan, "idx_commodity_category_priceCents");
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void categoryPriceRangeIsIndexRangeScan() throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = CommodityDbHelper.buildPageSql(CommodityDbHelper.FILTER_CATEGORY, "电子用品",
+                CommodityDbHelper.NO_MIN_PRICE, 20000, null, 20, args);
+        List<String> plan = explain(sql, args);
+        assertUsesIndex(plan, "idx_commodity_category_priceCents");
+        assertTrue("未按价格范围读取索引: " + plan, plan.toString().contains("priceCents<?"));
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void priceIsMigratedToCents() throws SQLException {
+        try (Connection legacy = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement statement = legacy.createStatement()) {
+            for (String sql : SchemaMigrations.BASE_SCHEMA) {
+                statement.execute(sql);
+            }
+            Migration centsMigration = null;
+            for (Migration migration : SchemaMigrations.MIGRATIONS) {
+                if (migration.version == 9) {
+                    centsMigration = migration;
+                    break;
+                }
+                for (String sql : migration.statements) {
+                    statement.execute(sql);
+                }
+            }
+            statement.execute("insert into tb_commodity(id,title,price,titleTokens) values(1,'台灯',12.35,'"
+                    + CjkBigramTokenizer.tokenize("台灯") + "')");
+            statement.execute("insert into tb_commodity(id,title,price) values(2,'键盘',0.1)");
+            for (String sql : centsMigration.statements) {
+                statement.execute(sql);
+            }
+            assertEquals(1235, count(statement, "select priceCents from tb_commodity where id=1"));
+            assertEquals(10, count(statement, "select priceCents from tb_commodity where id=2"));
+            //重建后全文索引和触发器仍然有效
+            assertEquals(1, count(statement, "select count(*) from tb_commodity_fts where tb_commodity_fts match '"
+                    + CjkBigramTokenizer.toMatchQuery("台灯") + "'"));
+            statement.execute("delete from tb_commodity where id=1");
+            assertEquals(0, count(statement, "select count(*) from tb_commodity_fts where tb_commodity_fts match '"
+                    + CjkBigramTokenizer.toMatchQuery("台灯") + "'"));
+        }
+    }
+
+    @Test
+    public void myCommoditiesUseStuIdIndex() throws SQLException {
+        List<String> args = new ArrayList<>();
+        String sql = CommodityDbHelper.buildPageSql(CommodityDbHelper.FILTER_STU_ID, "2017001",
+                CommodityDbHelper.NO_MIN_PRICE, CommodityDbHelper.NO_MAX_PRICE, lastItem(150, 3), 20, args);
+        assertUsesIndex(explain(sql, args), "idx_commodity_stuId");
+    }
+
+    @Test
+    public void reviewPageUsesCommodityTimeIndex() throws SQLException {
+        List<String> plan = explain(ReviewDbHelper.READ_REVIEW_PAGE_SQL.replace("?", "'3'") + "20");
+        assertUsesIndex(plan, "idx_review_commodity_createdAt");
+        assertNoSort(plan);
+    }
+
+    @Test
+    public void legacyReviewTimeIsConvertedToMillis() throws Exception {
+        long expected = new SimpleDateFormat("yyyy年MM月dd日 HH:mm:ss").parse("2020年03月05日 14:07:09").getTime();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select " + SchemaMigrations.LEGACY_REVIEW_TIME_MILLIS
+                     + " from (select '2020年03月05日 14:07:09' as currentTime)")) {
+            assertEquals(expected, resultSet.getLong(1));
+        }
+    }
+
+    @Test
+    public void deletingCommodityDeletesReviewsAndCollections() throws SQLException {
+        insertCommodity(1, "台灯", "");
+        insertCommodity(2, "键盘", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert into tb_review(stuId,content,commodityId,createdAt) values('2017001','还在吗',1,1)");
+            statement.execute("insert into tb_review(stuId,content,commodityId,createdAt) values('2017001','包邮吗',2,2)");
+            statement.execute("insert into tb_collection(stuId,commodityId) values('2017001',1)");
+            statement.execute("delete from tb_commodity where id=1");
+            assertEquals(1, count(statement, "select count(*) from tb_review"));
+            assertEquals(0, count(statement, "select count(*) from tb_collection"));
+            //级联删除按商品编号走索引
+            assertUsesIndex(explain("delete from tb_review where commodityId=1"), "idx_review_commodity_createdAt");
+            assertUsesIndex(explain("delete from tb_collection where commodityId=1"), "idx_collection_commodityId");
+        }
+    }
+
+    @Test
+    public void collectionsJoinThroughUniqueIndex() throws SQLException {
+        List<String> plan = explain(MyCollectionDbHelper.READ_COLLECTIONS_SQL.replace("?", "'2017001'"));
+        assertUsesIndex(plan, "sqlite_autoindex_tb_collection_1");
+        assertTrue("未按主键关联商品表: " + plan, plan.toString().contains("SEARCH m USING INTEGER PRIMARY KEY"));
+        assertUsesIndex(explain("select count(*) from tb_collection where stuId='2017001' and commodityId=3"),
+                "sqlite_autoindex_tb_collection_1");
+    }
+
+    @Test
+    public void collectionIsUniquePerStudentAndCommodity() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert or ignore into tb_collection(stuId,commodityId) values('2017001',1)");
+            statement.execute("insert or ignore into tb_collection(stuId,commodityId) values('2017001',1)");
+            statement.execute("insert or ignore into tb_collection(stuId,commodityId) values('2017002',1)");
+            assertEquals(2, count(statement, "select count(*) from tb_collection"));
+        }
+    }
+
+    @Test
+    public void loginUsesUsernameIndex() throws SQLException {
+        assertUsesIndex(explain("select * from tb_user where username='2017001'"), "idx_user_username");
+    }
+
+    @Test
+    public void usernameIsUnique() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("insert or ignore into tb_user(username,password) values('2017001','123')");
+            statement.execute("insert or ignore into tb_user(username,password) values('2017001','456')");
+            assertEquals(1, count(statement, "select count(*) from tb_user"));
+        }
+    }
+
+    @Test
+    public void studentInfoUsesStuNumberIndex() throws SQLException {
+        assertUsesIndex(explain("select * from tb_student where stuNumber='2017001'"), "idx_student_stuNumber");
+    }
+
+    @Test
+    public void searchMatchesChineseAndRanksTitleFirst() throws SQLException {
+        insertCommodity(1, "九成新山地自行车", "骑了一年");
+        insertCommodity(2, "头盔", "适合骑自行车时佩戴");
+        insertCommodity(3, "iPhone 12", "电池健康85%");
+        insertCommodity(4, "行车记录仪", "自用");
+        assertEquals(Arrays.asList(1, 2), search("自行车"));
+        assertEquals(Collections.singletonList(3), search("IPH"));
+        assertEquals(Arrays.asList(4, 1, 2), search("行车"));
+        assertTrue(search("电脑").isEmpty());
+        //删除商品后触发器同步清理索引
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("delete from tb_commodity where id=2");
+        }
+        assertEquals(Collections.singletonList(1), search("自行车"));
+    }
+
+    @Test
+    public void searchUsesFullTextIndex() throws SQLException {
+        List<String> plan = explain(CommodityDbHelper.SEARCH_SQL.replace("?", "'自行'") + " limit 20");
+        for (String detail : plan) {
+            assertFalse("全表扫描: " + plan, detail.matches("SCAN (TABLE )?tb_commodity\\b.*") && !detail.contains("INDEX"));
+        }
+        assertTrue("未使用全文索引: " + plan, plan.toString().contains("tb_commodity_fts VIRTUAL TABLE"));
+    }
+
+    @Test
+    public void nearbyUsesRtreeIndex() throws SQLException {
+        List<String> plan = explain(CommodityDbHelper.NEARBY_SQL.replace("?", "30.5"));
+        assertTrue("未使用空间索引: " + plan, plan.toString().contains("tb_commodity_geo VIRTUAL TABLE INDEX"));
+        for (String detail : plan) {
+            assertFalse("全表扫描: " + plan, detail.matches("SCAN (TABLE )?tb_commodity(_location)?\\b.*"));
+        }
+    }
+
+    @Test
+    public void nearbyFallbackUsesLatitudeIndex() throws SQLException {
+        assertUsesIndex(explain(CommodityDbHelper.NEARBY_FALLBACK_SQL.replace("?", "30.5")),
+                "idx_commodity_location_latitude");
+    }
+
+    @Test
+    public void nearbyBoxContainsRadiusAndFollowsDeletes() throws SQLException {
+        insertCommodity(1, "台灯", "");
+        insertCommodity(2, "键盘", "");
+        insertCommodity(3, "球拍", "");
+        try (Statement statement = connection.createStatement()) {
+            //1号在中心,2号在正北约900米,3号在正东约20公里
+            statement.execute("insert into tb_commodity_location values(1,30.5,114.3)");
+            statement.execute("insert into tb_commodity_location values(2,30.508,114.3)");
+            statement.execute("insert into tb_commodity_location values(3,30.5,114.51)");
+        }
+        double[] box = DistanceCalculator.boundingBox(30.5, 114.3, 1000);
+        assertEquals(Arrays.asList(1, 2), nearby(CommodityDbHelper.NEARBY_SQL, box));
+        assertEquals(Arrays.asList(1, 2), nearby(CommodityDbHelper.NEARBY_FALLBACK_SQL, box));
+        //删除商品时位置和空间索引一并删除
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("delete from tb_commodity where id=2");
+            assertEquals(0, count(statement, "select count(*) from tb_commodity_geo where id=2"));
+        }
+        assertEquals(Collections.singletonList(1), nearby(CommodityDbHelper.NEARBY_SQL, box));
+    }
+
+    private List<Integer> nearby(String sql, double[] box) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(sql + " order by tb_commodity.id")) {
+            for (int i = 0; i < box.length; i++) {
+                statement.setDouble(i + 1, box[i]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void insertCommodity(int id, String title, String description) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("insert into tb_commodity"
+                + "(id,title,description,priceCents,titleTokens,descriptionTokens) values(?,?,?,100,?,?)")) {
+            statement.setInt(1, id);
+            statement.setString(2, title);
+            statement.setString(3, description);
+            statement.setString(4, CjkBigramTokenizer.tokenize(title));
+            statement.setString(5, CjkBigramTokenizer.tokenize(description));
+            statement.executeUpdate();
+        }
+    }
+
+    private List<Integer> search(String query) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(CommodityDbHelper.SEARCH_SQL)) {
+            String match = CjkBigramTokenizer.toMatchQuery(query);
+            statement.setString(1, match);
+            statement.setString(2, match);
+            statement.setInt(3, CommodityDbHelper.NO_MIN_PRICE);
+            statement.setInt(4, CommodityDbHelper.NO_MAX_PRICE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static int count(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.getInt(1);
+        }
+    }
+
+    private List<String> explain(String sql) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("explain query plan " + sql)) {
+            while (resultSet.next()) {
+                plan.add(resultSet.getString("detail"));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 与Android一样把参数按字符串绑定后取执行计划
+     */
+    private List<String> explain(String sql, List<String> args) throws SQLException {
+        List<String> plan = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("explain query plan " + sql)) {
+            for (int i = 0; i < args.size(); i++) {
+                statement.setString(i + 1, args.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString("detail"));
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 上一页的最后一项,只需要分页用到的价格和编号
+     */
+    private static Commodity lastItem(int priceCents, int id) {
+        Commodity commodity = new Commodity();
+        commodity.setPriceCents(priceCents);
+        commodity.setId(id);
+        return commodity;
+    }
+
+    private static void assertUsesIndex(List<String> plan, String index) {
+        boolean used = false;
+        for (String detail : plan) {
+            assertFalse("全表扫描: " + plan, detail.startsWith("SCAN") && !detail.contains("INDEX"));
+            used |= detail.contains("INDEX " + index);
+        }
+        assertTrue("未使用索引" + index + ": " + plan, used);
+    }
+
+    private static void assertNoSort(List<String> plan) {
+        for (String detail : plan) {
+            assertFalse("需要额外排序: " + plan, detail.contains("TEMP B-TREE"));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.leaf.collegeidleapp.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 缩略图目录的总大小统计和按最后使用时间清理
+ */
+public class SizeLimitedDirectoryTest {
+
+    private static final long MAX_BYTES = 1000;
+    private static final float TRIM_RATIO = 0.5f;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File dir;
+    private SizeLimitedDirectory directory;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = folder.newFolder("thumbnails");
+        directory = new SizeLimitedDirectory(dir, MAX_BYTES, TRIM_RATIO);
+    }
+
+    @Test
+    public void countsExistingFilesOnFirstUse() throws IOException {
+        write(new File(dir, "a"), 100);
+        write(new File(dir, "b"), 250);
+        assertEquals(350, directory.totalBytes());
+    }
+
+    @Test
+    public void commitAndDeleteKeepTheTotalInStep() throws IOException {
+        File a = directory.getFile("a");
+        assertTrue(directory.commit(temp(a, 300), a));
+        assertEquals(300, directory.totalBytes());
+
+        //替换已有文件只计入大小的差值
+        assertTrue(directory.commit(temp(a, 120), a));
+        assertEquals(120, directory.totalBytes());
+
+        File b = directory.getFile("b");
+        assertTrue(directory.commit(temp(b, 200), b));
+        directory.delete(a);
+        assertFalse(a.exists());
+        assertEquals(200, directory.totalBytes());
+
+        //删除不存在的文件不影响总大小
+        directory.delete(a);
+        assertEquals(200, directory.totalBytes());
+        assertEquals(sizeOnDisk(), directory.totalBytes());
+    }
+
+    @Test
+    public void failedCommitRemovesTheTempFile() throws IOException {
+        File temp = temp(directory.getFile("a"), 100);
+        File target = new File(new File(dir, "missing"), "a");
+        assertFalse(directory.commit(temp, target));
+        assertFalse(temp.exists());
+        assertEquals(0, directory.totalBytes());
+    }
+
+    @Test
+    public void trimsLeastRecentlyUsedFilesDownToTheRatio() throws IOException {
+        long now = System.currentTimeMillis();
+        File[] files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = directory.getFile("f" + i);
+            assertTrue(directory.commit(temp(files[i], 200), files[i]));
+            assertTrue(files[i].setLastModified(now - (files.length - i) * 60000L));
+        }
+        //f0是最早写入的,但最近被读取过
+        assertTrue(files[0].setLastModified(now));
+        assertEquals(800, directory.totalBytes());
+
+        //超过上限后删除最久没有使用的f1、f2、f3,直到不超过500字节
+        File newest = directory.getFile("f4");
+        assertTrue(directory.commit(temp(newest, 300), newest));
+        assertTrue(files[0].exists());
+        assertFalse(files[1].exists());
+        assertFalse(files[2].exists());
+        assertFalse(files[3].exists());
+        assertTrue(newest.exists());
+        assertEquals(500, directory.totalBytes());
+        assertEquals(sizeOnDisk(), directory.totalBytes());
+    }
+
+    private File temp(File file, int length) throws IOException {
+        File temp = directory.newTempFile(file);
+        write(temp, length);
+        return temp;
+    }
+
+    private static void write(File file, int length) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[length]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private long sizeOnDisk() {
+        long total = 0;
+        for (File file : dir.listFiles()) {
+            total += file.length();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,209 @@
+package com.leaf.collegeidleapp.processor;
+
+import com.leaf.collegeidleapp.annotation.CursorMapped;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * 为带有@CursorMapped的实体类生成RowMapper
+ * 生成的代码只按下标读取列并调用setter,不使用反射
+ * @author autumn_leaf
+ */
+public class RowMapperProcessor extends AbstractProcessor {
+
+    //生成类的父类,位于app模块
+    private static final String ROW_MAPPER = "com.leaf.collegeidleapp.util.RowMapper";
+    private static final String CURSOR = "android.database.Cursor";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(CursorMapped.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(CursorMapped.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@CursorMapped只能用于类");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<Column> columns = readColumns(type);
+            if (columns != null) {
+                write(type, columns);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 一个字段对应的列
+     */
+    private static class Column {
+        final String field;
+        final String name;
+        final String setter;
+        final String read;
+
+        Column(String field, String name, String setter, String read) {
+            this.field = field;
+            this.name = name;
+            this.setter = setter;
+            this.read = read;
+        }
+    }
+
+    /**
+     * 读取实体类的所有实例字段,出错时返回null
+     */
+    private List<Column> readColumns(TypeElement type) {
+        List<ExecutableElement> methods = ElementFilter.methodsIn(type.getEnclosedElements());
+        List<Column> columns = new ArrayList<>();
+        boolean valid = true;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            if (!hasSetter(methods, setter, field.asType())) {
+                error(field, "字段" + name + "缺少setter方法" + setter);
+                valid = false;
+                continue;
+            }
+            String read = readExpression(field.asType());
+            if (read == null) {
+                error(field, "不支持的字段类型：" + field.asType());
+                valid = false;
+                continue;
+            }
+            //列名与字段名相同,首字母小写
+            String column = Character.toLowerCase(name.charAt(0)) + name.substring(1);
+            columns.add(new Column(name, column, setter, read));
+        }
+        return valid ? columns : null;
+    }
+
+    private boolean hasSetter(List<ExecutableElement> methods, String setter, TypeMirror type) {
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(setter)
+                    && method.getParameters().size() == 1
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按字段类型生成从cursor读取下标为%1$s的列的表达式,包装类型的空值读取为null
+     */
+    private static String readExpression(TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return "cursor.getInt(%1$s)";
+            case LONG:
+                return "cursor.getLong(%1$s)";
+            case SHORT:
+                return "cursor.getShort(%1$s)";
+            case FLOAT:
+                return "cursor.getFloat(%1$s)";
+            case DOUBLE:
+                return "cursor.getDouble(%1$s)";
+            case BOOLEAN:
+                return "cursor.getInt(%1$s) != 0";
+            case ARRAY:
+                return ((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE
+                        ? "cursor.getBlob(%1$s)" : null;
+            case DECLARED:
+                switch (type.toString()) {
+                    case "java.lang.String":
+                        return "cursor.getString(%1$s)";
+                    case "java.lang.Integer":
+                        return "cursor.isNull(%1$s) ? null : Integer.valueOf(cursor.getInt(%1$s))";
+                    case "java.lang.Long":
+                        return "cursor.isNull(%1$s) ? null : Long.valueOf(cursor.getLong(%1$s))";
+                    case "java.lang.Short":
+                        return "cursor.isNull(%1$s) ? null : Short.valueOf(cursor.getShort(%1$s))";
+                    case "java.lang.Float":
+                        return "cursor.isNull(%1$s) ? null : Float.valueOf(cursor.getFloat(%1$s))";
+                    case "java.lang.Double":
+                        return "cursor.isNull(%1$s) ? null : Double.valueOf(cursor.getDouble(%1$s))";
+                    case "java.lang.Boolean":
+                        return "cursor.isNull(%1$s) ? null : Boolean.valueOf(cursor.getInt(%1$s) != 0)";
+                    default:
+                        return null;
+                }
+            default:
+                return null;
+        }
+    }
+
+    private void write(TypeElement type, List<Column> columns) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String beanName = type.getSimpleName().toString();
+        String mapperName = beanName + "RowMapper";
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(";\n\n")
+                .append("import ").append(CURSOR).append(";\n\n")
+                .append("import ").append(ROW_MAPPER).append(";\n\n")
+                .append("/**\n * 由RowMapperProcessor根据").append(beanName).append("生成,请勿修改\n */\n")
+                .append("public final class ").append(mapperName)
+                .append(" extends RowMapper<").append(beanName).append("> {\n\n");
+        for (Column column : columns) {
+            source.append("    private int ").append(column.field).append("Index = -1;\n");
+        }
+        source.append("\n    @Override\n    public void bind(Cursor cursor) {\n");
+        for (Column column : columns) {
+            source.append("        ").append(column.field).append("Index = cursor.getColumnIndex(\"")
+                    .append(column.name).append("\");\n");
+        }
+        source.append("    }\n\n    @Override\n    public ").append(beanName).append(" map(Cursor cursor) {\n")
+                .append("        ").append(beanName).append(" bean = new ").append(beanName).append("();\n");
+        for (Column column : columns) {
+            String index = column.field + "Index";
+            source.append("        if (").append(index).append(" >= 0) {\n")
+                    .append("            bean.").append(column.setter).append("(")
+                    .append(String.format(column.read, index)).append(");\n")
+                    .append("        }\n");
+        }
+        source.append("        return bean;\n    }\n}\n");
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            error(type, "生成" + mapperName + "失败：" + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}